@@ -17,8 +17,18 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     public Scope scope;
     private Ast.Method method;
+    private final TypeRegistry types;
 
     public Analyzer(Scope parent) {
+        this(parent, Environment.getTypes());
+    }
+
+    /**
+     * Creates an analyzer resolving type names in {@code types}, such as the
+     * registry of a tenant.
+     */
+    public Analyzer(Scope parent, TypeRegistry types) {
+        this.types = types;
         scope = new Scope(parent);
         scope.defineFunction("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
     }
@@ -30,15 +40,31 @@ public final class Analyzer implements Ast.Visitor<Void> {
     //DONE
     @Override
     public Void visit(Ast.Source ast) {
-        for(int i=0; i<ast.getFields().size(); i++) {
-            visit(ast.getFields().get(i));
+        Events.Analyze event = new Events.Analyze();
+        event.begin();
+        try {
+            for(int i=0; i<ast.getFields().size(); i++) {
+                visit(ast.getFields().get(i));
+            }
+            for(int i=0; i<ast.getMethods().size(); i++) {
+                visit(ast.getMethods().get(i));
+            }
+            scope.lookupFunction("main", 0);
+            requireAssignable(Environment.Type.INTEGER, scope.lookupFunction("main", 0).getReturnType());
+            return null;
         }
-        for(int i=0; i<ast.getMethods().size(); i++) {
-            visit(ast.getMethods().get(i));
+        catch (RuntimeException e) {
+            event.fail(e);
+            throw e;
+        }
+        finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.nodes = Events.count(ast);
+                event.method = "main";
+                event.commit();
+            }
         }
-        scope.lookupFunction("main", 0);
-        requireAssignable(Environment.Type.INTEGER, scope.lookupFunction("main", 0).getReturnType());
-        return null;
     }
 
     //DONE
@@ -46,9 +72,9 @@ public final class Analyzer implements Ast.Visitor<Void> {
     public Void visit(Ast.Field ast) {
         if (ast.getValue().isPresent()) {
             visit(ast.getValue().get());
-            requireAssignable(Environment.getType(ast.getTypeName()), ast.getValue().get().getType());
+            requireAssignable(types.getType(ast.getTypeName()), ast.getValue().get().getType());
         }
-        ast.setVariable( scope.defineVariable(ast.getName(), ast.getName(), Environment.getType(ast.getTypeName()), Environment.NIL));
+        ast.setVariable( scope.defineVariable(ast.getName(), ast.getName(), types.getType(ast.getTypeName()), Environment.NIL));
 
         return null;
     }
@@ -62,11 +88,11 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
 
         for (int i= 0; i < ast.getParameterTypeNames().size(); i++) {
-            parameterTypes.add(Environment.getType(ast.getParameterTypeNames().get(i)));
+            parameterTypes.add(types.getType(ast.getParameterTypeNames().get(i)));
         }
 
         if(ast.getReturnTypeName().isPresent()) {
-            returnType = Environment.getType(ast.getReturnTypeName().get());
+            returnType = types.getType(ast.getReturnTypeName().get());
         }
 
         ast.setFunction(scope.defineFunction(ast.getName(),ast.getName(),parameterTypes, returnType, args->Environment.NIL ));
@@ -112,7 +138,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
         Environment.Type type = null;
         if(opTypeName.isPresent()) {
-           type = Environment.getType(opTypeName.get());
+           type = types.getType(opTypeName.get());
         }
          */
 
@@ -123,7 +149,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
         Environment.Type type = null;
 
         if(ast.getTypeName().isPresent()) {
-            type = Environment.getType(ast.getTypeName().get());
+            type = types.getType(ast.getTypeName().get());
         }
 
         if (ast.getValue().isPresent()) {
@@ -11,6 +11,21 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    private int offset = -1;
+
+    /**
+     * Returns the index in the source of the first character of this node, or
+     * -1 if it was not created by the {@link Parser}. Offsets are not part of
+     * the structure of a node and are ignored by {@code equals}.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
     public static final class Source extends Ast {
 
         private final List<Field> fields;
@@ -465,8 +480,22 @@ public abstract class Ast {
 
     public static abstract class Expr extends Ast {
 
+        private Interval interval = null;
+
         public abstract Environment.Type getType();
 
+        /**
+         * Returns the range of values of an {@code Integer} expression, which
+         * is only present once the {@link RangeAnalyzer} has been run.
+         */
+        public Optional<Interval> getInterval() {
+            return Optional.ofNullable(interval);
+        }
+
+        public void setInterval(Interval interval) {
+            this.interval = interval;
+        }
+
         public static final class Literal extends Expr {
 
             private final Object literal;
@@ -553,12 +582,14 @@ public abstract class Ast {
         public static final class Binary extends Expr {
 
             private final String operator;
+            private final Operator resolved;
             private final Expr left;
             private final Expr right;
             private Environment.Type type = null;
 
             public Binary(String operator, Expr left, Expr right) {
                 this.operator = operator;
+                this.resolved = Operator.of(operator).orElse(null);
                 this.left = left;
                 this.right = right;
             }
@@ -567,6 +598,14 @@ public abstract class Ast {
                 return operator;
             }
 
+            /**
+             * Returns the operator resolved when this node was built, or
+             * empty if the operator string is not a valid operator.
+             */
+            public Optional<Operator> getResolvedOperator() {
+                return Optional.ofNullable(resolved);
+            }
+
             public Expr getLeft() {
                 return left;
             }
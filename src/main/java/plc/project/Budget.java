@@ -0,0 +1,85 @@
+package plc.project;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits a single execution to a number of steps and/or a wall-clock
+ * deadline, and allows it to be cancelled from another thread. A step is a
+ * loop iteration (counted at the back-edge) or a method entry, which bounds
+ * the work between two steps by the size of the program.
+ *
+ * Engines call {@link #step()} at those points; the step limit and
+ * cancellation are checked on every step, while the deadline and the
+ * interrupt status of the thread are only checked every
+ * {@link #CHECK_INTERVAL} steps. When a check fails, {@link #step()} throws an
+ * {@link ExecutionLimitException}.
+ */
+public final class Budget {
+
+    public static final int CHECK_INTERVAL = 1024;
+
+    private final long maxSteps;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private long steps = 0;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a budget of {@code maxSteps} steps and a deadline of
+     * {@code timeout} from now, where non-positive values mean no limit.
+     */
+    public Budget(long maxSteps, long timeout, TimeUnit unit) {
+        this.maxSteps = maxSteps > 0 ? maxSteps : Long.MAX_VALUE;
+        this.hasDeadline = timeout > 0;
+        this.deadline = hasDeadline ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    }
+
+    /**
+     * Returns a budget without limits, which can still be cancelled.
+     */
+    public static Budget unlimited() {
+        return new Budget(0, 0, TimeUnit.NANOSECONDS);
+    }
+
+    public static Budget ofSteps(long maxSteps) {
+        return new Budget(maxSteps, 0, TimeUnit.NANOSECONDS);
+    }
+
+    public static Budget ofTimeout(long timeout, TimeUnit unit) {
+        return new Budget(0, timeout, unit);
+    }
+
+    public void step() {
+        if (++steps > maxSteps) {
+            throw new ExecutionLimitException(ExecutionLimitException.Reason.STEPS, "The execution exceeded " + maxSteps + " steps.");
+        } else if (cancelled) {
+            throw new ExecutionLimitException(ExecutionLimitException.Reason.CANCELLED, "The execution was cancelled.");
+        } else if ((steps & (CHECK_INTERVAL - 1)) == 0) {
+            if (hasDeadline && System.nanoTime() - deadline > 0) {
+                throw new ExecutionLimitException(ExecutionLimitException.Reason.DEADLINE, "The execution exceeded its deadline.");
+            } else if (Thread.currentThread().isInterrupted()) {
+                throw new ExecutionLimitException(ExecutionLimitException.Reason.CANCELLED, "The execution was interrupted.");
+            }
+        }
+    }
+
+    /**
+     * Cancels the execution, which stops at its next step. This may be called
+     * from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the number of steps taken so far.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+}
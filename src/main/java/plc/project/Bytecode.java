@@ -0,0 +1,181 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * A compiled unit of code for the {@link VirtualMachine}, either a method or
+ * code outside of a method (such as a whole source). It is produced by the
+ * {@link BytecodeCompiler} and never modified afterwards, so it can be cached
+ * and executed any number of times, by any number of machines at once.
+ *
+ * Instructions are stored in a flat {@code int[]} as an opcode followed by
+ * its operands. Operands refer to the constant pool (literal values), the
+ * name table (variables, fields and functions), the compiled methods, slots
+ * (the parameters and locals of a method) or positions in the code.
+ */
+public final class Bytecode {
+
+    /** {@code CONST c}: pushes {@code constants[c]}. */
+    public static final int CONST = 0;
+    /** {@code POP}: discards the top of the stack. */
+    public static final int POP = 1;
+    /** {@code LOAD s}: pushes the value of slot {@code s}. */
+    public static final int LOAD = 2;
+    /** {@code STORE s}: pops a value into slot {@code s}. */
+    public static final int STORE = 3;
+    /** {@code LOAD_GLOBAL n}: pushes the value of the variable {@code names[n]}. */
+    public static final int LOAD_GLOBAL = 4;
+    /** {@code VARIABLE n}: pushes the variable {@code names[n]} itself, to be assigned by {@link #SET_VARIABLE}. */
+    public static final int VARIABLE = 5;
+    /** {@code SET_VARIABLE}: pops a value and a variable, and assigns the value to it. */
+    public static final int SET_VARIABLE = 6;
+    /** {@code DECLARE n}: pops a value and defines it as {@code names[n]} in the current scope. */
+    public static final int DECLARE = 7;
+    /** {@code GET_FIELD n}: pops an object and pushes its field {@code names[n]}. */
+    public static final int GET_FIELD = 8;
+    /** {@code SET_FIELD n}: pops a value and an object, and assigns the field {@code names[n]}. */
+    public static final int SET_FIELD = 9;
+    /** {@code CALL n a}: pops {@code a} arguments and pushes the result of calling {@code names[n]}. */
+    public static final int CALL = 10;
+    /** {@code CALL_METHOD n a}: pops {@code a} arguments and a receiver, and pushes the result of calling its method {@code names[n]}. */
+    public static final int CALL_METHOD = 11;
+    /** {@code BINARY o}: pops two operands and pushes the result of the {@link Operator} with ordinal {@code o}. */
+    public static final int BINARY = 12;
+    /** {@code GROUP}: replaces the top of the stack with a new object holding its value. */
+    public static final int GROUP = 13;
+    /** {@code BOOLEAN}: checks that the top of the stack is a boolean. */
+    public static final int BOOLEAN = 14;
+    /** {@code JUMP t}: continues at {@code t}. */
+    public static final int JUMP = 15;
+    /** {@code JUMP_IF_FALSE t}: pops a boolean and continues at {@code t} if it is false. */
+    public static final int JUMP_IF_FALSE = 16;
+    /** {@code JUMP_IF_TRUE t}: pops a boolean and continues at {@code t} if it is true. */
+    public static final int JUMP_IF_TRUE = 17;
+    /** {@code ENTER}: enters a new scope, for code outside of methods. */
+    public static final int ENTER = 18;
+    /** {@code EXIT}: exits the current scope, for code outside of methods. */
+    public static final int EXIT = 19;
+    /** {@code ITERATOR}: pops an iterable and pushes an iterator over it. */
+    public static final int ITERATOR = 20;
+    /** {@code NEXT t}: pushes the next element of the iterator on the stack, or pops it and continues at {@code t}. */
+    public static final int NEXT = 21;
+    /** {@code DEFINE m}: defines {@code methods[m]} in the current scope. */
+    public static final int DEFINE = 22;
+    /** {@code RETURN}: pops a value and returns it from the current method. */
+    public static final int RETURN = 23;
+    /** {@code HALT}: pops a value and ends execution with it as the result. */
+    public static final int HALT = 24;
+    /** {@code THROW c}: throws an error with the message {@code constants[c]}, or none if {@code c} is -1. */
+    public static final int THROW = 25;
+    /**
+     * {@code BINARY_LONG o}: as {@link #BINARY}, for an arithmetic or
+     * comparison {@link Operator} whose operands and result are proven to fit
+     * in a {@code long}, so operands held as {@code long}s are computed
+     * without overflow or division by zero checks.
+     */
+    public static final int BINARY_LONG = 26;
+
+    private static final String[] MNEMONICS = {
+            "CONST", "POP", "LOAD", "STORE", "LOAD_GLOBAL", "VARIABLE", "SET_VARIABLE", "DECLARE",
+            "GET_FIELD", "SET_FIELD", "CALL", "CALL_METHOD", "BINARY", "GROUP", "BOOLEAN", "JUMP",
+            "JUMP_IF_FALSE", "JUMP_IF_TRUE", "ENTER", "EXIT", "ITERATOR", "NEXT", "DEFINE", "RETURN",
+            "HALT", "THROW", "BINARY_LONG"
+    };
+
+    private static final int[] OPERANDS = {
+            1, 0, 1, 1, 1, 1, 0, 1,
+            1, 1, 2, 2, 1, 0, 0, 1,
+            1, 1, 0, 0, 0, 1, 1, 0,
+            0, 1, 1
+    };
+
+    private final String name;
+    private final int arity;
+    private final int slots;
+    private final int maxStack;
+    private final int[] code;
+    private final Environment.PlcObject[] constants;
+    private final String[] names;
+    private final Bytecode[] methods;
+
+    Bytecode(String name, int arity, int slots, int maxStack, int[] code, Environment.PlcObject[] constants, String[] names, Bytecode[] methods) {
+        this.name = name;
+        this.arity = arity;
+        this.slots = slots;
+        this.maxStack = maxStack;
+        this.code = code;
+        this.constants = constants;
+        this.names = names;
+        this.methods = methods;
+    }
+
+    /**
+     * Returns the name of the method, or {@code null} for code outside of a
+     * method.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Returns the number of slots for parameters and locals, starting with
+     * the parameters.
+     */
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Returns the maximum number of values on the operand stack at once.
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    Environment.PlcObject[] constants() {
+        return constants;
+    }
+
+    String[] names() {
+        return names;
+    }
+
+    Bytecode[] methods() {
+        return methods;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(name == null ? "<main>" : name + "/" + arity).append(" (slots=").append(slots).append(", stack=").append(maxStack).append(")\n");
+        for (int pc = 0; pc < code.length; pc += 1 + OPERANDS[code[pc]]) {
+            builder.append(String.format("%4d  %s", pc, MNEMONICS[code[pc]]));
+            int[] operands = Arrays.copyOfRange(code, pc + 1, pc + 1 + OPERANDS[code[pc]]);
+            for (int operand : operands) {
+                builder.append(' ').append(operand);
+            }
+            if ((code[pc] == CONST || code[pc] == THROW) && operands[0] >= 0) {
+                builder.append("  ; ").append(constants[operands[0]].getValue());
+            } else if (code[pc] == BINARY || code[pc] == BINARY_LONG) {
+                builder.append("  ; ").append(Operator.values()[operands[0]].getSymbol());
+            } else if (code[pc] == LOAD_GLOBAL || code[pc] == VARIABLE || code[pc] == DECLARE || code[pc] == GET_FIELD
+                    || code[pc] == SET_FIELD || code[pc] == CALL || code[pc] == CALL_METHOD) {
+                builder.append("  ; ").append(names[operands[0]]);
+            }
+            builder.append('\n');
+        }
+        for (Bytecode method : methods) {
+            builder.append('\n').append(method);
+        }
+        return builder.toString();
+    }
+
+}
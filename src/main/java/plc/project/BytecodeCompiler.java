@@ -0,0 +1,403 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles the AST to {@link Bytecode} for the {@link VirtualMachine}. The
+ * compiled code has the same behavior as the {@link Interpreter}, except that
+ * every operand is evaluated once, left to right (as with the
+ * {@link ClosureCompiler}).
+ *
+ * Parameters and locals of methods are assigned slots, resolved through the
+ * blocks in scope at compile time. Code outside of methods has no slots and
+ * looks every name up in the current scope at run time, as the
+ * {@link Interpreter} does.
+ */
+public final class BytecodeCompiler implements Ast.Visitor<Void> {
+
+    private final String name;
+    private final int arity;
+    private int[] code = new int[64];
+    private int size = 0;
+    private int depth = 0;
+    private int maxStack = 0;
+    private final List<Environment.PlcObject> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIndices = new HashMap<>();
+    private final List<Bytecode> methods = new ArrayList<>();
+    private Locals locals;
+    private int slots = 0;
+
+    public BytecodeCompiler() {
+        this(null, 0, null);
+    }
+
+    private BytecodeCompiler(String name, int arity, Locals locals) {
+        this.name = name;
+        this.arity = arity;
+        this.locals = locals;
+    }
+
+    /**
+     * Compiles {@code ast} as code outside of a method. When executed, a
+     * source results in the value returned by {@code main/0} and an
+     * expression in its value, while anything else results in
+     * {@link Environment#NIL}.
+     */
+    public Bytecode compile(Ast ast) {
+        visit(ast);
+        if (ast instanceof Ast.Stmt || ast instanceof Ast.Field || ast instanceof Ast.Method) {
+            emit(Bytecode.CONST, 1, constant(Environment.NIL));
+        }
+        emit(Bytecode.HALT, -1);
+        return build();
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        ast.getFields().forEach(this::visit);
+        ast.getMethods().forEach(this::visit);
+        emit(Bytecode.CALL, 1, name("main"), 0);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        } else {
+            emit(Bytecode.CONST, 1, constant(Environment.NIL));
+        }
+        emit(Bytecode.DECLARE, -1, name(ast.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        BytecodeCompiler compiler = new BytecodeCompiler(ast.getName(), ast.getParameters().size(), new Locals(null));
+        Set<String> parameters = new HashSet<>();
+        for (String parameter : ast.getParameters()) {
+            if (!parameters.add(parameter)) {
+                compiler.emit(Bytecode.THROW, 0, compiler.constant(Environment.create("The variable " + parameter + " is already defined in this scope.")));
+            }
+            compiler.declare(parameter);
+        }
+        ast.getStatements().forEach(compiler::visit);
+        compiler.emit(Bytecode.CONST, 1, compiler.constant(Environment.NIL));
+        compiler.emit(Bytecode.RETURN, -1);
+        methods.add(compiler.build());
+        emit(Bytecode.DEFINE, 0, methods.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        emit(Bytecode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        } else {
+            emit(Bytecode.CONST, 1, constant(Environment.NIL));
+        }
+        if (locals == null) {
+            emit(Bytecode.DECLARE, -1, name(ast.getName()));
+        } else if (locals.slots.containsKey(ast.getName())) {
+            emit(Bytecode.POP, -1);
+            emit(Bytecode.THROW, 0, constant(Environment.create("The variable " + ast.getName() + " is already defined in this scope.")));
+        } else {
+            emit(Bytecode.STORE, -1, declare(ast.getName()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            emit(Bytecode.THROW, 0, -1);
+            return null;
+        }
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            visit(receiver.getReceiver().get());
+            visit(ast.getValue());
+            emit(Bytecode.SET_FIELD, -2, name(receiver.getName()));
+            return null;
+        }
+        Integer slot = locals != null ? locals.lookup(receiver.getName()) : null;
+        if (slot != null) {
+            visit(ast.getValue());
+            emit(Bytecode.STORE, -1, slot);
+        } else {
+            emit(Bytecode.VARIABLE, 1, name(receiver.getName()));
+            visit(ast.getValue());
+            emit(Bytecode.SET_VARIABLE, -2);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        visit(ast.getCondition());
+        int otherwise = jump(Bytecode.JUMP_IF_FALSE, -1);
+        block(ast.getThenStatements());
+        int end = jump(Bytecode.JUMP, 0);
+        patch(otherwise);
+        block(ast.getElseStatements());
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
+        emit(Bytecode.ITERATOR, 0);
+        int loop = size;
+        int end = jump(Bytecode.NEXT, 1);
+        if (locals == null) {
+            emit(Bytecode.ENTER, 0);
+            emit(Bytecode.DECLARE, -1, name(ast.getName()));
+            ast.getStatements().forEach(this::visit);
+            emit(Bytecode.EXIT, 0);
+        } else {
+            locals = new Locals(locals);
+            emit(Bytecode.STORE, -1, declare(ast.getName()));
+            ast.getStatements().forEach(this::visit);
+            locals = locals.parent;
+        }
+        emit(Bytecode.JUMP, 0, loop);
+        patch(end);
+        depth--;
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        int loop = size;
+        visit(ast.getCondition());
+        int end = jump(Bytecode.JUMP_IF_FALSE, -1);
+        block(ast.getStatements());
+        emit(Bytecode.JUMP, 0, loop);
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        visit(ast.getValue());
+        emit(Bytecode.RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        emit(Bytecode.CONST, 1, constant(ast.getLiteral() == null ? Environment.NIL : Environment.create(ast.getLiteral())));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        visit(ast.getExpression());
+        emit(Bytecode.GROUP, 0);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        if (!ast.getResolvedOperator().isPresent()) {
+            emit(Bytecode.THROW, 1, -1);
+            return null;
+        }
+        Operator operator = ast.getResolvedOperator().get();
+        if (operator.isEquality()) {
+            boolean equal = ast.getLeft().equals(ast.getRight());
+            emit(Bytecode.CONST, 1, constant(Environment.create(equal == (operator == Operator.EQUAL))));
+            return null;
+        }
+        visit(ast.getLeft());
+        if (operator.isLogical()) {
+            int shortCircuit = jump(operator == Operator.AND ? Bytecode.JUMP_IF_FALSE : Bytecode.JUMP_IF_TRUE, -1);
+            visit(ast.getRight());
+            emit(Bytecode.BOOLEAN, 0);
+            int end = jump(Bytecode.JUMP, 0);
+            patch(shortCircuit);
+            depth--;
+            emit(Bytecode.CONST, 1, constant(Environment.create(operator == Operator.OR)));
+            patch(end);
+            return null;
+        }
+        visit(ast.getRight());
+        emit(isLong(ast, operator) ? Bytecode.BINARY_LONG : Bytecode.BINARY, -1, operator.ordinal());
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if the {@link RangeAnalyzer} proved that the
+     * operands of {@code ast} (and its result, for arithmetic) fit in a
+     * {@code long}, and that a divisor is never zero.
+     */
+    private static boolean isLong(Ast.Expr.Binary ast, Operator operator) {
+        if (!fitsLong(ast.getLeft()) || !fitsLong(ast.getRight())) {
+            return false;
+        }
+        switch (operator) {
+            case LESS:
+            case LESS_EQUAL:
+            case GREATER:
+            case GREATER_EQUAL:
+                return true;
+            case ADD:
+            case SUBTRACT:
+            case MULTIPLY:
+                return fitsLong(ast);
+            case DIVIDE:
+                return fitsLong(ast) && !ast.getRight().getInterval().get().contains(Interval.of(BigInteger.ZERO));
+            default:
+                return false;
+        }
+    }
+
+    private static boolean fitsLong(Ast.Expr ast) {
+        return ast.getInterval().isPresent() && !ast.getInterval().get().isEmpty() && ast.getInterval().get().fitsLong();
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+            emit(Bytecode.GET_FIELD, 0, name(ast.getName()));
+            return null;
+        }
+        Integer slot = locals != null ? locals.lookup(ast.getName()) : null;
+        if (slot != null) {
+            emit(Bytecode.LOAD, 1, slot);
+        } else {
+            emit(Bytecode.LOAD_GLOBAL, 1, name(ast.getName()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        int count = ast.getArguments().size();
+        ast.getArguments().forEach(this::visit);
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+            emit(Bytecode.CALL_METHOD, -count, name(ast.getName()), count);
+        } else {
+            emit(Bytecode.CALL, 1 - count, name(ast.getName()), count);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles statements which run in a new scope, as the bodies of
+     * {@code IF} and {@code WHILE} statements do.
+     */
+    private void block(List<Ast.Stmt> statements) {
+        if (locals == null) {
+            emit(Bytecode.ENTER, 0);
+            statements.forEach(this::visit);
+            emit(Bytecode.EXIT, 0);
+        } else {
+            locals = new Locals(locals);
+            statements.forEach(this::visit);
+            locals = locals.parent;
+        }
+    }
+
+    private int declare(String name) {
+        locals.slots.put(name, slots);
+        return slots++;
+    }
+
+    private int constant(Environment.PlcObject value) {
+        Object key = value == Environment.NIL ? value : value.getValue();
+        Integer index = constantIndices.get(key);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndices.put(key, index);
+        }
+        return index;
+    }
+
+    private int name(String name) {
+        Integer index = nameIndices.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            nameIndices.put(name, index);
+        }
+        return index;
+    }
+
+    /**
+     * Appends an instruction, where {@code effect} is the change in the
+     * number of values on the operand stack.
+     */
+    private void emit(int opcode, int effect, int... operands) {
+        if (size + 1 + operands.length > code.length) {
+            code = Arrays.copyOf(code, 2 * code.length + operands.length);
+        }
+        code[size++] = opcode;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+        depth += effect;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    /**
+     * Appends a jump whose target is set later by {@link #patch(int)},
+     * returning the position of the target operand.
+     */
+    private int jump(int opcode, int effect) {
+        emit(opcode, effect, -1);
+        return size - 1;
+    }
+
+    private void patch(int position) {
+        code[position] = size;
+    }
+
+    private Bytecode build() {
+        return new Bytecode(name, arity, slots, maxStack, Arrays.copyOf(code, size),
+                constants.toArray(new Environment.PlcObject[0]),
+                names.toArray(new String[0]),
+                methods.toArray(new Bytecode[0]));
+    }
+
+    /**
+     * The slots of the locals declared in a block, which shadow those of the
+     * enclosing blocks.
+     */
+    private static final class Locals {
+
+        private final Locals parent;
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        private Locals(Locals parent) {
+            this.parent = parent;
+        }
+
+        private Integer lookup(String name) {
+            Integer slot = slots.get(name);
+            return slot != null || parent == null ? slot : parent.lookup(name);
+        }
+
+    }
+
+}
@@ -0,0 +1,841 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An execution engine which compiles the AST into a tree of closures once,
+ * instead of walking it with a visitor on every execution like the
+ * {@link Interpreter}. Operators are resolved to an {@link Operator},
+ * parameters and locals of methods are stored in slots of a frame array,
+ * and calls and fields are linked to their target the first time they run.
+ * Returning from a method is a value passed back through the statements
+ * rather than an exception.
+ *
+ * The observable behavior matches the {@link Interpreter}: the same scopes
+ * are visible, the same values are produced, and the same errors are thrown.
+ * The one deliberate difference is that every operand is evaluated once, left
+ * to right, where the {@link Interpreter} evaluates some operands (and
+ * {@code IF} conditions) twice. Code outside of methods (such as a statement
+ * executed on its own) is not compiled to slots and looks variables up in
+ * the current {@link Scope}, as the {@link Interpreter} does.
+ */
+public final class ClosureCompiler {
+
+    private static final Environment.PlcObject[] NO_SLOTS = new Environment.PlcObject[0];
+
+    private final Map<Environment.Function, Procedure> procedures = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<String, Integer> specializations = new ConcurrentHashMap<>();
+    private final Scope scope;
+    private final boolean specialize;
+    private volatile Budget budget = null;
+    private final OutputSink output;
+
+    public ClosureCompiler(Scope parent) {
+        this(parent, false);
+    }
+
+    public ClosureCompiler(Scope parent, boolean specialize) {
+        this(parent, specialize, OutputSink.stdout());
+    }
+
+    /**
+     * Creates an engine which, if {@code specialize} is set, compiles binary
+     * expressions, field accesses and method calls to nodes that specialize
+     * themselves to the types they observe while running (see
+     * {@link #getSpecializations()}). The {@code print} function writes to
+     * {@code output}, which is flushed after each execution.
+     */
+    public ClosureCompiler(Scope parent, boolean specialize, OutputSink output) {
+        this.specialize = specialize;
+        this.output = output;
+        scope = new Scope(parent);
+        scope.defineFunction("print", value -> {
+            output.println(value.getValue());
+            return Environment.NIL;
+        });
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Returns the number of nodes that specialized to each variant, such as
+     * {@code BigInteger +} or {@code generic +} for a binary expression that
+     * saw operands it was not specialized to. Intended for diagnostics.
+     */
+    public Map<String, Integer> getSpecializations() {
+        return new TreeMap<>(specializations);
+    }
+
+    /**
+     * Compiles and executes {@code ast} in the scope of this engine, returning
+     * the result of {@code main/0} for a source, the value of an expression,
+     * and {@link Environment#NIL} otherwise.
+     */
+    public Environment.PlcObject execute(Ast ast) {
+        Closure closure = new Compiler(null).visit(ast);
+        Environment.PlcObject result;
+        try {
+            result = closure.execute(new Frame(scope, NO_SLOTS));
+        } finally {
+            output.flush();
+        }
+        if (ast instanceof Ast.Source || ast instanceof Ast.Expr) {
+            return result;
+        } else if (result != null) {
+            throw new RuntimeException("Cannot return outside of a method.");
+        }
+        return Environment.NIL;
+    }
+
+    /**
+     * A compiled node. Expressions return their value, while statements
+     * return {@code null} to continue with the next statement or the value
+     * being returned from the method.
+     */
+    @FunctionalInterface
+    private interface Closure {
+
+        Environment.PlcObject execute(Frame frame);
+
+    }
+
+    /**
+     * The state of a single execution of a method: the slots holding its
+     * parameters and locals, and the scope used to look up everything else.
+     */
+    private static final class Frame {
+
+        private final Environment.PlcObject[] slots;
+        private Scope scope;
+
+        private Frame(Scope scope, Environment.PlcObject[] slots) {
+            this.scope = scope;
+            this.slots = slots;
+        }
+
+    }
+
+    /**
+     * A compiled method together with the scope it was defined in.
+     */
+    private final class Procedure {
+
+        private final int arity;
+        private final int slots;
+        private final Closure body;
+        private final Scope capture;
+
+        private Procedure(int arity, int slots, Closure body, Scope capture) {
+            this.arity = arity;
+            this.slots = slots;
+            this.body = body;
+            this.capture = capture;
+        }
+
+        private Environment.PlcObject invoke(Environment.PlcObject[] arguments) {
+            step();
+            Frame frame = new Frame(capture, new Environment.PlcObject[slots]);
+            System.arraycopy(arguments, 0, frame.slots, 0, arity);
+            Environment.PlcObject result = body.execute(frame);
+            return result != null ? result : Environment.NIL;
+        }
+
+    }
+
+    /**
+     * The slots of the locals declared in a block, which shadow those of the
+     * enclosing blocks.
+     */
+    private static final class Locals {
+
+        private final Locals parent;
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        private Locals(Locals parent) {
+            this.parent = parent;
+        }
+
+        private Integer lookup(String name) {
+            Integer slot = slots.get(name);
+            return slot != null || parent == null ? slot : parent.lookup(name);
+        }
+
+    }
+
+    /**
+     * A variable outside of the current method, which is looked up once in
+     * the scope the method was defined in.
+     */
+    private static final class Global {
+
+        private final Symbol symbol;
+        private volatile Environment.Variable variable;
+
+        private Global(String name) {
+            this.symbol = Symbol.of(name);
+        }
+
+        private Environment.Variable get(Frame frame) {
+            Environment.Variable variable = this.variable;
+            if (variable == null) {
+                variable = frame.scope.lookupVariable(symbol);
+                this.variable = variable;
+            }
+            return variable;
+        }
+
+    }
+
+    /**
+     * A call to a function outside of the current method. If the function is
+     * a method compiled by this engine, the call is linked directly to the
+     * compiled method.
+     */
+    private final class Call implements Closure {
+
+        private final String name;
+        private final Closure[] arguments;
+        private volatile Environment.Function function;
+        private volatile Procedure procedure;
+
+        private Call(String name, Closure[] arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Frame frame) {
+            Environment.PlcObject[] values = evaluate(arguments, frame);
+            Environment.Function function = this.function;
+            if (function == null) {
+                function = frame.scope.lookupFunction(name, values.length);
+                procedure = procedures.get(function);
+                this.function = function;
+            }
+            Procedure procedure = this.procedure;
+            return procedure != null ? procedure.invoke(values) : function.invoke(values);
+        }
+
+    }
+
+    /**
+     * Sets the budget of steps (loop iterations and method entries) for the
+     * code executed afterwards, or {@code null} for none. The budget is
+     * shared by all threads executing code of this engine.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    private void step() {
+        Budget budget = this.budget;
+        if (budget != null) {
+            budget.step();
+        }
+    }
+
+    private void specialized(String variant) {
+        specializations.merge(variant, 1, Integer::sum);
+    }
+
+    /**
+     * A comparison or arithmetic expression which specializes itself to the
+     * class of the operands it first sees, such as adding two
+     * {@link BigInteger}s or concatenating to a {@link String}. The
+     * specialization skips the type dispatch of
+     * {@link Operator#apply(Environment.PlcObject, Environment.PlcObject)}
+     * and is guarded by the classes of the operands; the first time the
+     * guard fails, the node falls back to the generic operator for good.
+     */
+    private final class BinaryNode implements Closure {
+
+        private final Operator operator;
+        private final Closure left;
+        private final Closure right;
+        private volatile Specialization specialization;
+        private volatile boolean generic = false;
+
+        private BinaryNode(Operator operator, Closure left, Closure right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Frame frame) {
+            Environment.PlcObject left = this.left.execute(frame);
+            Environment.PlcObject right = this.right.execute(frame);
+            Specialization specialization = this.specialization;
+            if (specialization != null && specialization.accepts(left, right)) {
+                return specialization.operation.apply(left, right);
+            } else if (!generic) {
+                respecialize(left, right);
+            }
+            return operator.apply(left, right);
+        }
+
+        private synchronized void respecialize(Environment.PlcObject left, Environment.PlcObject right) {
+            if (specialization == null && !generic) {
+                specialization = Specialization.of(operator, left, right);
+                if (specialization != null) {
+                    specialized(specialization.leftType.getSimpleName() + " " + operator.getSymbol());
+                    return;
+                }
+            }
+            if (!generic) {
+                specialization = null;
+                generic = true;
+                specialized("generic " + operator.getSymbol());
+            }
+        }
+
+    }
+
+    /**
+     * A fast path for an operator applied to operands of specific classes.
+     * A {@code null} right type accepts any right operand. Integers are of
+     * class {@link BigInteger}, whether or not they are held as a
+     * {@code long} (see {@link #type(Environment.PlcObject)}).
+     */
+    private static final class Specialization {
+
+        private final Class<?> leftType;
+        private final Class<?> rightType;
+        private final java.util.function.BinaryOperator<Environment.PlcObject> operation;
+
+        private Specialization(Class<?> leftType, Class<?> rightType, java.util.function.BinaryOperator<Environment.PlcObject> operation) {
+            this.leftType = leftType;
+            this.rightType = rightType;
+            this.operation = operation;
+        }
+
+        private boolean accepts(Environment.PlcObject left, Environment.PlcObject right) {
+            return type(left) == leftType && (rightType == null || type(right) == rightType);
+        }
+
+        private static Class<?> type(Environment.PlcObject object) {
+            return object.isLong() ? BigInteger.class : object.getValue().getClass();
+        }
+
+        /**
+         * Returns the specialization of {@code operator} to the classes of the
+         * given operands, or {@code null} if there is none.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Specialization of(Operator operator, Environment.PlcObject left, Environment.PlcObject right) {
+            Class<?> type = type(left);
+            if (operator == Operator.ADD && type == String.class) {
+                return new Specialization(type, null, (l, r) -> Environment.create((String) l.getValue() + r.getValue()));
+            } else if (type != type(right)) {
+                return null;
+            }
+            if (type == BigInteger.class) {
+                switch (operator) {
+                    case LESS:
+                        return new Specialization(type, type, (l, r) -> Environment.create(IntegerArithmetic.compare(l, r) < 0));
+                    case LESS_EQUAL:
+                        return new Specialization(type, type, (l, r) -> Environment.create(IntegerArithmetic.compare(l, r) <= 0));
+                    case GREATER:
+                        return new Specialization(type, type, (l, r) -> Environment.create(IntegerArithmetic.compare(l, r) > 0));
+                    case GREATER_EQUAL:
+                        return new Specialization(type, type, (l, r) -> Environment.create(IntegerArithmetic.compare(l, r) >= 0));
+                }
+            }
+            switch (operator) {
+                case LESS:
+                    return new Specialization(type, type, (l, r) -> Environment.create(((Comparable) l.getValue()).compareTo(r.getValue()) < 0));
+                case LESS_EQUAL:
+                    return new Specialization(type, type, (l, r) -> Environment.create(((Comparable) l.getValue()).compareTo(r.getValue()) <= 0));
+                case GREATER:
+                    return new Specialization(type, type, (l, r) -> Environment.create(((Comparable) l.getValue()).compareTo(r.getValue()) > 0));
+                case GREATER_EQUAL:
+                    return new Specialization(type, type, (l, r) -> Environment.create(((Comparable) l.getValue()).compareTo(r.getValue()) >= 0));
+            }
+            if (type == BigInteger.class) {
+                switch (operator) {
+                    case ADD:
+                        return new Specialization(type, type, IntegerArithmetic::add);
+                    case SUBTRACT:
+                        return new Specialization(type, type, IntegerArithmetic::subtract);
+                    case MULTIPLY:
+                        return new Specialization(type, type, IntegerArithmetic::multiply);
+                    case DIVIDE:
+                        return new Specialization(type, type, (l, r) -> {
+                            if (IntegerArithmetic.isZero(r)) {
+                                throw new RuntimeException();
+                            }
+                            return IntegerArithmetic.divide(l, r);
+                        });
+                }
+            } else if (type == BigDecimal.class) {
+                switch (operator) {
+                    case ADD:
+                        return new Specialization(type, type, (l, r) -> Environment.create(((BigDecimal) l.getValue()).add((BigDecimal) r.getValue())));
+                    case SUBTRACT:
+                        return new Specialization(type, type, (l, r) -> Environment.create(((BigDecimal) l.getValue()).subtract((BigDecimal) r.getValue())));
+                    case MULTIPLY:
+                        return new Specialization(type, type, (l, r) -> Environment.create(((BigDecimal) l.getValue()).multiply((BigDecimal) r.getValue())));
+                }
+            }
+            return null;
+        }
+
+    }
+
+    /**
+     * A field access on an object, which remembers the variable of the last
+     * object it accessed. If it accesses a different object, it falls back
+     * to looking the field up every time.
+     */
+    private final class FieldNode implements Closure {
+
+        private final Closure receiver;
+        private final String name;
+        private volatile Environment.PlcObject object;
+        private volatile Environment.Variable variable;
+        private volatile boolean generic = false;
+
+        private FieldNode(Closure receiver, String name) {
+            this.receiver = receiver;
+            this.name = name;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Frame frame) {
+            Environment.PlcObject object = receiver.execute(frame);
+            Environment.Variable variable = this.variable;
+            if (variable != null && object == this.object) {
+                return variable.getValue();
+            }
+            variable = object.getField(name);
+            if (!generic) {
+                synchronized (this) {
+                    if (this.object == null) {
+                        this.variable = variable;
+                        this.object = object;
+                        specialized("field");
+                    } else if (!generic) {
+                        this.variable = null;
+                        generic = true;
+                        specialized("generic field");
+                    }
+                }
+            }
+            return variable.getValue();
+        }
+
+    }
+
+    /**
+     * A method call which remembers the function it called for the type of
+     * its receiver. If it sees a receiver of a different type, it falls back
+     * to looking the method up every time.
+     */
+    private final class MethodNode implements Closure {
+
+        private final Closure receiver;
+        private final String name;
+        private final Closure[] arguments;
+        private volatile Environment.Type type;
+        private volatile Environment.Function function;
+        private volatile boolean generic = false;
+
+        private MethodNode(Closure receiver, String name, Closure[] arguments) {
+            this.receiver = receiver;
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Frame frame) {
+            Environment.PlcObject[] values = evaluate(arguments, frame);
+            Environment.PlcObject object = receiver.execute(frame);
+            Environment.Function function = this.function;
+            if (function == null || object.getType() != type) {
+                function = object.getType().getMethod(name, values.length);
+                if (!generic) {
+                    synchronized (this) {
+                        if (type == null) {
+                            this.function = function;
+                            type = object.getType();
+                            specialized("method");
+                        } else if (!generic) {
+                            this.function = null;
+                            generic = true;
+                            specialized("generic method");
+                        }
+                    }
+                }
+            }
+            return function.invokeMethod(object, values);
+        }
+
+    }
+
+    /**
+     * Compiles nodes to closures. Inside of a method, {@link #locals} tracks
+     * the slots of the parameters and locals in scope; it is {@code null} for
+     * code outside of a method, which uses the current scope instead.
+     */
+    private final class Compiler implements Ast.Visitor<Closure> {
+
+        private Locals locals;
+        private int slots = 0;
+
+        private Compiler(Locals locals) {
+            this.locals = locals;
+        }
+
+        @Override
+        public Closure visit(Ast.Source ast) {
+            List<Closure> fields = new ArrayList<>();
+            for (Ast.Field field : ast.getFields()) {
+                fields.add(visit(field));
+            }
+            List<Closure> methods = new ArrayList<>();
+            for (Ast.Method method : ast.getMethods()) {
+                methods.add(visit(method));
+            }
+            return frame -> {
+                fields.forEach(field -> field.execute(frame));
+                methods.forEach(method -> method.execute(frame));
+                return frame.scope.lookupFunction("main", 0).invoke(new ArrayList<>());
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Field ast) {
+            String name = ast.getName();
+            Closure value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : null;
+            return frame -> {
+                frame.scope.defineVariable(name, value != null ? value.execute(frame) : Environment.NIL);
+                return null;
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Method ast) {
+            String name = ast.getName();
+            int arity = ast.getParameters().size();
+            Compiler compiler = new Compiler(new Locals(null));
+            Closure body = null;
+            Set<String> parameters = new HashSet<>();
+            for (String parameter : ast.getParameters()) {
+                if (!parameters.add(parameter)) {
+                    body = frame -> {
+                        throw new RuntimeException("The variable " + parameter + " is already defined in this scope.");
+                    };
+                }
+                compiler.declare(parameter);
+            }
+            if (body == null) {
+                body = compiler.sequence(ast.getStatements());
+            }
+            Closure compiled = body;
+            int slots = compiler.slots;
+            return frame -> {
+                Procedure procedure = new Procedure(arity, slots, compiled, frame.scope);
+                List<Environment.Type> parameterTypes = new ArrayList<>(Collections.nCopies(arity, Environment.Type.ANY));
+                Environment.Function function = frame.scope.defineFunction(name, name, parameterTypes, Environment.Type.ANY, args -> {
+                    return procedure.invoke(args.toArray(new Environment.PlcObject[0]));
+                });
+                procedures.put(function, procedure);
+                return null;
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Stmt.Expression ast) {
+            Closure expression = visit(ast.getExpression());
+            return frame -> {
+                expression.execute(frame);
+                return null;
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Stmt.Declaration ast) {
+            String name = ast.getName();
+            Closure value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : frame -> Environment.NIL;
+            if (locals == null) {
+                return frame -> {
+                    frame.scope.defineVariable(name, value.execute(frame));
+                    return null;
+                };
+            } else if (locals.slots.containsKey(name)) {
+                return frame -> {
+                    value.execute(frame);
+                    throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+                };
+            }
+            int slot = declare(name);
+            return frame -> {
+                frame.slots[slot] = value.execute(frame);
+                return null;
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Stmt.Assignment ast) {
+            if (!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+                return frame -> {
+                    throw new RuntimeException();
+                };
+            }
+            Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+            String name = receiver.getName();
+            Closure value = visit(ast.getValue());
+            if (receiver.getReceiver().isPresent()) {
+                Closure object = visit(receiver.getReceiver().get());
+                return frame -> {
+                    object.execute(frame).setField(name, value.execute(frame));
+                    return null;
+                };
+            }
+            Integer slot = locals != null ? locals.lookup(name) : null;
+            if (slot != null) {
+                int index = slot;
+                return frame -> {
+                    frame.slots[index] = value.execute(frame);
+                    return null;
+                };
+            } else if (locals != null) {
+                Global global = new Global(name);
+                return frame -> {
+                    global.get(frame).setValue(value.execute(frame));
+                    return null;
+                };
+            }
+            Symbol symbol = Symbol.of(name);
+            return frame -> {
+                frame.scope.lookupVariable(symbol).setValue(value.execute(frame));
+                return null;
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Stmt.If ast) {
+            Closure condition = visit(ast.getCondition());
+            Closure thenStatements = block(ast.getThenStatements());
+            Closure elseStatements = block(ast.getElseStatements());
+            return frame -> Operator.requireType(Boolean.class, condition.execute(frame))
+                    ? thenStatements.execute(frame)
+                    : elseStatements.execute(frame);
+        }
+
+        @Override
+        public Closure visit(Ast.Stmt.For ast) {
+            String name = ast.getName();
+            Closure value = visit(ast.getValue());
+            if (locals == null) {
+                Closure statements = sequence(ast.getStatements());
+                return frame -> {
+                    for (Object element : Operator.requireType(Iterable.class, value.execute(frame))) {
+                        Scope parent = frame.scope;
+                        frame.scope = new Scope(parent);
+                        try {
+                            frame.scope.defineVariable(name, (Environment.PlcObject) element);
+                            Environment.PlcObject result = statements.execute(frame);
+                            if (result != null) {
+                                return result;
+                            }
+                        } finally {
+                            frame.scope = parent;
+                        }
+                        step();
+                    }
+                    return null;
+                };
+            }
+            locals = new Locals(locals);
+            int slot = declare(name);
+            Closure statements = sequence(ast.getStatements());
+            locals = locals.parent;
+            return frame -> {
+                for (Object element : Operator.requireType(Iterable.class, value.execute(frame))) {
+                    frame.slots[slot] = (Environment.PlcObject) element;
+                    Environment.PlcObject result = statements.execute(frame);
+                    if (result != null) {
+                        return result;
+                    }
+                    step();
+                }
+                return null;
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Stmt.While ast) {
+            Closure condition = visit(ast.getCondition());
+            Closure statements = block(ast.getStatements());
+            return frame -> {
+                while (Operator.requireType(Boolean.class, condition.execute(frame))) {
+                    Environment.PlcObject result = statements.execute(frame);
+                    if (result != null) {
+                        return result;
+                    }
+                    step();
+                }
+                return null;
+            };
+        }
+
+        @Override
+        public Closure visit(Ast.Stmt.Return ast) {
+            return visit(ast.getValue());
+        }
+
+        @Override
+        public Closure visit(Ast.Expr.Literal ast) {
+            Environment.PlcObject value = ast.getLiteral() == null ? Environment.NIL : Environment.create(ast.getLiteral());
+            return frame -> value;
+        }
+
+        @Override
+        public Closure visit(Ast.Expr.Group ast) {
+            Closure expression = visit(ast.getExpression());
+            return frame -> Environment.createFrom(expression.execute(frame));
+        }
+
+        @Override
+        public Closure visit(Ast.Expr.Binary ast) {
+            if (!ast.getResolvedOperator().isPresent()) {
+                return frame -> {
+                    throw new RuntimeException();
+                };
+            }
+            Operator operator = ast.getResolvedOperator().get();
+            if (operator.isEquality()) {
+                Environment.PlcObject result = Environment.create(ast.getLeft().equals(ast.getRight()) == (operator == Operator.EQUAL));
+                return frame -> result;
+            }
+            Closure left = visit(ast.getLeft());
+            Closure right = visit(ast.getRight());
+            if (specialize && !operator.isLogical()) {
+                return new BinaryNode(operator, left, right);
+            } else if (operator == Operator.AND) {
+                return frame -> Environment.create(Operator.requireType(Boolean.class, left.execute(frame))
+                        && Operator.requireType(Boolean.class, right.execute(frame)));
+            } else if (operator == Operator.OR) {
+                return frame -> Environment.create(Operator.requireType(Boolean.class, left.execute(frame))
+                        || Operator.requireType(Boolean.class, right.execute(frame)));
+            }
+            return frame -> operator.apply(left.execute(frame), right.execute(frame));
+        }
+
+        @Override
+        public Closure visit(Ast.Expr.Access ast) {
+            String name = ast.getName();
+            if (ast.getReceiver().isPresent()) {
+                Closure receiver = visit(ast.getReceiver().get());
+                if (specialize) {
+                    return new FieldNode(receiver, name);
+                }
+                return frame -> receiver.execute(frame).getField(name).getValue();
+            }
+            Integer slot = locals != null ? locals.lookup(name) : null;
+            if (slot != null) {
+                int index = slot;
+                return frame -> frame.slots[index];
+            } else if (locals != null) {
+                Global global = new Global(name);
+                return frame -> global.get(frame).getValue();
+            }
+            Symbol symbol = Symbol.of(name);
+            return frame -> frame.scope.lookupVariable(symbol).getValue();
+        }
+
+        @Override
+        public Closure visit(Ast.Expr.Function ast) {
+            String name = ast.getName();
+            Closure[] arguments = new Closure[ast.getArguments().size()];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = visit(ast.getArguments().get(i));
+            }
+            if (ast.getReceiver().isPresent()) {
+                Closure receiver = visit(ast.getReceiver().get());
+                if (specialize) {
+                    return new MethodNode(receiver, name, arguments);
+                }
+                return frame -> {
+                    Environment.PlcObject[] values = evaluate(arguments, frame);
+                    return receiver.execute(frame).callMethod(name, values);
+                };
+            } else if (locals != null) {
+                return new Call(name, arguments);
+            }
+            Symbol symbol = Symbol.of(name);
+            return frame -> {
+                Environment.PlcObject[] values = evaluate(arguments, frame);
+                return frame.scope.lookupFunction(symbol, arguments.length).invoke(values);
+            };
+        }
+
+        private int declare(String name) {
+            locals.slots.put(name, slots);
+            return slots++;
+        }
+
+        /**
+         * Compiles statements which run in a new scope, as the bodies of
+         * {@code IF} and {@code WHILE} statements do.
+         */
+        private Closure block(List<Ast.Stmt> statements) {
+            if (locals == null) {
+                Closure sequence = sequence(statements);
+                return frame -> {
+                    Scope parent = frame.scope;
+                    frame.scope = new Scope(parent);
+                    try {
+                        return sequence.execute(frame);
+                    } finally {
+                        frame.scope = parent;
+                    }
+                };
+            }
+            locals = new Locals(locals);
+            Closure sequence = sequence(statements);
+            locals = locals.parent;
+            return sequence;
+        }
+
+        private Closure sequence(List<Ast.Stmt> statements) {
+            Closure[] closures = new Closure[statements.size()];
+            for (int i = 0; i < closures.length; i++) {
+                closures[i] = visit(statements.get(i));
+            }
+            return frame -> {
+                for (Closure closure : closures) {
+                    Environment.PlcObject result = closure.execute(frame);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            };
+        }
+
+    }
+
+    private static Environment.PlcObject[] evaluate(Closure[] arguments, Frame frame) {
+        Environment.PlcObject[] values = new Environment.PlcObject[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            values[i] = arguments[i].execute(frame);
+        }
+        return values;
+    }
+
+}
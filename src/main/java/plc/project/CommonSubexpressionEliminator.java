@@ -0,0 +1,443 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Common subexpression elimination over the methods of an analyzed
+ * {@link Ast.Source}. Within a basic block (a run of declarations,
+ * assignments, expression and return statements), an expression that occurs
+ * more than once and has no side effects is computed once into a temporary
+ * declared just before its first use, and every occurrence is replaced with
+ * an access to that temporary. The temporaries are ordinary
+ * {@link Ast.Stmt.Declaration}s, so every back end supports them.
+ *
+ * Candidates are binary expressions, field accesses on an object, and calls
+ * to functions which are not {@link Environment.Purity#EFFECTFUL} (see
+ * {@link PurityAnalyzer}, which is run first). An expression stops being
+ * available once a variable it reads is assigned or shadowed, and one that
+ * reads a field stops being available at any statement that assigns a field
+ * or makes an effectful call. Operands of {@code ==} and {@code !=} are left
+ * untouched, as the {@link Interpreter} compares them structurally, and the
+ * right operand of {@code AND}/{@code OR} can reuse a temporary but never
+ * introduces one, since it is not always evaluated.
+ *
+ * Locals are told apart from fields by the identity of the variables the
+ * {@link Analyzer} attached to the AST, so a field is never mistaken for a
+ * local that has the same name in another block.
+ *
+ * Temporaries are named {@code $cse0}, {@code $cse1}, ... which can not
+ * collide with identifiers in the source.
+ */
+public final class CommonSubexpressionEliminator extends Rewriter {
+
+    private final Set<Environment.Variable> locals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int temporaries = 0;
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        new PurityAnalyzer().visit(ast);
+        return super.visit(ast);
+    }
+
+    @Override
+    public Ast visit(Ast.Field ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Method ast) {
+        locals.clear();
+        declare(ast.getStatements(), new HashSet<>(ast.getParameters()));
+        temporaries = 0;
+        return super.visit(ast);
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        List<Ast.Stmt> block = new ArrayList<>();
+        for (Ast.Stmt stmt : statements) {
+            if (stmt instanceof Ast.Stmt.If || stmt instanceof Ast.Stmt.For || stmt instanceof Ast.Stmt.While) {
+                rewritten.addAll(eliminate(block));
+                block.clear();
+                rewrite(stmt, rewritten);
+            } else {
+                block.add(stmt);
+            }
+        }
+        rewritten.addAll(eliminate(block));
+        return rewritten;
+    }
+
+    /**
+     * Repeatedly replaces the largest expression that is worth sharing in a
+     * basic block with a temporary, until no expression is left that is
+     * computed more than once.
+     */
+    private List<Ast.Stmt> eliminate(List<Ast.Stmt> block) {
+        List<Ast.Stmt> statements = new ArrayList<>(block);
+        while (true) {
+            Ast.Expr best = null;
+            int first = -1;
+            int bestSize = 0;
+            for (int i = 0; i < statements.size(); i++) {
+                if (effects(statements.get(i)) == Environment.Purity.EFFECTFUL) {
+                    continue;
+                }
+                List<Ast.Expr> candidates = new ArrayList<>();
+                for (Ast.Expr expr : expressions(statements.get(i))) {
+                    collect(expr, candidates);
+                }
+                for (Ast.Expr candidate : candidates) {
+                    int size = size(candidate);
+                    if (size > bestSize && occurrences(statements, i, candidate) > 1) {
+                        best = candidate;
+                        first = i;
+                        bestSize = size;
+                    }
+                }
+            }
+            if (best == null) {
+                return statements;
+            }
+            String name = "$cse" + temporaries++;
+            Environment.Variable variable = new Environment.Variable(name, name, best.getType(), Environment.NIL);
+            locals.add(variable);
+            Replacer replacer = new Replacer(best, variable);
+            for (int i = first; i < statements.size() && !killedBefore(statements.get(i), best); i++) {
+                statements.set(i, (Ast.Stmt) replacer.visit(statements.get(i)));
+                if (killedAfter(statements.get(i), best)) {
+                    break;
+                }
+            }
+            Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(name, Optional.of(best.getType().getName()), Optional.of(best));
+            declaration.setVariable(variable);
+            statements.add(first, declaration);
+        }
+    }
+
+    /**
+     * Counts the occurrences of {@code target} from the statement at
+     * {@code start} up to the point where it is no longer available.
+     */
+    private int occurrences(List<Ast.Stmt> statements, int start, Ast.Expr target) {
+        int count = 0;
+        for (int i = start; i < statements.size() && !killedBefore(statements.get(i), target); i++) {
+            for (Ast.Expr expr : expressions(statements.get(i))) {
+                count += occurrences(expr, target);
+            }
+            if (killedAfter(statements.get(i), target)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static int occurrences(Ast.Expr expr, Ast.Expr target) {
+        if (expr.equals(target)) {
+            return 1;
+        } else if (expr instanceof Ast.Expr.Group) {
+            return occurrences(((Ast.Expr.Group) expr).getExpression(), target);
+        } else if (expr instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+            if (binary.getOperator().equals("==") || binary.getOperator().equals("!=")) {
+                return 0;
+            }
+            return occurrences(binary.getLeft(), target) + occurrences(binary.getRight(), target);
+        } else if (expr instanceof Ast.Expr.Access) {
+            Optional<Ast.Expr> receiver = ((Ast.Expr.Access) expr).getReceiver();
+            return receiver.isPresent() ? occurrences(receiver.get(), target) : 0;
+        } else if (expr instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expr;
+            int count = function.getReceiver().isPresent() ? occurrences(function.getReceiver().get(), target) : 0;
+            for (Ast.Expr argument : function.getArguments()) {
+                count += occurrences(argument, target);
+            }
+            return count;
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the subexpressions of {@code expr} that are always evaluated and
+     * could be computed into a temporary.
+     */
+    private void collect(Ast.Expr expr, List<Ast.Expr> candidates) {
+        if (expr instanceof Ast.Expr.Group) {
+            collect(((Ast.Expr.Group) expr).getExpression(), candidates);
+            return;
+        } else if (expr instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expr;
+            if (binary.getOperator().equals("==") || binary.getOperator().equals("!=")) {
+                return;
+            }
+            collect(binary.getLeft(), candidates);
+            if (!binary.getOperator().equals("AND") && !binary.getOperator().equals("OR")) {
+                collect(binary.getRight(), candidates);
+            }
+        } else if (expr instanceof Ast.Expr.Access) {
+            Optional<Ast.Expr> receiver = ((Ast.Expr.Access) expr).getReceiver();
+            if (!receiver.isPresent()) {
+                return;
+            }
+            collect(receiver.get(), candidates);
+        } else if (expr instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expr;
+            function.getReceiver().ifPresent(receiver -> collect(receiver, candidates));
+            function.getArguments().forEach(argument -> collect(argument, candidates));
+        } else {
+            return;
+        }
+        if (effects(expr) != Environment.Purity.EFFECTFUL && !expr.getType().equals(Environment.Type.NIL) && !candidates.contains(expr)) {
+            candidates.add(expr);
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@code target} is no longer available when
+     * {@code stmt} starts, because it reads a field that an effectful call
+     * in {@code stmt} may assign.
+     */
+    private boolean killedBefore(Ast.Stmt stmt, Ast.Expr target) {
+        return effects(stmt) == Environment.Purity.EFFECTFUL && effects(target) == Environment.Purity.READ_ONLY;
+    }
+
+    /**
+     * Returns {@code true} if {@code target} is no longer available after
+     * {@code stmt}, because {@code stmt} assigns something it reads, or
+     * declares a variable with the name of one it reads (as later
+     * occurrences, although equal, read the new variable).
+     */
+    private boolean killedAfter(Ast.Stmt stmt, Ast.Expr target) {
+        if (stmt instanceof Ast.Stmt.Declaration) {
+            String name = ((Ast.Stmt.Declaration) stmt).getName();
+            return reads(target, access -> access.getName().equals(name));
+        } else if (stmt instanceof Ast.Stmt.Assignment) {
+            Ast.Expr.Access receiver = (Ast.Expr.Access) ((Ast.Stmt.Assignment) stmt).getReceiver();
+            if (receiver.getReceiver().isPresent() || !locals.contains(receiver.getVariable())) {
+                return effects(target) == Environment.Purity.READ_ONLY;
+            }
+            return reads(target, access -> access.getVariable() == receiver.getVariable());
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if {@code expr} reads a variable (without an
+     * object) matched by {@code matcher}.
+     */
+    private static boolean reads(Ast.Expr expr, Predicate<Ast.Expr.Access> matcher) {
+        if (expr instanceof Ast.Expr.Group) {
+            return reads(((Ast.Expr.Group) expr).getExpression(), matcher);
+        } else if (expr instanceof Ast.Expr.Binary) {
+            return reads(((Ast.Expr.Binary) expr).getLeft(), matcher) || reads(((Ast.Expr.Binary) expr).getRight(), matcher);
+        } else if (expr instanceof Ast.Expr.Access) {
+            Optional<Ast.Expr> receiver = ((Ast.Expr.Access) expr).getReceiver();
+            return receiver.isPresent() ? reads(receiver.get(), matcher) : matcher.test((Ast.Expr.Access) expr);
+        } else if (expr instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expr;
+            if (function.getReceiver().isPresent() && reads(function.getReceiver().get(), matcher)) {
+                return true;
+            }
+            return function.getArguments().stream().anyMatch(argument -> reads(argument, matcher));
+        }
+        return false;
+    }
+
+    private Environment.Purity effects(Ast.Stmt stmt) {
+        Environment.Purity purity = Environment.Purity.PURE;
+        if (stmt instanceof Ast.Stmt.Expression) {
+            purity = effects(((Ast.Stmt.Expression) stmt).getExpression());
+        }
+        for (Ast.Expr expr : expressions(stmt)) {
+            purity = purity.join(effects(expr));
+        }
+        return purity;
+    }
+
+    /**
+     * Returns the side effects of evaluating {@code expr}, where reading
+     * anything other than a local of the current method counts as a read.
+     */
+    private Environment.Purity effects(Ast.Expr expr) {
+        if (expr instanceof Ast.Expr.Group) {
+            return effects(((Ast.Expr.Group) expr).getExpression());
+        } else if (expr instanceof Ast.Expr.Binary) {
+            return effects(((Ast.Expr.Binary) expr).getLeft()).join(effects(((Ast.Expr.Binary) expr).getRight()));
+        } else if (expr instanceof Ast.Expr.Access) {
+            Optional<Ast.Expr> receiver = ((Ast.Expr.Access) expr).getReceiver();
+            if (receiver.isPresent()) {
+                return effects(receiver.get()).join(Environment.Purity.READ_ONLY);
+            }
+            return locals.contains(((Ast.Expr.Access) expr).getVariable()) ? Environment.Purity.PURE : Environment.Purity.READ_ONLY;
+        } else if (expr instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expr;
+            Environment.Purity purity = function.getFunction().getPurity();
+            if (function.getReceiver().isPresent()) {
+                purity = purity.join(effects(function.getReceiver().get()));
+            }
+            for (Ast.Expr argument : function.getArguments()) {
+                purity = purity.join(effects(argument));
+            }
+            return purity;
+        }
+        return Environment.Purity.PURE;
+    }
+
+    /**
+     * Returns the expressions evaluated by a statement of a basic block that
+     * may be replaced. The call of an expression statement is excluded, as
+     * it must remain a call.
+     */
+    private static List<Ast.Expr> expressions(Ast.Stmt stmt) {
+        List<Ast.Expr> expressions = new ArrayList<>();
+        if (stmt instanceof Ast.Stmt.Expression) {
+            Ast.Expr expression = ((Ast.Stmt.Expression) stmt).getExpression();
+            if (expression instanceof Ast.Expr.Function) {
+                ((Ast.Expr.Function) expression).getReceiver().ifPresent(expressions::add);
+                expressions.addAll(((Ast.Expr.Function) expression).getArguments());
+            }
+        } else if (stmt instanceof Ast.Stmt.Declaration) {
+            ((Ast.Stmt.Declaration) stmt).getValue().ifPresent(expressions::add);
+        } else if (stmt instanceof Ast.Stmt.Assignment) {
+            ((Ast.Expr.Access) ((Ast.Stmt.Assignment) stmt).getReceiver()).getReceiver().ifPresent(expressions::add);
+            expressions.add(((Ast.Stmt.Assignment) stmt).getValue());
+        } else if (stmt instanceof Ast.Stmt.Return) {
+            expressions.add(((Ast.Stmt.Return) stmt).getValue());
+        }
+        return expressions;
+    }
+
+    private static int size(Ast.Expr expr) {
+        if (expr instanceof Ast.Expr.Group) {
+            return 1 + size(((Ast.Expr.Group) expr).getExpression());
+        } else if (expr instanceof Ast.Expr.Binary) {
+            return 1 + size(((Ast.Expr.Binary) expr).getLeft()) + size(((Ast.Expr.Binary) expr).getRight());
+        } else if (expr instanceof Ast.Expr.Access) {
+            Optional<Ast.Expr> receiver = ((Ast.Expr.Access) expr).getReceiver();
+            return 1 + (receiver.isPresent() ? size(receiver.get()) : 0);
+        } else if (expr instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expr;
+            int size = 1 + (function.getReceiver().isPresent() ? size(function.getReceiver().get()) : 0);
+            for (Ast.Expr argument : function.getArguments()) {
+                size += size(argument);
+            }
+            return size;
+        }
+        return 1;
+    }
+
+    /**
+     * Records the locals of a method body: the variables of its declarations,
+     * and those of the accesses to a parameter or loop variable, whose names
+     * are {@code bound} where they are accessed (so they can't be fields).
+     */
+    private void declare(List<Ast.Stmt> statements, Set<String> bound) {
+        for (Ast.Stmt stmt : statements) {
+            if (stmt instanceof Ast.Stmt.Expression) {
+                declare(((Ast.Stmt.Expression) stmt).getExpression(), bound);
+            } else if (stmt instanceof Ast.Stmt.Declaration) {
+                ((Ast.Stmt.Declaration) stmt).getValue().ifPresent(value -> declare(value, bound));
+                locals.add(((Ast.Stmt.Declaration) stmt).getVariable());
+            } else if (stmt instanceof Ast.Stmt.Assignment) {
+                declare(((Ast.Stmt.Assignment) stmt).getReceiver(), bound);
+                declare(((Ast.Stmt.Assignment) stmt).getValue(), bound);
+            } else if (stmt instanceof Ast.Stmt.If) {
+                declare(((Ast.Stmt.If) stmt).getCondition(), bound);
+                declare(((Ast.Stmt.If) stmt).getThenStatements(), bound);
+                declare(((Ast.Stmt.If) stmt).getElseStatements(), bound);
+            } else if (stmt instanceof Ast.Stmt.For) {
+                declare(((Ast.Stmt.For) stmt).getValue(), bound);
+                Set<String> loop = new HashSet<>(bound);
+                loop.add(((Ast.Stmt.For) stmt).getName());
+                declare(((Ast.Stmt.For) stmt).getStatements(), loop);
+            } else if (stmt instanceof Ast.Stmt.While) {
+                declare(((Ast.Stmt.While) stmt).getCondition(), bound);
+                declare(((Ast.Stmt.While) stmt).getStatements(), bound);
+            } else if (stmt instanceof Ast.Stmt.Return) {
+                declare(((Ast.Stmt.Return) stmt).getValue(), bound);
+            }
+        }
+    }
+
+    private void declare(Ast.Expr expr, Set<String> bound) {
+        if (expr instanceof Ast.Expr.Group) {
+            declare(((Ast.Expr.Group) expr).getExpression(), bound);
+        } else if (expr instanceof Ast.Expr.Binary) {
+            declare(((Ast.Expr.Binary) expr).getLeft(), bound);
+            declare(((Ast.Expr.Binary) expr).getRight(), bound);
+        } else if (expr instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expr;
+            if (access.getReceiver().isPresent()) {
+                declare(access.getReceiver().get(), bound);
+            } else if (bound.contains(access.getName())) {
+                locals.add(access.getVariable());
+            }
+        } else if (expr instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expr;
+            function.getReceiver().ifPresent(receiver -> declare(receiver, bound));
+            function.getArguments().forEach(argument -> declare(argument, bound));
+        }
+    }
+
+    /**
+     * Replaces every occurrence of an expression with an access to the
+     * temporary holding its value.
+     */
+    private static final class Replacer extends Rewriter {
+
+        private final Ast.Expr target;
+        private final Environment.Variable variable;
+
+        private Replacer(Ast.Expr target, Environment.Variable variable) {
+            this.target = target;
+            this.variable = variable;
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Expression ast) {
+            Ast.Expr expression = (Ast.Expr) visit(ast.getExpression());
+            return expression == ast.getExpression() ? ast : new Ast.Stmt.Expression(expression);
+        }
+
+        @Override
+        public Ast visit(Ast.Stmt.Assignment ast) {
+            Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+            Optional<Ast.Expr> object = rewrite(receiver.getReceiver());
+            Ast.Expr value = rewrite(ast.getValue());
+            if (object == receiver.getReceiver() && value == ast.getValue()) {
+                return ast;
+            }
+            Ast.Expr.Access access = new Ast.Expr.Access(object, receiver.getName());
+            access.setVariable(receiver.getVariable());
+            return new Ast.Stmt.Assignment(access, value);
+        }
+
+        @Override
+        public Ast visit(Ast.Expr.Binary ast) {
+            if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+                return ast;
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        protected Ast.Expr rewrite(Ast.Expr expr) {
+            if (expr.equals(target) || expr instanceof Ast.Expr.Group && ((Ast.Expr.Group) expr).getExpression().equals(target)) {
+                Ast.Expr.Access access = new Ast.Expr.Access(Optional.empty(), variable.getName());
+                access.setVariable(variable);
+                return access;
+            }
+            return super.rewrite(expr);
+        }
+
+    }
+
+}
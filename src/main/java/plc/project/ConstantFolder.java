@@ -0,0 +1,270 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Optimization pass run between the {@link Analyzer} and the back ends. It
+ * evaluates binary expressions whose operands are literals, applies the
+ * integer and boolean identities that let an operand stand in for the whole
+ * expression, removes groups that no longer affect precedence, and prunes
+ * {@code IF}/{@code WHILE} statements whose condition is a literal.
+ *
+ * Folding follows the {@link Interpreter}'s semantics, so the operands of
+ * {@code ==} and {@code !=} (which are compared as ASTs, without being
+ * evaluated) are left exactly as written, groups included. Results that the
+ * {@link Generator} could not emit as literals (integers outside of the 32-bit
+ * range, infinite decimals) and operations that fail at runtime (division by
+ * zero) are left alone so that their behavior is unchanged.
+ */
+public final class ConstantFolder extends Rewriter {
+
+    private static final BigInteger INT_MIN = BigInteger.valueOf(Integer.MIN_VALUE);
+    private static final BigInteger INT_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
+
+    @Override
+    public Ast visit(Ast.Field ast) {
+        Optional<Ast.Expr> value = ast.getValue().map(this::rewriteTopLevel);
+        if (same(value, ast.getValue())) {
+            return ast;
+        }
+        Ast.Field field = new Ast.Field(ast.getName(), ast.getTypeName(), value);
+        field.setVariable(ast.getVariable());
+        return field;
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Declaration ast) {
+        Optional<Ast.Expr> value = ast.getValue().map(this::rewriteTopLevel);
+        if (same(value, ast.getValue())) {
+            return ast;
+        }
+        Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(ast.getName(), ast.getTypeName(), value);
+        declaration.setVariable(ast.getVariable());
+        return declaration;
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr value = rewriteTopLevel(ast.getValue());
+        Ast.Expr receiver = rewrite(ast.getReceiver());
+        if (receiver == ast.getReceiver() && value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Stmt.Assignment(receiver, value);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Return ast) {
+        Ast.Expr value = rewriteTopLevel(ast.getValue());
+        return value == ast.getValue() ? ast : new Ast.Stmt.Return(value);
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Group ast) {
+        Ast.Expr expression = rewrite(ast.getExpression());
+        if (!(expression instanceof Ast.Expr.Binary)) {
+            return expression;
+        }
+        if (expression == ast.getExpression()) {
+            return ast;
+        }
+        Ast.Expr.Group group = new Ast.Expr.Group(expression);
+        group.setType(ast.getType());
+        return group;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Binary ast) {
+        if (ast.getOperator().equals("==") || ast.getOperator().equals("!=")) {
+            return ast;
+        }
+        Ast.Expr left = rewrite(ast.getLeft());
+        Ast.Expr right = rewrite(ast.getRight());
+        String op = ast.getOperator();
+
+        if (op.equals("AND") || op.equals("OR")) {
+            boolean identity = op.equals("AND");
+            if (left instanceof Ast.Expr.Literal) {
+                // TRUE AND x is x, FALSE AND x is FALSE (x is never evaluated)
+                return isLiteral(left, identity) ? right : left;
+            }
+            if (isLiteral(right, identity)) {
+                return left;
+            }
+        }
+        else if (left instanceof Ast.Expr.Literal && right instanceof Ast.Expr.Literal) {
+            Object value = fold(op, ((Ast.Expr.Literal) left).getLiteral(), ((Ast.Expr.Literal) right).getLiteral());
+            if (value != null) {
+                return literal(value, ast.getType());
+            }
+        }
+        else if (ast.getType().equals(Environment.Type.INTEGER)) {
+            if ((op.equals("+") || op.equals("-")) && isLiteral(right, BigInteger.ZERO)
+                    || (op.equals("*") || op.equals("/")) && isLiteral(right, BigInteger.ONE)) {
+                return left;
+            }
+            if (op.equals("+") && isLiteral(left, BigInteger.ZERO) || op.equals("*") && isLiteral(left, BigInteger.ONE)) {
+                return right;
+            }
+        }
+
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        Ast.Expr.Binary binary = new Ast.Expr.Binary(op, left, right);
+        binary.setType(ast.getType());
+        return binary;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Function ast) {
+        Optional<Ast.Expr> receiver = rewrite(ast.getReceiver());
+        List<Ast.Expr> arguments = new ArrayList<>();
+        boolean changed = receiver != ast.getReceiver();
+        for (Ast.Expr argument : ast.getArguments()) {
+            Ast.Expr rewritten = rewriteTopLevel(argument);
+            changed |= rewritten != argument;
+            arguments.add(rewritten);
+        }
+        if (!changed) {
+            return ast;
+        }
+        Ast.Expr.Function function = new Ast.Expr.Function(receiver, ast.getName(), arguments);
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    @Override
+    protected void rewrite(Ast.Stmt stmt, List<Ast.Stmt> output) {
+        if (stmt instanceof Ast.Stmt.If) {
+            Ast.Stmt.If ast = (Ast.Stmt.If) stmt;
+            Ast.Expr condition = rewriteTopLevel(ast.getCondition());
+            if (condition instanceof Ast.Expr.Literal) {
+                List<Ast.Stmt> taken = rewrite(isLiteral(condition, true) ? ast.getThenStatements() : ast.getElseStatements());
+                if (!declares(taken)) {
+                    output.addAll(taken);
+                }
+                else {
+                    // the branch still needs its own scope for its declarations
+                    output.add(new Ast.Stmt.If(literal(true, Environment.Type.BOOLEAN), taken, new ArrayList<>()));
+                }
+                return;
+            }
+            List<Ast.Stmt> thenStatements = rewrite(ast.getThenStatements());
+            List<Ast.Stmt> elseStatements = rewrite(ast.getElseStatements());
+            if (condition == ast.getCondition() && same(thenStatements, ast.getThenStatements()) && same(elseStatements, ast.getElseStatements())) {
+                output.add(ast);
+            }
+            else {
+                output.add(new Ast.Stmt.If(condition, thenStatements, elseStatements));
+            }
+        }
+        else if (stmt instanceof Ast.Stmt.While) {
+            Ast.Stmt.While ast = (Ast.Stmt.While) stmt;
+            Ast.Expr condition = rewriteTopLevel(ast.getCondition());
+            if (isLiteral(condition, false)) {
+                return;
+            }
+            List<Ast.Stmt> statements = rewrite(ast.getStatements());
+            if (condition == ast.getCondition() && same(statements, ast.getStatements())) {
+                output.add(ast);
+            }
+            else {
+                output.add(new Ast.Stmt.While(condition, statements));
+            }
+        }
+        else {
+            super.rewrite(stmt, output);
+        }
+    }
+
+    /**
+     * Rewrites an expression that is not an operand of another expression, so
+     * a surrounding group has no effect on precedence and can be dropped.
+     */
+    private Ast.Expr rewriteTopLevel(Ast.Expr expr) {
+        Ast.Expr rewritten = rewrite(expr);
+        while (rewritten instanceof Ast.Expr.Group) {
+            rewritten = ((Ast.Expr.Group) rewritten).getExpression();
+        }
+        return rewritten;
+    }
+
+    /**
+     * Returns the folded value of {@code left op right}, or {@code null} if
+     * the expression must be left for runtime.
+     */
+    private static Object fold(String op, Object left, Object right) {
+        if (left instanceof BigInteger && right instanceof BigInteger) {
+            BigInteger l = (BigInteger) left;
+            BigInteger r = (BigInteger) right;
+            BigInteger result = null;
+            if (op.equals("+")) {
+                result = l.add(r);
+            }
+            else if (op.equals("-")) {
+                result = l.subtract(r);
+            }
+            else if (op.equals("*")) {
+                result = l.multiply(r);
+            }
+            else if (op.equals("/") && r.signum() != 0) {
+                result = l.divide(r);
+            }
+            return result != null && result.compareTo(INT_MIN) >= 0 && result.compareTo(INT_MAX) <= 0 ? result : null;
+        }
+        else if (left instanceof BigDecimal && right instanceof BigDecimal) {
+            BigDecimal l = (BigDecimal) left;
+            BigDecimal r = (BigDecimal) right;
+            BigDecimal result = null;
+            if (op.equals("+")) {
+                result = l.add(r);
+            }
+            else if (op.equals("-")) {
+                result = l.subtract(r);
+            }
+            else if (op.equals("*")) {
+                result = l.multiply(r);
+            }
+            else if (op.equals("/") && r.signum() != 0) {
+                result = l.divide(r, RoundingMode.HALF_EVEN);
+            }
+            return result != null && !Double.isInfinite(result.doubleValue()) ? result : null;
+        }
+        else if (left instanceof String && op.equals("+")) {
+            if (right instanceof String || right instanceof BigInteger || right instanceof Boolean) {
+                return left + right.toString();
+            }
+        }
+        return null;
+    }
+
+    private static boolean declares(List<Ast.Stmt> statements) {
+        for (Ast.Stmt stmt : statements) {
+            if (stmt instanceof Ast.Stmt.Declaration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLiteral(Ast.Expr expr, Object value) {
+        return expr instanceof Ast.Expr.Literal && value.equals(((Ast.Expr.Literal) expr).getLiteral());
+    }
+
+    private static Ast.Expr.Literal literal(Object value, Environment.Type type) {
+        Ast.Expr.Literal literal = new Ast.Expr.Literal(value);
+        literal.setType(type);
+        return literal;
+    }
+
+    private static boolean same(Optional<Ast.Expr> first, Optional<Ast.Expr> second) {
+        return first.isPresent() ? second.isPresent() && first.get() == second.get() : !second.isPresent();
+    }
+
+}
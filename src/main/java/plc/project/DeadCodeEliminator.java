@@ -0,0 +1,317 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reachability pass over an analyzed {@link Ast.Source}. It removes methods
+ * that cannot be called (directly or transitively) from {@code main/0},
+ * fields whose value is never read, and statements that follow a statement
+ * which always returns. The result is accepted by both the
+ * {@link Interpreter} and the {@link Generator}.
+ *
+ * Variables and functions are matched by the identity of the objects the
+ * {@link Analyzer} attached to the AST, so locals and parameters that shadow
+ * a field are never confused with it. A field is only removed when dropping
+ * it (and the assignments to it) cannot skip a function call or an error
+ * (see {@link #mayFail(Ast.Expr)}).
+ */
+public final class DeadCodeEliminator extends Rewriter {
+
+    private Set<Environment.Variable> deadFields = identitySet();
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        deadFields = identitySet();
+        Ast.Source source = (Ast.Source) super.visit(ast);
+        while (true) {
+            Ast.Source next = eliminate(source);
+            if (next.getFields().size() == source.getFields().size() && next.getMethods().size() == source.getMethods().size()) {
+                return next;
+            }
+            source = next;
+        }
+    }
+
+    @Override
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        for (Ast.Stmt stmt : statements) {
+            rewrite(stmt, rewritten);
+            if (!rewritten.isEmpty() && terminates(rewritten.get(rewritten.size() - 1))) {
+                break;
+            }
+        }
+        return rewritten;
+    }
+
+    @Override
+    protected void rewrite(Ast.Stmt stmt, List<Ast.Stmt> output) {
+        if (stmt instanceof Ast.Stmt.Assignment && deadFields.contains(target((Ast.Stmt.Assignment) stmt))) {
+            return;
+        }
+        super.rewrite(stmt, output);
+    }
+
+    /**
+     * Runs a single round of elimination over a source whose unreachable
+     * statements were already removed. Removing a field or method can make
+     * others unused, so {@link #visit(Ast.Source)} repeats this until nothing
+     * else is removed.
+     */
+    private Ast.Source eliminate(Ast.Source ast) {
+        Map<Environment.Function, Ast.Method> methods = new IdentityHashMap<>();
+        Ast.Method main = null;
+        for (Ast.Method method : ast.getMethods()) {
+            methods.put(method.getFunction(), method);
+            if (method.getName().equals("main") && method.getParameters().isEmpty()) {
+                main = method;
+            }
+        }
+
+        Usage usage = new Usage();
+        for (Ast.Field field : ast.getFields()) {
+            usage.visit(field);
+        }
+        Set<Ast.Method> reachable = identitySet();
+        Deque<Ast.Method> pending = new ArrayDeque<>();
+        for (Ast.Method method : main != null ? Collections.singletonList(main) : ast.getMethods()) {
+            reachable.add(method);
+            pending.add(method);
+        }
+        while (!pending.isEmpty()) {
+            usage.visit(pending.remove());
+            for (Environment.Function function : usage.calls) {
+                Ast.Method method = methods.get(function);
+                if (method != null && reachable.add(method)) {
+                    pending.add(method);
+                }
+            }
+            usage.calls.clear();
+        }
+
+        deadFields = identitySet();
+        for (Ast.Field field : ast.getFields()) {
+            if (!usage.reads.contains(field.getVariable()) && !usage.failing.contains(field.getVariable())
+                    && !(field.getValue().isPresent() && mayFail(field.getValue().get()))) {
+                deadFields.add(field.getVariable());
+            }
+        }
+
+        List<Ast.Field> fields = new ArrayList<>();
+        for (Ast.Field field : ast.getFields()) {
+            if (!deadFields.contains(field.getVariable())) {
+                fields.add(field);
+            }
+        }
+        List<Ast.Method> live = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            if (reachable.contains(method)) {
+                live.add((Ast.Method) visit(method));
+            }
+        }
+        return new Ast.Source(fields, live);
+    }
+
+    /**
+     * Returns {@code true} if control never continues past {@code stmt}.
+     */
+    private static boolean terminates(Ast.Stmt stmt) {
+        if (stmt instanceof Ast.Stmt.Return) {
+            return true;
+        }
+        if (stmt instanceof Ast.Stmt.If) {
+            List<Ast.Stmt> thenStatements = ((Ast.Stmt.If) stmt).getThenStatements();
+            List<Ast.Stmt> elseStatements = ((Ast.Stmt.If) stmt).getElseStatements();
+            return !thenStatements.isEmpty() && terminates(thenStatements.get(thenStatements.size() - 1))
+                    && !elseStatements.isEmpty() && terminates(elseStatements.get(elseStatements.size() - 1));
+        }
+        return false;
+    }
+
+    /**
+     * Returns the variable assigned by {@code ast}, or {@code null} if the
+     * assignment targets the field of an object.
+     */
+    private static Environment.Variable target(Ast.Stmt.Assignment ast) {
+        if (ast.getReceiver() instanceof Ast.Expr.Access && !((Ast.Expr.Access) ast.getReceiver()).getReceiver().isPresent()) {
+            return ((Ast.Expr.Access) ast.getReceiver()).getVariable();
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code false} if evaluating {@code ast} provably neither calls
+     * a function nor throws. Binary operations (other than {@code ==} and
+     * {@code !=}, which compare ASTs) are only trusted on literals, as other
+     * operands may be nil, and division only by a literal other than zero.
+     */
+    private static boolean mayFail(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Literal) {
+            return false;
+        } else if (ast instanceof Ast.Expr.Group) {
+            return mayFail(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Access) {
+            return ((Ast.Expr.Access) ast).getReceiver().isPresent();
+        } else if (ast instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) ast;
+            if (binary.getOperator().equals("==") || binary.getOperator().equals("!=")) {
+                return false;
+            }
+            Ast.Expr left = unwrap(binary.getLeft());
+            Ast.Expr right = unwrap(binary.getRight());
+            if (!(left instanceof Ast.Expr.Literal) || !(right instanceof Ast.Expr.Literal)) {
+                return true;
+            }
+            Object divisor = ((Ast.Expr.Literal) right).getLiteral();
+            return binary.getOperator().equals("/") && !(divisor instanceof BigInteger && ((BigInteger) divisor).signum() != 0
+                    || divisor instanceof BigDecimal && ((BigDecimal) divisor).signum() != 0);
+        }
+        return true;
+    }
+
+    private static Ast.Expr unwrap(Ast.Expr ast) {
+        while (ast instanceof Ast.Expr.Group) {
+            ast = ((Ast.Expr.Group) ast).getExpression();
+        }
+        return ast;
+    }
+
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Collects the functions called and the variables read by the visited
+     * code. Variables assigned a value that may call a function or throw are
+     * recorded in {@link #failing}, as removing those assignments would skip
+     * the call or the error.
+     */
+    private static final class Usage implements Ast.Visitor<Void> {
+
+        private final Set<Environment.Function> calls = identitySet();
+        private final Set<Environment.Variable> reads = identitySet();
+        private final Set<Environment.Variable> failing = identitySet();
+
+        /**
+         * Sources are never visited, as {@link #eliminate(Ast.Source)} visits
+         * their fields and only the methods that are reachable.
+         */
+        @Override
+        public Void visit(Ast.Source ast) {
+            throw new IllegalStateException("Usage is collected from fields and reachable methods, not whole sources.");
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            Environment.Variable target = target(ast);
+            if (target == null) {
+                visit(ast.getReceiver());
+            } else if (mayFail(ast.getValue())) {
+                failing.add(target);
+            }
+            visit(ast.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            visit(ast.getCondition());
+            ast.getThenStatements().forEach(this::visit);
+            ast.getElseStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            visit(ast.getValue());
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            visit(ast.getCondition());
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            visit(ast.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            if (ast.getReceiver().isPresent()) {
+                visit(ast.getReceiver().get());
+            } else {
+                reads.add(ast.getVariable());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            ast.getReceiver().ifPresent(this::visit);
+            ast.getArguments().forEach(this::visit);
+            if (!ast.getReceiver().isPresent()) {
+                calls.add(ast.getFunction());
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -1,10 +1,10 @@
 package plc.project;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 public final class Environment {
 
@@ -17,24 +17,77 @@ public final class Environment {
 
     });
 
-    private static final Map<String, Type> TYPES = new HashMap<>();
+    /**
+     * The type of values created by {@link #create(Object)}, which share one
+     * scope without any fields or methods.
+     */
+    private static final Type PRIMITIVE = new Type("Unknown", "Unknown", new Scope(null));
+
+    public static final PlcObject TRUE = new PlcObject(PRIMITIVE, PRIMITIVE.getScope(), true);
+    public static final PlcObject FALSE = new PlcObject(PRIMITIVE, PRIMITIVE.getScope(), false);
+
+    private static final int SMALL_INTEGER_MIN = -128;
+    private static final int SMALL_INTEGER_MAX = 1024;
+    private static final PlcObject[] SMALL_INTEGERS = new PlcObject[SMALL_INTEGER_MAX - SMALL_INTEGER_MIN + 1];
+
+    private static final TypeRegistry TYPES = new TypeRegistry(null);
+
+    /**
+     * Returns the registry of the builtin types, which is the parent of the
+     * registries of tenants and is used when no registry is given.
+     */
+    public static TypeRegistry getTypes() {
+        return TYPES;
+    }
 
     public static Type getType(String name) {
-        if (!TYPES.containsKey(name)) {
-            throw new RuntimeException("Unknown type " + name + ".");
-        }
-        return TYPES.get(name);
+        return TYPES.getType(name);
     }
 
     public static void registerType(Type type) {
-        if (TYPES.containsKey(type.getName())) {
-            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
-        }
-        TYPES.put(type.getName(), type);
+        TYPES.register(type);
     }
 
+    /**
+     * Returns an object holding {@code value}. Booleans and small integers
+     * are canonical, so creating them does not allocate; since the values are
+     * immutable and the scope is empty, they can't be told apart from new
+     * objects by programs.
+     */
     public static PlcObject create(Object value) {
-        return new PlcObject(new Scope(null), value);
+        if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE : FALSE;
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 32) {
+            int integer = ((BigInteger) value).intValue();
+            if (integer >= SMALL_INTEGER_MIN && integer <= SMALL_INTEGER_MAX) {
+                return SMALL_INTEGERS[integer - SMALL_INTEGER_MIN];
+            }
+        }
+        return new PlcObject(PRIMITIVE, PRIMITIVE.getScope(), value);
+    }
+
+    /**
+     * Returns an object holding the integer {@code value}, like
+     * {@link #create(Object)}, which is held as a {@code long} (see
+     * {@link PlcObject#isLong()}) without creating a {@link BigInteger}.
+     */
+    public static PlcObject createInteger(long value) {
+        if (value >= SMALL_INTEGER_MIN && value <= SMALL_INTEGER_MAX) {
+            return SMALL_INTEGERS[(int) value - SMALL_INTEGER_MIN];
+        }
+        return new PlcObject(PRIMITIVE, PRIMITIVE.getScope(), null, value, true);
+    }
+
+    /**
+     * Returns an object holding the value of {@code object}, like
+     * {@code create(object.getValue())}, without converting an integer held
+     * as a {@code long} to a {@link BigInteger}.
+     */
+    public static PlcObject createFrom(PlcObject object) {
+        if (object.isLong()) {
+            return object.getType() == PRIMITIVE ? object : createInteger(object.getLong());
+        }
+        return create(object.getValue());
     }
 
     public static final class Type {
@@ -94,16 +147,29 @@ public final class Environment {
 
         private final Type type;
         private final Scope scope;
-        private final Object value;
+        private Object value;
+        private final long integer;
+        private final boolean isLong;
 
         public PlcObject(Scope scope, Object value) {
             this(new Type("Unknown", "Unknown", scope), scope, value);
         }
 
+        /**
+         * Creates an object holding {@code value}. Integers which fit in a
+         * {@code long} are also held as one, see {@link #isLong()}.
+         */
         public PlcObject(Type type, Scope scope, Object value) {
+            this(type, scope, value, value instanceof BigInteger ? ((BigInteger) value).longValue() : 0,
+                    value instanceof BigInteger && ((BigInteger) value).bitLength() < 64);
+        }
+
+        private PlcObject(Type type, Scope scope, Object value, long integer, boolean isLong) {
             this.type = type;
             this.scope = scope;
             this.value = value;
+            this.integer = integer;
+            this.isLong = isLong;
         }
 
         public Type getType() {
@@ -120,20 +186,58 @@ public final class Environment {
 
         public PlcObject callMethod(String name, List<PlcObject> arguments) {
             Function function = type.getMethod(name, arguments.size());
-            arguments = new ArrayList<>(arguments);
-            arguments.add(0, this);
-            return function.invoke(arguments);
+            switch (arguments.size()) {
+                case 0:
+                    return function.invoke1(this);
+                case 1:
+                    return function.invoke2(this, arguments.get(0));
+                case 2:
+                    return function.invoke3(this, arguments.get(0), arguments.get(1));
+                case 3:
+                    return function.invoke4(this, arguments.get(0), arguments.get(1), arguments.get(2));
+                default:
+                    return function.invokeMethod(this, arguments.toArray(new PlcObject[0]));
+            }
+        }
+
+        public PlcObject callMethod(String name, PlcObject... arguments) {
+            return type.getMethod(name, arguments.length).invokeMethod(this, arguments);
         }
 
+        /**
+         * Returns the value of this object, which is a {@link BigInteger} for
+         * integers (created once for an integer held as a {@code long}).
+         */
         public Object getValue() {
+            Object value = this.value;
+            if (value == null && isLong) {
+                value = BigInteger.valueOf(integer);
+                this.value = value;
+            }
             return value;
         }
 
+        /**
+         * Returns {@code true} if this object holds an integer which fits in a
+         * {@code long}. All such integers are held as one, so engines can
+         * compute with {@link #getLong()} instead of {@link BigInteger}s.
+         */
+        public boolean isLong() {
+            return isLong;
+        }
+
+        public long getLong() {
+            if (!isLong) {
+                throw new IllegalStateException("The value " + value + " is not an integer held as a long.");
+            }
+            return integer;
+        }
+
         @Override
         public String toString() {
             return "Object{" +
                     "type=" + type +
-                    ", value=" + value +
+                    ", value=" + getValue() +
                     ", scope=" + scope +
                     '}';
         }
@@ -146,6 +250,7 @@ public final class Environment {
         private final String jvmName;
         private final Type type;
         private PlcObject value;
+        Scope.Edit owner = null;
 
         public Variable(String name, PlcObject value) {
             this(name, name, Type.ANY, value);
@@ -174,7 +279,14 @@ public final class Environment {
             return value;
         }
 
+        /**
+         * Sets the value of this variable, unless it is part of a snapshot
+         * of its scope (see {@link Scope#snapshot()}).
+         */
         public void setValue(PlcObject value) {
+            if (owner != null && owner.frozen) {
+                throw new IllegalStateException("The variable " + name + " is part of a snapshot and cannot be assigned.");
+            }
             this.value = value;
         }
 
@@ -198,6 +310,24 @@ public final class Environment {
 
     }
 
+    /**
+     * The side effects a function may have when invoked, ordered from least
+     * to most restrictive for optimizations. Calls to {@link #PURE} functions
+     * can be memoized, shared or reordered freely, while calls to
+     * {@link #READ_ONLY} functions can only be reordered among other reads.
+     */
+    public enum Purity {
+
+        PURE,
+        READ_ONLY,
+        EFFECTFUL;
+
+        public Purity join(Purity other) {
+            return compareTo(other) >= 0 ? this : other;
+        }
+
+    }
+
     public static final class Function {
 
         private final String name;
@@ -205,6 +335,8 @@ public final class Environment {
         private final List<Type> parameterTypes;
         private final Type returnType;
         private final java.util.function.Function<List<PlcObject>, PlcObject> function;
+        private final Object invoker;
+        private Purity purity = Purity.EFFECTFUL;
 
         public Function(String name, int arity, java.util.function.Function<List<PlcObject>, PlcObject> function) {
             this(name, name, new ArrayList<>(), Type.ANY, function);
@@ -214,11 +346,42 @@ public final class Environment {
         }
 
         public Function(String name, String jvmName, List<Type> parameterTypes, Type returnType, java.util.function.Function<List<PlcObject>, PlcObject> function) {
+            this(name, jvmName, parameterTypes, returnType, function, null);
+        }
+
+        private Function(String name, String jvmName, List<Type> parameterTypes, Type returnType, java.util.function.Function<List<PlcObject>, PlcObject> function, Object invoker) {
             this.name = name;
             this.jvmName = jvmName;
             this.parameterTypes = parameterTypes;
             this.returnType = returnType;
             this.function = function;
+            this.invoker = invoker;
+        }
+
+        /**
+         * Returns a function taking its arguments as parameters of
+         * {@code invoker} rather than as a list, so that it can be called
+         * with {@link #invoke0()} to {@link #invoke4} without allocating
+         * one. The same goes for the functions below, up to four arguments.
+         */
+        public static Function of(String name, String jvmName, List<Type> parameterTypes, Type returnType, Invoker0 invoker) {
+            return new Function(name, jvmName, parameterTypes, returnType, args -> invoker.invoke(), invoker);
+        }
+
+        public static Function of(String name, String jvmName, List<Type> parameterTypes, Type returnType, Invoker1 invoker) {
+            return new Function(name, jvmName, parameterTypes, returnType, args -> invoker.invoke(args.get(0)), invoker);
+        }
+
+        public static Function of(String name, String jvmName, List<Type> parameterTypes, Type returnType, Invoker2 invoker) {
+            return new Function(name, jvmName, parameterTypes, returnType, args -> invoker.invoke(args.get(0), args.get(1)), invoker);
+        }
+
+        public static Function of(String name, String jvmName, List<Type> parameterTypes, Type returnType, Invoker3 invoker) {
+            return new Function(name, jvmName, parameterTypes, returnType, args -> invoker.invoke(args.get(0), args.get(1), args.get(2)), invoker);
+        }
+
+        public static Function of(String name, String jvmName, List<Type> parameterTypes, Type returnType, Invoker4 invoker) {
+            return new Function(name, jvmName, parameterTypes, returnType, args -> invoker.invoke(args.get(0), args.get(1), args.get(2), args.get(3)), invoker);
         }
 
         public String getName() {
@@ -237,10 +400,101 @@ public final class Environment {
             return returnType;
         }
 
+        /**
+         * Returns the side effects of this function, which are assumed to be
+         * {@link Purity#EFFECTFUL} unless known otherwise (see
+         * {@link PurityAnalyzer}).
+         */
+        public Purity getPurity() {
+            return purity;
+        }
+
+        public void setPurity(Purity purity) {
+            this.purity = purity;
+        }
+
         public PlcObject invoke(List<PlcObject> arguments) {
+            if (invoker != null) {
+                switch (arguments.size()) {
+                    case 0:
+                        return invoke0();
+                    case 1:
+                        return invoke1(arguments.get(0));
+                    case 2:
+                        return invoke2(arguments.get(0), arguments.get(1));
+                    case 3:
+                        return invoke3(arguments.get(0), arguments.get(1), arguments.get(2));
+                    case 4:
+                        return invoke4(arguments.get(0), arguments.get(1), arguments.get(2), arguments.get(3));
+                }
+            }
             return function.apply(arguments);
         }
 
+        /**
+         * Invokes the function with {@code arguments}, which is only wrapped
+         * in a list if the function takes one (see
+         * {@link #of(String, String, List, Type, Invoker0)}).
+         */
+        public PlcObject invoke(PlcObject... arguments) {
+            switch (arguments.length) {
+                case 0:
+                    return invoke0();
+                case 1:
+                    return invoke1(arguments[0]);
+                case 2:
+                    return invoke2(arguments[0], arguments[1]);
+                case 3:
+                    return invoke3(arguments[0], arguments[1], arguments[2]);
+                case 4:
+                    return invoke4(arguments[0], arguments[1], arguments[2], arguments[3]);
+                default:
+                    return function.apply(Arrays.asList(arguments));
+            }
+        }
+
+        public PlcObject invoke0() {
+            return invoker instanceof Invoker0 ? ((Invoker0) invoker).invoke() : function.apply(Collections.emptyList());
+        }
+
+        public PlcObject invoke1(PlcObject a) {
+            return invoker instanceof Invoker1 ? ((Invoker1) invoker).invoke(a) : function.apply(Collections.singletonList(a));
+        }
+
+        public PlcObject invoke2(PlcObject a, PlcObject b) {
+            return invoker instanceof Invoker2 ? ((Invoker2) invoker).invoke(a, b) : function.apply(Arrays.asList(a, b));
+        }
+
+        public PlcObject invoke3(PlcObject a, PlcObject b, PlcObject c) {
+            return invoker instanceof Invoker3 ? ((Invoker3) invoker).invoke(a, b, c) : function.apply(Arrays.asList(a, b, c));
+        }
+
+        public PlcObject invoke4(PlcObject a, PlcObject b, PlcObject c, PlcObject d) {
+            return invoker instanceof Invoker4 ? ((Invoker4) invoker).invoke(a, b, c, d) : function.apply(Arrays.asList(a, b, c, d));
+        }
+
+        /**
+         * Invokes the function as a method of {@code receiver}, which is
+         * passed before {@code arguments}.
+         */
+        public PlcObject invokeMethod(PlcObject receiver, PlcObject... arguments) {
+            switch (arguments.length) {
+                case 0:
+                    return invoke1(receiver);
+                case 1:
+                    return invoke2(receiver, arguments[0]);
+                case 2:
+                    return invoke3(receiver, arguments[0], arguments[1]);
+                case 3:
+                    return invoke4(receiver, arguments[0], arguments[1], arguments[2]);
+                default:
+                    PlcObject[] values = new PlcObject[arguments.length + 1];
+                    values[0] = receiver;
+                    System.arraycopy(arguments, 0, values, 1, arguments.length);
+                    return function.apply(Arrays.asList(values));
+            }
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Function &&
@@ -262,9 +516,37 @@ public final class Environment {
                     '}';
         }
 
+        @FunctionalInterface
+        public interface Invoker0 {
+            PlcObject invoke();
+        }
+
+        @FunctionalInterface
+        public interface Invoker1 {
+            PlcObject invoke(PlcObject a);
+        }
+
+        @FunctionalInterface
+        public interface Invoker2 {
+            PlcObject invoke(PlcObject a, PlcObject b);
+        }
+
+        @FunctionalInterface
+        public interface Invoker3 {
+            PlcObject invoke(PlcObject a, PlcObject b, PlcObject c);
+        }
+
+        @FunctionalInterface
+        public interface Invoker4 {
+            PlcObject invoke(PlcObject a, PlcObject b, PlcObject c, PlcObject d);
+        }
+
     }
 
     static {
+        for (int i = 0; i < SMALL_INTEGERS.length; i++) {
+            SMALL_INTEGERS[i] = new PlcObject(PRIMITIVE, PRIMITIVE.getScope(), BigInteger.valueOf(SMALL_INTEGER_MIN + i));
+        }
         registerType(Type.ANY);
         registerType(Type.NIL);
         registerType(Type.INTEGER_ITERABLE);
@@ -274,14 +556,14 @@ public final class Environment {
         registerType(Type.DECIMAL);
         registerType(Type.CHARACTER);
         registerType(Type.STRING);
-        Type.ANY.scope.defineFunction("stringify", "toString", Arrays.asList(), Type.STRING, args -> Environment.NIL);
-        Type.COMPARABLE.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.COMPARABLE), Type.COMPARABLE, args -> Environment.NIL);
-        Type.INTEGER.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.INTEGER), Type.INTEGER, args -> Environment.NIL);
-        Type.DECIMAL.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.DECIMAL), Type.DECIMAL, args -> Environment.NIL);
-        Type.CHARACTER.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.CHARACTER), Type.CHARACTER, args -> Environment.NIL);
+        Type.ANY.scope.defineFunction("stringify", "toString", Arrays.asList(), Type.STRING, args -> Environment.NIL).setPurity(Purity.PURE);
+        Type.COMPARABLE.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.COMPARABLE), Type.COMPARABLE, args -> Environment.NIL).setPurity(Purity.PURE);
+        Type.INTEGER.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.INTEGER), Type.INTEGER, args -> Environment.NIL).setPurity(Purity.PURE);
+        Type.DECIMAL.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.DECIMAL), Type.DECIMAL, args -> Environment.NIL).setPurity(Purity.PURE);
+        Type.CHARACTER.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.CHARACTER), Type.CHARACTER, args -> Environment.NIL).setPurity(Purity.PURE);
         Type.STRING.scope.defineVariable("length", "length()", Type.INTEGER, Environment.NIL);
-        Type.STRING.scope.defineFunction("slice", "substring", Arrays.asList(Type.ANY, Type.INTEGER, Type.INTEGER), Type.STRING, args -> Environment.NIL);
-        Type.STRING.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.STRING), Type.STRING, args -> Environment.NIL);
+        Type.STRING.scope.defineFunction("slice", "substring", Arrays.asList(Type.ANY, Type.INTEGER, Type.INTEGER), Type.STRING, args -> Environment.NIL).setPurity(Purity.PURE);
+        Type.STRING.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.STRING), Type.STRING, args -> Environment.NIL).setPurity(Purity.PURE);
     }
 
 }
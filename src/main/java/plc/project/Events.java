@@ -0,0 +1,132 @@
+package plc.project;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.List;
+
+/**
+ * The Java Flight Recorder events of the stages of the pipeline, from
+ * lexing to execution, which are shown along with the events of the JVM
+ * (such as garbage collections) in a recording.
+ *
+ * An event is created and timed by each stage, and only described (which
+ * may require counting the nodes of the AST) and committed if it is
+ * enabled and lasted longer than its threshold, so stages cost next to
+ * nothing more when nothing is recorded.
+ */
+public final class Events {
+
+    private Events() {}
+
+    /**
+     * The fields common to the events of every stage, which are left at
+     * their defaults when they don't apply to a stage.
+     */
+    @Category({"PLC", "Pipeline"})
+    @StackTrace(false)
+    abstract static class Stage extends Event {
+
+        @Label("Input Size")
+        @Description("The number of characters in the source")
+        long inputSize = -1;
+
+        @Label("Tokens")
+        int tokens = -1;
+
+        @Label("Nodes")
+        @Description("The number of nodes in the AST")
+        int nodes = -1;
+
+        @Label("Method")
+        @Description("The method being executed, or the one checked as entry point")
+        String method;
+
+        @Label("Outcome")
+        @Description("success, or the exception thrown by the stage")
+        String outcome = "success";
+
+        void fail(Throwable error) {
+            outcome = error.getClass().getSimpleName() + (error.getMessage() != null ? ": " + error.getMessage() : "");
+        }
+
+    }
+
+    @Name("plc.Lex")
+    @Label("Lex")
+    static final class Lex extends Stage {}
+
+    @Name("plc.Parse")
+    @Label("Parse")
+    static final class Parse extends Stage {}
+
+    @Name("plc.Analyze")
+    @Label("Analyze")
+    static final class Analyze extends Stage {}
+
+    @Name("plc.Generate")
+    @Label("Generate")
+    static final class Generate extends Stage {}
+
+    @Name("plc.Execute")
+    @Label("Execute")
+    static final class Execute extends Stage {}
+
+    /**
+     * Returns the number of nodes in {@code ast}, including itself.
+     */
+    static int count(Ast ast) {
+        if (ast instanceof Ast.Source) {
+            int count = 1;
+            for (Ast.Field field : ((Ast.Source) ast).getFields()) {
+                count += count(field);
+            }
+            for (Ast.Method method : ((Ast.Source) ast).getMethods()) {
+                count += count(method);
+            }
+            return count;
+        } else if (ast instanceof Ast.Field) {
+            return 1 + (((Ast.Field) ast).getValue().isPresent() ? count(((Ast.Field) ast).getValue().get()) : 0);
+        } else if (ast instanceof Ast.Method) {
+            return 1 + count(((Ast.Method) ast).getStatements());
+        } else if (ast instanceof Ast.Stmt.Expression) {
+            return 1 + count(((Ast.Stmt.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Stmt.Declaration) {
+            return 1 + (((Ast.Stmt.Declaration) ast).getValue().isPresent() ? count(((Ast.Stmt.Declaration) ast).getValue().get()) : 0);
+        } else if (ast instanceof Ast.Stmt.Assignment) {
+            return 1 + count(((Ast.Stmt.Assignment) ast).getReceiver()) + count(((Ast.Stmt.Assignment) ast).getValue());
+        } else if (ast instanceof Ast.Stmt.If) {
+            Ast.Stmt.If stmt = (Ast.Stmt.If) ast;
+            return 1 + count(stmt.getCondition()) + count(stmt.getThenStatements()) + count(stmt.getElseStatements());
+        } else if (ast instanceof Ast.Stmt.For) {
+            return 1 + count(((Ast.Stmt.For) ast).getValue()) + count(((Ast.Stmt.For) ast).getStatements());
+        } else if (ast instanceof Ast.Stmt.While) {
+            return 1 + count(((Ast.Stmt.While) ast).getCondition()) + count(((Ast.Stmt.While) ast).getStatements());
+        } else if (ast instanceof Ast.Stmt.Return) {
+            return 1 + count(((Ast.Stmt.Return) ast).getValue());
+        } else if (ast instanceof Ast.Expr.Group) {
+            return 1 + count(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Binary) {
+            return 1 + count(((Ast.Expr.Binary) ast).getLeft()) + count(((Ast.Expr.Binary) ast).getRight());
+        } else if (ast instanceof Ast.Expr.Access) {
+            return 1 + (((Ast.Expr.Access) ast).getReceiver().isPresent() ? count(((Ast.Expr.Access) ast).getReceiver().get()) : 0);
+        } else if (ast instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) ast;
+            return 1 + (function.getReceiver().isPresent() ? count(function.getReceiver().get()) : 0) + count(function.getArguments());
+        }
+        return 1;
+    }
+
+    private static int count(List<? extends Ast> asts) {
+        int count = 0;
+        for (Ast ast : asts) {
+            count += count(ast);
+        }
+        return count;
+    }
+
+}
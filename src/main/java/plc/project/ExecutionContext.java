@@ -0,0 +1,69 @@
+package plc.project;
+
+/**
+ * The state of a single execution of a {@link Program}: the scope holding
+ * its fields and methods, and the {@link VirtualMachine} running it. A
+ * context is cheap to create and is used by one thread at a time, while the
+ * program itself is shared.
+ */
+public final class ExecutionContext {
+
+    private final Program program;
+    private final VirtualMachine machine;
+    private volatile Budget budget = Budget.unlimited();
+    private boolean executed = false;
+
+    ExecutionContext(Program program, Scope parent, OutputSink output) {
+        this.program = program;
+        this.machine = new VirtualMachine(parent, output);
+    }
+
+    public Budget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget of the execution, which must be set before it starts.
+     * By default, the budget has no limits but the execution can still be
+     * cancelled (see {@link #cancel()}) or interrupted.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Cancels the execution, which stops with an
+     * {@link ExecutionLimitException} at its next loop iteration or method
+     * entry. This may be called from any thread.
+     */
+    public void cancel() {
+        budget.cancel();
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    /**
+     * Returns the scope of this execution, in which fields and methods are
+     * defined.
+     */
+    public Scope getScope() {
+        return machine.getScope();
+    }
+
+    /**
+     * Executes the program, returning the result of {@code main/0}. A context
+     * can only be executed once, since fields and methods are defined in its
+     * scope.
+     */
+    public Environment.PlcObject execute() {
+        if (executed) {
+            throw new IllegalStateException("The context has already been executed.");
+        }
+        executed = true;
+        machine.setBudget(budget);
+        return machine.execute(program.getBytecode());
+    }
+
+}
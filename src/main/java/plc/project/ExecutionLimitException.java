@@ -0,0 +1,25 @@
+package plc.project;
+
+/**
+ * Thrown when an execution exceeds its {@link Budget} or is cancelled.
+ */
+public final class ExecutionLimitException extends RuntimeException {
+
+    public enum Reason {
+        STEPS,
+        DEADLINE,
+        CANCELLED
+    }
+
+    private final Reason reason;
+
+    public ExecutionLimitException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+}
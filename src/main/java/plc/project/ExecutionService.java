@@ -0,0 +1,316 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batches of {@link Job}s, each executing a {@link Program} in its own
+ * {@link ExecutionContext} on its own thread. Threads are virtual when the
+ * runtime supports them (Java 21+), and otherwise come from a pool of
+ * platform threads sized to the concurrency.
+ *
+ * At most {@code concurrency} jobs execute at once. A job which runs longer
+ * than its timeout is reported as {@link Status#TIMED_OUT} as soon as the
+ * timeout expires, and its thread is interrupted; the job keeps its
+ * concurrency permit until its thread actually finishes.
+ */
+public final class ExecutionService implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final ScheduledExecutorService timer;
+    private final Semaphore permits;
+
+    public ExecutionService(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The concurrency must be positive.");
+        }
+        ExecutorService executor = newVirtualThreadExecutor();
+        this.virtual = executor != null;
+        this.executor = executor != null ? executor : Executors.newFixedThreadPool(concurrency, daemonThreads("plc-execution"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("plc-execution-timer"));
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Returns whether jobs run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Submits a job, returning a future which completes with its result
+     * (and never exceptionally).
+     */
+    public CompletableFuture<Result> submit(Job job) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        executor.execute(() -> run(job, future));
+        return future;
+    }
+
+    /**
+     * Runs all jobs and waits for their results.
+     */
+    public Report executeAll(List<Job> jobs) throws InterruptedException {
+        long start = System.nanoTime();
+        List<CompletableFuture<Result>> futures = new ArrayList<>();
+        for (Job job : jobs) {
+            futures.add(submit(job));
+        }
+        List<Result> results = new ArrayList<>();
+        for (CompletableFuture<Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return new Report(results, System.nanoTime() - start);
+    }
+
+    private void run(Job job, CompletableFuture<Result> future) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            future.complete(new Result(job, Status.FAILED, null, e, Collections.emptyList(), 0));
+            return;
+        }
+        long start = System.nanoTime();
+        OutputSink.Ring output = new OutputSink.Ring(job.outputLines);
+        Thread thread = Thread.currentThread();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ScheduledFuture<?> timeout = null;
+        try {
+            if (job.timeout > 0) {
+                timeout = timer.schedule(() -> {
+                    if (future.complete(new Result(job, Status.TIMED_OUT, null, null, Collections.emptyList(), System.nanoTime() - start))) {
+                        synchronized (running) {
+                            if (running.get()) {
+                                thread.interrupt();
+                            }
+                        }
+                    }
+                }, job.timeout, TimeUnit.NANOSECONDS);
+            }
+            Scope scope = new Scope(null);
+            job.inputs.forEach((name, value) -> scope.defineVariable(name, Environment.create(value)));
+            Environment.PlcObject value = job.program.newContext(scope, output).execute();
+            future.complete(new Result(job, Status.SUCCEEDED, value, null, output.getLines(), System.nanoTime() - start));
+        } catch (Throwable e) {
+            future.complete(new Result(job, Status.FAILED, null, e, output.getLines(), System.nanoTime() - start));
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            synchronized (running) {
+                running.set(false);
+            }
+            Thread.interrupted();
+            permits.release();
+        }
+    }
+
+    /**
+     * Stops accepting jobs and interrupts the ones which are running.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task, or {@code null}
+     * if the runtime doesn't support virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = Class.forName("java.lang.Thread$Builder").getMethod("name", String.class, long.class).invoke(builder, "plc-execution-", 0L);
+            ThreadFactory factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A program to execute, with the values of its inputs, which are defined
+     * as variables in the parent scope of the execution.
+     */
+    public static final class Job {
+
+        public static final int DEFAULT_OUTPUT_LINES = 1000;
+
+        private final String name;
+        private final Program program;
+        private final Map<String, Object> inputs;
+        private final long timeout;
+        private final int outputLines;
+
+        /**
+         * Creates a job, where a {@code timeout} of zero means none. The last
+         * {@code outputLines} lines printed by the job are kept in its result.
+         */
+        public Job(String name, Program program, Map<String, Object> inputs, long timeout, TimeUnit unit, int outputLines) {
+            this.name = name;
+            this.program = program;
+            this.inputs = Collections.unmodifiableMap(new LinkedHashMap<>(inputs));
+            this.timeout = unit.toNanos(timeout);
+            this.outputLines = outputLines;
+        }
+
+        public Job(String name, Program program, Map<String, Object> inputs, long timeout, TimeUnit unit) {
+            this(name, program, inputs, timeout, unit, DEFAULT_OUTPUT_LINES);
+        }
+
+        public Job(String name, Program program, Map<String, Object> inputs) {
+            this(name, program, inputs, 0, TimeUnit.NANOSECONDS);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Program getProgram() {
+            return program;
+        }
+
+        public Map<String, Object> getInputs() {
+            return inputs;
+        }
+
+    }
+
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        TIMED_OUT
+    }
+
+    public static final class Result {
+
+        private final Job job;
+        private final Status status;
+        private final Environment.PlcObject value;
+        private final Throwable error;
+        private final List<String> output;
+        private final long nanos;
+
+        private Result(Job job, Status status, Environment.PlcObject value, Throwable error, List<String> output, long nanos) {
+            this.job = job;
+            this.status = status;
+            this.value = value;
+            this.error = error;
+            this.output = output;
+            this.nanos = nanos;
+        }
+
+        public Job getJob() {
+            return job;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the result of {@code main/0}, or {@code null} unless the job
+         * {@link Status#SUCCEEDED}.
+         */
+        public Environment.PlcObject getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the error the job failed with, or {@code null} unless it
+         * {@link Status#FAILED}.
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * Returns the last lines printed by the job (empty if it timed out).
+         */
+        public List<String> getOutput() {
+            return output;
+        }
+
+        /**
+         * Returns the time the job ran for (not including the time waiting
+         * to run), in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return job.name + ": " + status + (value != null ? " " + value.getValue() : "") + (error != null ? " " + error : "");
+        }
+
+    }
+
+    /**
+     * The results of a batch of jobs, in the order the jobs were given.
+     */
+    public static final class Report {
+
+        private final List<Result> results;
+        private final long nanos;
+
+        private Report(List<Result> results, long nanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.nanos = nanos;
+        }
+
+        public List<Result> getResults() {
+            return results;
+        }
+
+        public int getCount(Status status) {
+            int count = 0;
+            for (Result result : results) {
+                if (result.status == status) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns the time from submitting the first job until every result
+         * was available, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+    }
+
+}
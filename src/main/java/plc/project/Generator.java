@@ -31,34 +31,49 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Source ast) {
-        print("public class Main {");
-        newline(0);
-        indent += 1;
-        if(!ast.getFields().isEmpty()) {
-            for(int i = 0; i < ast.getFields().size(); i++) {
-                newline(indent);
-                print(ast.getFields().get(i));
-            }
+        Events.Generate event = new Events.Generate();
+        event.begin();
+        try {
+            print("public class Main {");
             newline(0);
-        }
-        newline(indent);
-        print("public static void main(String[] args) {");
-        newline(++indent);
-        print("System.exit(new Main().main());");
-        newline(--indent);
-        print("}");
+            indent += 1;
+            if(!ast.getFields().isEmpty()) {
+                for(int i = 0; i < ast.getFields().size(); i++) {
+                    newline(indent);
+                    print(ast.getFields().get(i));
+                }
+                newline(0);
+            }
+            newline(indent);
+            print("public static void main(String[] args) {");
+            newline(++indent);
+            print("System.exit(new Main().main());");
+            newline(--indent);
+            print("}");
 
-        for(int i = 0; i < ast.getMethods().size(); i++) {
+            for(int i = 0; i < ast.getMethods().size(); i++) {
+                newline(0);
+                newline(indent);
+                print(ast.getMethods().get(i));
+            }
             newline(0);
-            newline(indent);
-            print(ast.getMethods().get(i));
-        }
-        newline(0);
 
-        newline(--indent);
-        print("}");
+            newline(--indent);
+            print("}");
 
-        return null;
+            return null;
+        }
+        catch (RuntimeException e) {
+            event.fail(e);
+            throw e;
+        }
+        finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.nodes = Events.count(ast);
+                event.commit();
+            }
+        }
     }
 
     @Override
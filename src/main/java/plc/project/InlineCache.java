@@ -0,0 +1,82 @@
+package plc.project;
+
+/**
+ * A monomorphic inline cache for a call site, which remembers the function
+ * it last resolved so that calls with the same scopes don't repeat the
+ * lookup through {@link Scope#lookupFunction(String, int)}.
+ *
+ * The result of a lookup depends only on the scopes from the nearest one
+ * defining any functions upwards (see {@link Scope#getFunctionScope()}), so
+ * the cached function is used as long as that scope is the same and no
+ * function has been defined since in it or the scopes up to the one the
+ * function was found in, which could shadow it. Functions defined in other
+ * scopes (such as those of other executions) don't affect the cache.
+ * A cache is not thread safe, like the {@link Interpreter} using it.
+ */
+public final class InlineCache {
+
+    private final Symbol symbol;
+    private final int arity;
+    private Scope owner;
+    private Scope definer;
+    private long version;
+    private Environment.Function function;
+    private long hits = 0;
+    private long misses = 0;
+
+    public InlineCache(String name, int arity) {
+        this.symbol = Symbol.of(name);
+        this.arity = arity;
+    }
+
+    public String getName() {
+        return symbol.getName();
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Returns the function {@code name/arity} in {@code scope}, resolving it
+     * again if the cached function may have been shadowed or defined since.
+     */
+    public Environment.Function lookup(Scope scope) {
+        Scope owner = scope.getFunctionScope();
+        if (function != null && owner == this.owner && owner.getFunctionVersion(definer) == version) {
+            hits++;
+            return function;
+        }
+        misses++;
+        Scope definer = owner.lookupFunctionScope(symbol, arity);
+        Environment.Function function = definer.lookupFunction(symbol, arity);
+        this.owner = owner;
+        this.definer = definer;
+        this.version = owner.getFunctionVersion(definer);
+        this.function = function;
+        return function;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the fraction of lookups which hit the cache, or {@code 0} if
+     * there were none.
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return symbol.getName() + "/" + arity + " (hits=" + hits + ", misses=" + misses + ")";
+    }
+
+}
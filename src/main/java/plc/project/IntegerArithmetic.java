@@ -0,0 +1,91 @@
+package plc.project;
+
+import java.math.BigInteger;
+
+/**
+ * Integer arithmetic with the semantics of {@link BigInteger} on objects
+ * holding integers. Integers which fit in a {@code long} are held as one
+ * (see {@link Environment.PlcObject#isLong()}), so operations on them compute
+ * with primitive {@code long}s and create the result with
+ * {@link Environment#createInteger(long)}, without any {@link BigInteger}.
+ * Only results which overflow are promoted to a {@link BigInteger}, and
+ * results of operations on {@link BigInteger}s which fit in a {@code long}
+ * are held as one again.
+ */
+public final class IntegerArithmetic {
+
+    private IntegerArithmetic() {}
+
+    /**
+     * Returns {@code true} if {@code object} holds an integer, which is one
+     * of the operands accepted by the operations below.
+     */
+    public static boolean isInteger(Environment.PlcObject object) {
+        return object.isLong() || object.getValue() instanceof BigInteger;
+    }
+
+    public static Environment.PlcObject add(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong()) {
+            long x = left.getLong();
+            long y = right.getLong();
+            long result = x + y;
+            if (((x ^ result) & (y ^ result)) >= 0) {
+                return Environment.createInteger(result);
+            }
+        }
+        return Environment.create(big(left).add(big(right)));
+    }
+
+    public static Environment.PlcObject subtract(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong()) {
+            long x = left.getLong();
+            long y = right.getLong();
+            long result = x - y;
+            if (((x ^ y) & (x ^ result)) >= 0) {
+                return Environment.createInteger(result);
+            }
+        }
+        return Environment.create(big(left).subtract(big(right)));
+    }
+
+    public static Environment.PlcObject multiply(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong()) {
+            long x = left.getLong();
+            long y = right.getLong();
+            long result = x * y;
+            if ((Math.abs(x) | Math.abs(y)) >>> 31 == 0
+                    || (y == 0 || result / y == x) && !(x == Long.MIN_VALUE && y == -1)) {
+                return Environment.createInteger(result);
+            }
+        }
+        return Environment.create(big(left).multiply(big(right)));
+    }
+
+    /**
+     * Divides, truncating towards zero. Dividing by zero throws an
+     * {@link ArithmeticException}, as {@link BigInteger#divide(BigInteger)}
+     * does.
+     */
+    public static Environment.PlcObject divide(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong() && !(left.getLong() == Long.MIN_VALUE && right.getLong() == -1)) {
+            return Environment.createInteger(left.getLong() / right.getLong());
+        }
+        return Environment.create(big(left).divide(big(right)));
+    }
+
+    public static int compare(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong()) {
+            return Long.compare(left.getLong(), right.getLong());
+        }
+        return big(left).compareTo(big(right));
+    }
+
+    public static boolean isZero(Environment.PlcObject object) {
+        return object.isLong() ? object.getLong() == 0 : big(object).signum() == 0;
+    }
+
+    private static BigInteger big(Environment.PlcObject object) {
+        return (BigInteger) object.getValue();
+    }
+
+}
@@ -1,20 +1,35 @@
 package plc.project;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     private Scope scope = new Scope(null);
+    private final Map<Ast.Expr.Function, InlineCache> caches = new IdentityHashMap<>();
+    private final Map<Environment.Function, Procedure> procedures = new IdentityHashMap<>();
+    private int methods = 0;
+    private Budget budget = null;
+    private Profiler profiler = null;
+    private final OutputSink output;
 
     public Interpreter(Scope parent) {
+        this(parent, OutputSink.stdout());
+    }
+
+    /**
+     * Creates an interpreter whose {@code print} function writes to
+     * {@code output}, which is flushed after each source is executed.
+     */
+    public Interpreter(Scope parent, OutputSink output) {
+        this.output = output;
         scope = new Scope(parent);
-        scope.defineFunction("print", 1, args -> {
-            System.out.println(args.get(0).getValue());
+        scope.defineFunction("print", value -> {
+            output.println(value.getValue());
             return Environment.NIL;
         });
     }
@@ -23,6 +38,44 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         return scope;
     }
 
+    /**
+     * Sets the budget of steps (loop iterations and method entries) for the
+     * code executed afterwards, or {@code null} for none.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the profiler recording the statements, expressions and methods
+     * executed afterwards, or {@code null} for none.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns the inline caches of the call sites executed so far, with their
+     * hit rates.
+     */
+    public Map<Ast.Expr.Function, InlineCache> getInlineCaches() {
+        return Collections.unmodifiableMap(caches);
+    }
+
+    @Override
+    public Environment.PlcObject visit(Ast ast) {
+        if (profiler == null || !(ast instanceof Ast.Stmt || ast instanceof Ast.Expr)) {
+            return Ast.Visitor.super.visit(ast);
+        }
+        profiler.enter(ast);
+        try {
+            return Ast.Visitor.super.visit(ast);
+        }
+        finally {
+            profiler.exit();
+        }
+    }
+
     //DONE
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
@@ -32,8 +85,64 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         for (Ast.Method mthd : ast.getMethods()) {
             visit(mthd);
         }
+        return run(ast);
+    }
 
-        return scope.lookupFunction("main",0).invoke(new ArrayList<>());
+    /**
+     * Evaluates the fields of {@code ast} in the scope of this interpreter
+     * and returns a snapshot of them, from which the source can then be
+     * executed any number of times (see {@link #execute(Ast.Source, Scope.Snapshot)})
+     * without evaluating them again.
+     */
+    public Scope.Snapshot initialize(Ast.Source ast) {
+        for (Ast.Field fld : ast.getFields()) {
+            visit(fld);
+        }
+        return scope.snapshot();
+    }
+
+    /**
+     * Executes {@code ast} like {@link #visit(Ast.Source)}, except that its
+     * fields are not evaluated but forked from {@code fields} (see
+     * {@link #initialize(Ast.Source)}), so that assignments to them are
+     * only seen by this execution. The snapshot can be shared by
+     * interpreters in other threads.
+     */
+    public Environment.PlcObject execute(Ast.Source ast, Scope.Snapshot fields) {
+        Scope curr = scope;
+        Scope fork = fields.fork(scope);
+        scope = fork;
+        try {
+            for (Ast.Method mthd : ast.getMethods()) {
+                visit(mthd);
+            }
+            return run(ast);
+        }
+        finally {
+            scope = curr;
+            procedures.values().removeIf(procedure -> procedure.capture == fork);
+        }
+    }
+
+    private Environment.PlcObject run(Ast.Source ast) {
+        Events.Execute event = new Events.Execute();
+        event.begin();
+        try {
+            return scope.lookupFunction("main",0).invoke(new ArrayList<>());
+        }
+        catch (RuntimeException e) {
+            event.fail(e);
+            throw e;
+        }
+        finally {
+            output.flush();
+            event.end();
+            if (event.shouldCommit()) {
+                event.nodes = Events.count(ast);
+                event.method = "main";
+                event.commit();
+            }
+        }
 
     }
 
@@ -52,31 +161,59 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     //DONE
     @Override
     public Environment.PlcObject visit(Ast.Method ast) {
-        Scope capture = scope;
+        Procedure procedure = new Procedure(ast, scope);
+        List<Environment.Type> parameterTypes = new ArrayList<>(Collections.nCopies(ast.getParameters().size(), Environment.Type.ANY));
+        Environment.Function function = scope.defineFunction(ast.getName(), ast.getName(), parameterTypes, Environment.Type.ANY, args -> invoke(procedure, frame(procedure, args)));
+        procedures.put(function, procedure);
 
-        scope.defineFunction(ast.getName(), ast.getParameters().size(), args -> {
-            Scope curr = scope;
-            scope = new Scope(capture);
-
-            for (int i = 0; i < ast.getParameters().size(); i++) {
-                scope.defineVariable(ast.getParameters().get(i), args.get(i));
-            }
+        return Environment.NIL;
+    }
 
-            try {
-                for (Ast.Stmt stmt : ast.getStatements()) {
-                    visit(stmt);
+    /**
+     * Invokes a method defined by this interpreter in {@code frame}, where
+     * its parameters are defined. Calls in tail position
+     * ({@code RETURN f(...)}) to methods defined by this interpreter, including
+     * this one, are not made by the method itself: it throws a
+     * {@link TailCall} instead, and the call is made by the loop here in
+     * place of the method, so the Java stack and the scope chain don't grow.
+     */
+    private Environment.PlcObject invoke(Procedure procedure, Scope frame) {
+        Scope curr = scope;
+        methods++;
+        try {
+            while (true) {
+                if (budget != null) {
+                    budget.step();
+                }
+                scope = frame;
+                Profiler profiler = this.profiler;
+                if (profiler != null) {
+                    profiler.enter(procedure.ast);
+                }
+                try {
+                    for (Ast.Stmt stmt : procedure.ast.getStatements()) {
+                        visit(stmt);
+                    }
+                    return Environment.NIL;
+                }
+                catch(Return e) {
+                    return e.value;
+                }
+                catch(TailCall call) {
+                    procedure = call.procedure;
+                    frame = call.frame;
+                }
+                finally {
+                    if (profiler != null) {
+                        profiler.exit();
+                    }
                 }
             }
-            catch(Return e) {
-                return e.value;
-            }
-            finally {
-                scope = curr;
-            }
-            return Environment.NIL;
-        });
-
-        return Environment.NIL;
+        }
+        finally {
+            methods--;
+            scope = curr;
+        }
     }
 
     //DONE
@@ -121,26 +258,10 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.If ast) {
         if(requireType(Boolean.class, visit(ast.getCondition()))) {
-            try {
-                scope = new Scope(scope);
-                for (Ast.Stmt stmt : ast.getThenStatements()) {
-                    visit(stmt);
-                }
-            }
-            finally {
-                scope = scope.getParent();
-            }
+            block(ast.getThenStatements(), declares(ast.getThenStatements()) ? new Scope(scope) : null);
         }
         else if(!requireType(Boolean.class,visit(ast.getCondition()))) {
-            try {
-                scope = new Scope(scope);
-                for (Ast.Stmt stmt : ast.getElseStatements()) {
-                    visit(stmt);
-                }
-            }
-            finally {
-                scope = scope.getParent();
-            }
+            block(ast.getElseStatements(), declares(ast.getElseStatements()) ? new Scope(scope) : null);
         }
         return Environment.NIL;
     }
@@ -149,19 +270,15 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.For ast) {
         Iterable iter = requireType(Iterable.class,visit(ast.getValue()));
+        Scope frame = new Scope(scope);
         for(Object obj : iter) {
-            try {
-                scope = new Scope(scope);
-                scope.defineVariable(ast.getName(), (Environment.PlcObject) obj);
-                for (Ast.Stmt stmt : ast.getStatements()) {
-                    visit(stmt);
-                }
+            frame.reset();
+            frame.defineVariable(ast.getName(), (Environment.PlcObject) obj);
+            block(ast.getStatements(), frame);
+            if (budget != null) {
+                budget.step();
             }
-            finally {
-                scope = scope.getParent();
-            }
-
-       }
+        }
 
         return Environment.NIL;
     }
@@ -169,15 +286,14 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     //DONE
     @Override
     public Environment.PlcObject visit(Ast.Stmt.While ast) {
+        Scope frame = declares(ast.getStatements()) ? new Scope(scope) : null;
         while(requireType(Boolean.class, visit(ast.getCondition()))) {
-            try {
-                scope = new Scope(scope);
-                for (Ast.Stmt stmt : ast.getStatements()) {
-                    visit(stmt);
-                }
+            if (frame != null) {
+                frame.reset();
             }
-            finally {
-                scope = scope.getParent();
+            block(ast.getStatements(), frame);
+            if (budget != null) {
+                budget.step();
             }
         }
         return Environment.NIL;
@@ -186,6 +302,9 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     //DONE
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Return ast) {
+        if (methods > 0 && ast.getValue() instanceof Ast.Expr.Function && !((Ast.Expr.Function) ast.getValue()).getReceiver().isPresent()) {
+            throw new Return(call((Ast.Expr.Function) ast.getValue(), true));
+        }
         Environment.PlcObject obj = visit(ast.getValue());
         throw new Return(obj);
     }
@@ -203,202 +322,178 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     //DONE
     @Override
     public Environment.PlcObject visit(Ast.Expr.Group ast) {
-        Environment.PlcObject obj = Environment.create(visit(ast.getExpression()).getValue());
+        Environment.PlcObject obj = Environment.createFrom(visit(ast.getExpression()));
         return obj;
     }
 
     //DONE
     @Override
     public Environment.PlcObject visit(Ast.Expr.Binary ast) {
-
-        String op = ast.getOperator();
-        if(op.equals("AND")) {
-            if (requireType(Boolean.class, visit(ast.getLeft()))) {
-                if (requireType(Boolean.class, visit(ast.getRight()))) {
-                    Environment.PlcObject Obj = Environment.create(true);
-                    return Obj;
-                }
-                else {
-                    Environment.PlcObject Obj = Environment.create(false);
-                    return Obj;
-                }
-            }
-            else {
-                Environment.PlcObject Obj = Environment.create(false);
-                return Obj;
-            }
-        }
-        else if (op.equals("OR")) {
-            if (requireType(Boolean.class, visit(ast.getLeft()))) {
-                Environment.PlcObject Obj = Environment.create(true);
-                return Obj;
-            }
-            else if (requireType(Boolean.class, visit(ast.getRight()))){
-                Environment.PlcObject Obj = Environment.create(true);
-                return Obj;
-            }
-            else {
-                Environment.PlcObject Obj = Environment.create(false);
-                return Obj;
-            }
+        Operator operator = ast.getResolvedOperator().orElseThrow(RuntimeException::new);
+        switch (operator) {
+            case AND:
+                return Environment.create(requireType(Boolean.class, visit(ast.getLeft())) && requireType(Boolean.class, visit(ast.getRight())));
+            case OR:
+                return Environment.create(requireType(Boolean.class, visit(ast.getLeft())) || requireType(Boolean.class, visit(ast.getRight())));
+            case EQUAL:
+                return Environment.create(ast.getLeft().equals(ast.getRight()));
+            case NOT_EQUAL:
+                return Environment.create(!ast.getLeft().equals(ast.getRight()));
+            default:
+                Environment.PlcObject left = visit(ast.getLeft());
+                return operator.apply(left, visit(ast.getRight()));
         }
-        else if (op.equals("<")) {
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
-
-            return Environment.create(requireType(Comparable.class,left).compareTo(requireType(left.getValue().getClass(),visit(ast.getRight())))<0);
-
-
-        }
-        else if (op.equals("<=")) {
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
-
-            return Environment.create(requireType(Comparable.class,left).compareTo(requireType(left.getValue().getClass(),visit(ast.getRight())))<=0);
+    }
 
+    //DONE
+    @Override
+    public Environment.PlcObject visit(Ast.Expr.Access ast) {
+        if(ast.getReceiver().isPresent()) {
+            return visit(ast.getReceiver().get()).getField(ast.getName()).getValue();
         }
-        else if (op.equals(">")) {
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
-
-            return Environment.create(requireType(Comparable.class,left).compareTo(requireType(left.getValue().getClass(),visit(ast.getRight())))>0);
-
-
+        else {
+            return scope.lookupVariable(ast.getName()).getValue();
         }
-        else if (op.equals(">=")) {
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
-
-            return Environment.create(requireType(Comparable.class,left).compareTo(requireType(left.getValue().getClass(),visit(ast.getRight())))>=0);
+    }
 
+    //DONE
+    @Override
+    public Environment.PlcObject visit(Ast.Expr.Function ast) {
+        if (ast.getReceiver().isPresent()) {
+            List<Ast.Expr> arguments = ast.getArguments();
+            int count = arguments.size();
+            if (count > 3) {
+                Environment.PlcObject[] values = new Environment.PlcObject[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = visit(arguments.get(i));
+                }
+                Environment.PlcObject receiver = visit(ast.getReceiver().get());
+                return cache(ast).lookup(receiver.getType().getScope()).invokeMethod(receiver, values);
+            }
+            Environment.PlcObject a = count > 0 ? visit(arguments.get(0)) : null;
+            Environment.PlcObject b = count > 1 ? visit(arguments.get(1)) : null;
+            Environment.PlcObject c = count > 2 ? visit(arguments.get(2)) : null;
+            Environment.PlcObject receiver = visit(ast.getReceiver().get());
+            return invoke(cache(ast).lookup(receiver.getType().getScope()), count + 1, receiver, a, b, c);
         }
-        else if (op.equals("==")){
+        return call(ast, false);
+    }
 
-            if (ast.getLeft().equals(ast.getRight())) {
-                Environment.PlcObject obj = Environment.create(true);
-                return obj;
-            }
-            else {
-                Environment.PlcObject obj = Environment.create(false);
-                return obj;
-            }
+    /**
+     * Calls a function without a receiver. Up to four arguments are passed
+     * to the function directly (see {@link Environment.Function#invoke2}),
+     * and those of methods defined by this interpreter are defined in the
+     * scope of the call, so that no list of them is allocated. If
+     * {@code tail} is set, calls to those methods are made by throwing a
+     * {@link TailCall}.
+     */
+    private Environment.PlcObject call(Ast.Expr.Function ast, boolean tail) {
+        List<Ast.Expr> arguments = ast.getArguments();
+        int count = arguments.size();
+        if (count > 4) {
+            List<Environment.PlcObject> values = new ArrayList<>(count);
+            for (Ast.Expr argument : arguments) {
+                values.add(visit(argument));
+            }
+            Environment.Function function = cache(ast).lookup(scope);
+            Procedure procedure = procedures.get(function);
+            if (procedure == null) {
+                return function.invoke(values);
+            }
+            Scope frame = frame(procedure, values);
+            if (tail) {
+                throw new TailCall(procedure, frame);
+            }
+            return invoke(procedure, frame);
         }
-        else if (op.equals("!=")){
-            if (ast.getLeft().equals(ast.getRight())) {
-                Environment.PlcObject obj = Environment.create(false);
-                return obj;
-            }
-            else {
-                Environment.PlcObject obj = Environment.create(true);
-                return obj;
-            }
+        Environment.PlcObject a = count > 0 ? visit(arguments.get(0)) : null;
+        Environment.PlcObject b = count > 1 ? visit(arguments.get(1)) : null;
+        Environment.PlcObject c = count > 2 ? visit(arguments.get(2)) : null;
+        Environment.PlcObject d = count > 3 ? visit(arguments.get(3)) : null;
+        Environment.Function function = cache(ast).lookup(scope);
+        Procedure procedure = procedures.get(function);
+        if (procedure == null) {
+            return invoke(function, count, a, b, c, d);
         }
-        else if (op.equals("+")) {
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
-
-            if(left.getValue() instanceof String) {
-                return Environment.create(""+left.getValue() + visit(ast.getRight()).getValue());
-            }
-            else if(left.getValue() instanceof BigInteger) {
-                Environment.PlcObject sum = Environment.create(((BigInteger) left.getValue()).add(requireType(BigInteger.class,visit(ast.getRight()))));
-                return sum;
-            }
-            else if(left.getValue() instanceof BigDecimal) {
-                Environment.PlcObject sum = Environment.create(((BigDecimal) left.getValue()).add(requireType(BigDecimal.class,visit(ast.getRight()))));
-                return sum;
-            }
-            else {
-                throw new RuntimeException();
-            }
-
-
+        Scope frame = new Scope(procedure.capture);
+        List<String> parameters = procedure.ast.getParameters();
+        for (int i = 0; i < count; i++) {
+            frame.defineVariable(parameters.get(i), i == 0 ? a : i == 1 ? b : i == 2 ? c : d);
         }
-        else if (op.equals("-")) {
-
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
-
-            if(left.getValue() instanceof BigInteger) {
-                Environment.PlcObject sum = Environment.create(((BigInteger) left.getValue()).subtract(requireType(BigInteger.class,visit(ast.getRight()))));
-                return sum;
-            }
-            else if(left.getValue() instanceof BigDecimal) {
-                Environment.PlcObject sum = Environment.create(((BigDecimal) left.getValue()).subtract(requireType(BigDecimal.class,right)));
-                return sum;
-            }
-            else {
-                throw new RuntimeException();
-            }
+        if (tail) {
+            throw new TailCall(procedure, frame);
         }
-        else if (op.equals("*")){
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
+        return invoke(procedure, frame);
+    }
 
-            if(left.getValue() instanceof BigInteger) {
-                Environment.PlcObject sum = Environment.create(((BigInteger) left.getValue()).multiply(requireType(BigInteger.class,visit(ast.getRight()))));
-                return sum;
-            }
-            else if(left.getValue() instanceof BigDecimal) {
-                Environment.PlcObject sum = Environment.create(((BigDecimal) left.getValue()).multiply(requireType(BigDecimal.class,right)));
-                return sum;
-            }
-            else {
-                throw new RuntimeException();
-            }
+    /**
+     * Returns the scope of a call to {@code procedure}, where its parameters
+     * are defined.
+     */
+    private static Scope frame(Procedure procedure, List<Environment.PlcObject> args) {
+        Scope frame = new Scope(procedure.capture);
+        for (int i = 0; i < procedure.ast.getParameters().size(); i++) {
+            frame.defineVariable(procedure.ast.getParameters().get(i), args.get(i));
         }
-        else if (op.equals("/")) {
-            Environment.PlcObject right = visit(ast.getRight());
-            Environment.PlcObject left = visit(ast.getLeft());
-
-            //NEW EDIT 8/3/2021
-            if(right.getValue().toString().equals("0")) {
-                throw new RuntimeException();
-            }
-            //END EDIT
-
-            if (left.getValue() instanceof BigInteger) {
-                Environment.PlcObject sum = Environment.create(((BigInteger) left.getValue()).divide(requireType(BigInteger.class,visit(ast.getRight()))));
-                return sum;
-            }
-            else if(left.getValue() instanceof BigDecimal) {
-                Environment.PlcObject sum = Environment.create(((BigDecimal) left.getValue()).divide(requireType(BigDecimal.class,right),BigDecimal.ROUND_HALF_EVEN));
-                return sum;
-            }
-            else {
-                throw new RuntimeException();
-            }
+        return frame;
+    }
 
+    private static Environment.PlcObject invoke(Environment.Function function, int count, Environment.PlcObject a, Environment.PlcObject b, Environment.PlcObject c, Environment.PlcObject d) {
+        switch (count) {
+            case 0:
+                return function.invoke0();
+            case 1:
+                return function.invoke1(a);
+            case 2:
+                return function.invoke2(a, b);
+            case 3:
+                return function.invoke3(a, b, c);
+            default:
+                return function.invoke4(a, b, c, d);
         }
-        throw new RuntimeException();
     }
 
-    //DONE
-    @Override
-    public Environment.PlcObject visit(Ast.Expr.Access ast) {
-        if(ast.getReceiver().isPresent()) {
-            return visit(ast.getReceiver().get()).getField(ast.getName()).getValue();
-        }
-        else {
-            return scope.lookupVariable(ast.getName()).getValue();
+    private InlineCache cache(Ast.Expr.Function ast) {
+        InlineCache cache = caches.get(ast);
+        if (cache == null) {
+            cache = new InlineCache(ast.getName(), ast.getArguments().size() + (ast.getReceiver().isPresent() ? 1 : 0));
+            caches.put(ast, cache);
         }
+        return cache;
     }
 
-    //DONE
-    @Override
-    public Environment.PlcObject visit(Ast.Expr.Function ast) {
-        List<Environment.PlcObject> lst = new ArrayList<>();
-        for (int i = 0; i < ast.getArguments().size(); i++) {
-            lst.add(visit(ast.getArguments().get(i)));
+    /**
+     * Executes the statements of a block in {@code frame}, a child of the
+     * current scope, which loops reuse (after {@link Scope#reset()}) for every
+     * iteration. Blocks that don't declare any variables run in the current
+     * scope with a {@code null} frame, since an empty scope is not observable.
+     */
+    private void block(List<Ast.Stmt> statements, Scope frame) {
+        if (frame == null) {
+            for (Ast.Stmt stmt : statements) {
+                visit(stmt);
+            }
+            return;
         }
-
-        if(ast.getReceiver().isPresent()) {
-            return visit(ast.getReceiver().get()).callMethod(ast.getName(),lst);
+        Scope curr = scope;
+        scope = frame;
+        try {
+            for (Ast.Stmt stmt : statements) {
+                visit(stmt);
+            }
         }
-        else {
-            return scope.lookupFunction(ast.getName(),ast.getArguments().size()).invoke(lst);
+        finally {
+            scope = curr;
         }
+    }
 
+    private static boolean declares(List<Ast.Stmt> statements) {
+        for (Ast.Stmt stmt : statements) {
+            if (stmt instanceof Ast.Stmt.Declaration) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -413,16 +508,51 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     }
 
     /**
-     * Exception class for returning values.
+     * Exception class for returning values. It is only used for control flow,
+     * so it has no stack trace (which would otherwise be filled in on every
+     * return) and can't be suppressed.
      */
     private static class Return extends RuntimeException {
 
         private final Environment.PlcObject value;
 
         private Return(Environment.PlcObject value) {
+            super(null, null, false, false);
             this.value = value;
         }
 
     }
 
+    /**
+     * A method defined by this interpreter, with the scope it was defined in.
+     */
+    private static final class Procedure {
+
+        private final Ast.Method ast;
+        private final Scope capture;
+
+        private Procedure(Ast.Method ast, Scope capture) {
+            this.ast = ast;
+            this.capture = capture;
+        }
+
+    }
+
+    /**
+     * Exception class for calls in tail position, which are made by
+     * {@link #invoke(Procedure, Scope)} after the calling method has exited.
+     */
+    private static class TailCall extends RuntimeException {
+
+        private final Procedure procedure;
+        private final Scope frame;
+
+        private TailCall(Procedure procedure, Scope frame) {
+            super(null, null, false, false);
+            this.procedure = procedure;
+            this.frame = frame;
+        }
+
+    }
+
 }
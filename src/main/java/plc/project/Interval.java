@@ -0,0 +1,192 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * An inclusive range of integer values, as computed by the
+ * {@link RangeAnalyzer}. A {@code null} bound is unbounded in that direction,
+ * and {@link #EMPTY} is the range containing no values (for example, the
+ * value of an expression that is never evaluated).
+ */
+public final class Interval {
+
+    public static final Interval EMPTY = new Interval(BigInteger.ONE, BigInteger.ZERO);
+    public static final Interval UNBOUNDED = new Interval(null, null);
+    public static final Interval INT = new Interval(BigInteger.valueOf(Integer.MIN_VALUE), BigInteger.valueOf(Integer.MAX_VALUE));
+    public static final Interval LONG = new Interval(BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE));
+
+    private final BigInteger lower;
+    private final BigInteger upper;
+
+    private Interval(BigInteger lower, BigInteger upper) {
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    public static Interval of(BigInteger value) {
+        return new Interval(value, value);
+    }
+
+    public static Interval of(BigInteger lower, BigInteger upper) {
+        Interval interval = new Interval(lower, upper);
+        return interval.isEmpty() ? EMPTY : interval;
+    }
+
+    /**
+     * Returns the lower bound, or {@code null} if there is none.
+     */
+    public BigInteger getLower() {
+        return lower;
+    }
+
+    /**
+     * Returns the upper bound, or {@code null} if there is none.
+     */
+    public BigInteger getUpper() {
+        return upper;
+    }
+
+    public boolean isEmpty() {
+        return lower != null && upper != null && lower.compareTo(upper) > 0;
+    }
+
+    public boolean contains(Interval other) {
+        return other.isEmpty() || !isEmpty()
+                && (lower == null || other.lower != null && lower.compareTo(other.lower) <= 0)
+                && (upper == null || other.upper != null && upper.compareTo(other.upper) >= 0);
+    }
+
+    /**
+     * Returns {@code true} if every value fits in an {@code int}.
+     */
+    public boolean fitsInt() {
+        return INT.contains(this);
+    }
+
+    /**
+     * Returns {@code true} if every value fits in a {@code long}.
+     */
+    public boolean fitsLong() {
+        return LONG.contains(this);
+    }
+
+    public Interval join(Interval other) {
+        if (isEmpty()) {
+            return other;
+        } else if (other.isEmpty()) {
+            return this;
+        }
+        return new Interval(lower == null || other.lower == null ? null : lower.min(other.lower), upper == null || other.upper == null ? null : upper.max(other.upper));
+    }
+
+    public Interval intersect(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return of(lower == null ? other.lower : other.lower == null ? lower : lower.max(other.lower), upper == null ? other.upper : other.upper == null ? upper : upper.min(other.upper));
+    }
+
+    /**
+     * Joins {@code next} into this interval, dropping any bound that grew so
+     * that repeated widening reaches a fixed point.
+     */
+    public Interval widen(Interval next) {
+        if (isEmpty()) {
+            return next;
+        } else if (next.isEmpty()) {
+            return this;
+        }
+        return new Interval(lower == null || next.lower == null || next.lower.compareTo(lower) < 0 ? null : lower, upper == null || next.upper == null || next.upper.compareTo(upper) > 0 ? null : upper);
+    }
+
+    /**
+     * Returns the values below (or at, if {@code inclusive}) the upper bound
+     * of {@code other}.
+     */
+    public Interval below(Interval other, boolean inclusive) {
+        if (other.isEmpty() || other.upper == null) {
+            return other.isEmpty() ? EMPTY : this;
+        }
+        return intersect(new Interval(null, inclusive ? other.upper : other.upper.subtract(BigInteger.ONE)));
+    }
+
+    /**
+     * Returns the values above (or at, if {@code inclusive}) the lower bound
+     * of {@code other}.
+     */
+    public Interval above(Interval other, boolean inclusive) {
+        if (other.isEmpty() || other.lower == null) {
+            return other.isEmpty() ? EMPTY : this;
+        }
+        return intersect(new Interval(inclusive ? other.lower : other.lower.add(BigInteger.ONE), null));
+    }
+
+    public Interval add(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return new Interval(lower == null || other.lower == null ? null : lower.add(other.lower), upper == null || other.upper == null ? null : upper.add(other.upper));
+    }
+
+    public Interval subtract(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return new Interval(lower == null || other.upper == null ? null : lower.subtract(other.upper), upper == null || other.lower == null ? null : upper.subtract(other.lower));
+    }
+
+    public Interval multiply(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        if (lower == null || upper == null || other.lower == null || other.upper == null) {
+            return UNBOUNDED;
+        }
+        BigInteger a = lower.multiply(other.lower);
+        BigInteger b = lower.multiply(other.upper);
+        BigInteger c = upper.multiply(other.lower);
+        BigInteger d = upper.multiply(other.upper);
+        return new Interval(a.min(b).min(c).min(d), a.max(b).max(c).max(d));
+    }
+
+    /**
+     * Integer division truncates towards zero, so the magnitude of the result
+     * never exceeds the magnitude of the dividend.
+     */
+    public Interval divide(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        if (lower == null || upper == null) {
+            return UNBOUNDED;
+        }
+        BigInteger magnitude = lower.abs().max(upper.abs());
+        if (other.lower != null && other.lower.signum() > 0) {
+            return new Interval(lower.min(BigInteger.ZERO), upper.max(BigInteger.ZERO));
+        }
+        return new Interval(magnitude.negate(), magnitude);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Interval &&
+                (isEmpty() && ((Interval) obj).isEmpty() ||
+                Objects.equals(lower, ((Interval) obj).lower) &&
+                Objects.equals(upper, ((Interval) obj).upper));
+    }
+
+    @Override
+    public int hashCode() {
+        return isEmpty() ? 0 : Objects.hash(lower, upper);
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        return "[" + (lower == null ? "-inf" : lower) + ", " + (upper == null ? "+inf" : upper) + "]";
+    }
+
+}
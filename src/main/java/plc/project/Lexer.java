@@ -31,22 +31,37 @@ public final class Lexer {
      */
     public List<Token> lex() {
         List<Token> list = new ArrayList<Token>();
+        Events.Lex event = new Events.Lex();
+        event.begin();
+        try {
+            if (!chars.has(0)){
+                throw new ParseException("Empty entry", 0);
+            }
 
-        if (!chars.has(0)){
-            throw new ParseException("Empty entry", 0);
-        }
-
-        while (chars.has(0)) {
-            if (!(peek(" ") || peek("\t") || peek("\n") || peek("\r") || peek("\b"))) {
-                list.add(lexToken());
+            while (chars.has(0)) {
+                if (!(peek(" ") || peek("\t") || peek("\n") || peek("\r") || peek("\b"))) {
+                    list.add(lexToken());
+                }
+                else {
+                    chars.advance();
+                    chars.skip();
+                }
             }
-            else {
-                chars.advance();
-                chars.skip();
+
+            return list;
+        }
+        catch (RuntimeException e) {
+            event.fail(e);
+            throw e;
+        }
+        finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.inputSize = chars.input.length();
+                event.tokens = list.size();
+                event.commit();
             }
         }
-
-        return list;
     }
 
     /**
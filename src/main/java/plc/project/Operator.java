@@ -0,0 +1,147 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The binary operators of the language, resolved once from the operator
+ * string of an {@link Ast.Expr.Binary} so execution engines can dispatch on
+ * the constant rather than comparing strings on every evaluation.
+ *
+ * {@link #apply(Environment.PlcObject, Environment.PlcObject)} implements the
+ * comparison and arithmetic operators with the same semantics and errors as
+ * the {@link Interpreter}. The logical operators short-circuit and the
+ * equality operators compare the operand expressions rather than their
+ * values, so those are left to the engine.
+ */
+public enum Operator {
+
+    AND("AND"),
+    OR("OR"),
+    LESS("<"),
+    LESS_EQUAL("<="),
+    GREATER(">"),
+    GREATER_EQUAL(">="),
+    EQUAL("=="),
+    NOT_EQUAL("!="),
+    ADD("+"),
+    SUBTRACT("-"),
+    MULTIPLY("*"),
+    DIVIDE("/");
+
+    private static final Map<String, Operator> SYMBOLS = new HashMap<>();
+
+    static {
+        for (Operator operator : values()) {
+            SYMBOLS.put(operator.symbol, operator);
+        }
+    }
+
+    private final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public static Optional<Operator> of(String symbol) {
+        return Optional.ofNullable(SYMBOLS.get(symbol));
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public boolean isLogical() {
+        return this == AND || this == OR;
+    }
+
+    public boolean isEquality() {
+        return this == EQUAL || this == NOT_EQUAL;
+    }
+
+    /**
+     * Applies a comparison or arithmetic operator to evaluated operands.
+     */
+    public Environment.PlcObject apply(Environment.PlcObject left, Environment.PlcObject right) {
+        switch (this) {
+            case LESS:
+                return Environment.create(compare(left, right) < 0);
+            case LESS_EQUAL:
+                return Environment.create(compare(left, right) <= 0);
+            case GREATER:
+                return Environment.create(compare(left, right) > 0);
+            case GREATER_EQUAL:
+                return Environment.create(compare(left, right) >= 0);
+            case ADD:
+                if (IntegerArithmetic.isInteger(left)) {
+                    return IntegerArithmetic.add(left, requireInteger(right));
+                } else if (left.getValue() instanceof String) {
+                    return Environment.create("" + left.getValue() + right.getValue());
+                } else if (left.getValue() instanceof BigDecimal) {
+                    return Environment.create(((BigDecimal) left.getValue()).add(requireType(BigDecimal.class, right)));
+                }
+                throw new RuntimeException();
+            case SUBTRACT:
+                if (IntegerArithmetic.isInteger(left)) {
+                    return IntegerArithmetic.subtract(left, requireInteger(right));
+                } else if (left.getValue() instanceof BigDecimal) {
+                    return Environment.create(((BigDecimal) left.getValue()).subtract(requireType(BigDecimal.class, right)));
+                }
+                throw new RuntimeException();
+            case MULTIPLY:
+                if (IntegerArithmetic.isInteger(left)) {
+                    return IntegerArithmetic.multiply(left, requireInteger(right));
+                } else if (left.getValue() instanceof BigDecimal) {
+                    return Environment.create(((BigDecimal) left.getValue()).multiply(requireType(BigDecimal.class, right)));
+                }
+                throw new RuntimeException();
+            case DIVIDE:
+                if (right.isLong() ? right.getLong() == 0 : right.getValue().toString().equals("0")) {
+                    throw new RuntimeException();
+                }
+                if (IntegerArithmetic.isInteger(left)) {
+                    return IntegerArithmetic.divide(left, requireInteger(right));
+                } else if (left.getValue() instanceof BigDecimal) {
+                    return Environment.create(((BigDecimal) left.getValue()).divide(requireType(BigDecimal.class, right), RoundingMode.HALF_EVEN));
+                }
+                throw new RuntimeException();
+            default:
+                throw new IllegalStateException("Invalid operator " + this + ", which is evaluated by the engine.");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong()) {
+            return Long.compare(left.getLong(), right.getLong());
+        }
+        return requireType(Comparable.class, left).compareTo(requireType(left.getValue().getClass(), right));
+    }
+
+    /**
+     * Returns {@code object} if it holds an integer, which may be held as a
+     * {@code long} rather than a {@link BigInteger}.
+     */
+    private static Environment.PlcObject requireInteger(Environment.PlcObject object) {
+        if (!object.isLong()) {
+            requireType(BigInteger.class, object);
+        }
+        return object;
+    }
+
+    /**
+     * Helper function to ensure an object is of the appropriate type.
+     */
+    static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return type.cast(object.getValue());
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Where the {@code print} function of an engine writes its output. A sink
+ * belongs to a single execution and is not thread safe, so concurrent
+ * executions should each have their own (sinks writing to a shared
+ * destination only synchronize on it when they flush).
+ */
+public interface OutputSink {
+
+    void println(Object value);
+
+    /**
+     * Writes any buffered output to the destination. Engines flush their
+     * sink when an execution completes.
+     */
+    default void flush() {}
+
+    /**
+     * Returns a sink printing every line to {@link System#out} (as it is at
+     * the time of printing), which is the default for all engines.
+     */
+    static OutputSink stdout() {
+        return value -> System.out.println(value);
+    }
+
+    /**
+     * Returns a sink printing to {@code stream}, in batches of about
+     * {@code capacity} characters.
+     */
+    static OutputSink buffered(PrintStream stream, int capacity) {
+        return new Buffered(capacity) {
+
+            @Override
+            protected void write(CharSequence text) {
+                synchronized (stream) {
+                    stream.append(text);
+                    stream.flush();
+                }
+            }
+
+        };
+    }
+
+    /**
+     * Returns a sink writing to {@code writer}, in batches of about
+     * {@code capacity} characters.
+     */
+    static OutputSink buffered(Writer writer, int capacity) {
+        return new Buffered(capacity) {
+
+            @Override
+            protected void write(CharSequence text) {
+                try {
+                    synchronized (writer) {
+                        writer.append(text);
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+        };
+    }
+
+    /**
+     * A sink collecting lines in a buffer until it holds about
+     * {@code capacity} characters, and then writing them all at once.
+     */
+    abstract class Buffered implements OutputSink {
+
+        private final int capacity;
+        private final StringBuilder buffer = new StringBuilder();
+
+        protected Buffered(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void println(Object value) {
+            buffer.append(value).append(System.lineSeparator());
+            if (buffer.length() >= capacity) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (buffer.length() > 0) {
+                write(buffer);
+                buffer.setLength(0);
+            }
+        }
+
+        protected abstract void write(CharSequence text);
+
+    }
+
+    /**
+     * A sink keeping every line in memory.
+     */
+    final class Collector implements OutputSink {
+
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void println(Object value) {
+            lines.add(String.valueOf(value));
+        }
+
+        public List<String> getLines() {
+            return Collections.unmodifiableList(lines);
+        }
+
+    }
+
+    /**
+     * A sink keeping the last {@code capacity} lines in memory, dropping the
+     * oldest ones when it is full.
+     */
+    final class Ring implements OutputSink {
+
+        private final int capacity;
+        private final Deque<String> lines = new ArrayDeque<>();
+        private long dropped = 0;
+
+        public Ring(int capacity) {
+            if (capacity < 0) {
+                throw new IllegalArgumentException("The capacity must not be negative.");
+            }
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void println(Object value) {
+            if (capacity == 0) {
+                dropped++;
+                return;
+            } else if (lines.size() == capacity) {
+                lines.removeFirst();
+                dropped++;
+            }
+            lines.addLast(String.valueOf(value));
+        }
+
+        public List<String> getLines() {
+            return Collections.unmodifiableList(new ArrayList<>(lines));
+        }
+
+        /**
+         * Returns the number of lines dropped because the ring was full.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+    }
+
+}
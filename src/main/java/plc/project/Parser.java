@@ -33,20 +33,40 @@ public final class Parser {
         List<Ast.Field> field = new ArrayList<>();
         List<Ast.Method> method = new ArrayList<>();
         boolean methodPassed = false;
-        while (tokens.has(0)){
-            if (peek("LET")){
-                if(methodPassed){
-                    throw new ParseException("Recieved fields after methods", tokens.get(0).getIndex());
+        Ast.Source source = null;
+        Events.Parse event = new Events.Parse();
+        event.begin();
+        try {
+            while (tokens.has(0)){
+                if (peek("LET")){
+                    if(methodPassed){
+                        throw new ParseException("Recieved fields after methods", tokens.get(0).getIndex());
+                    }
+                    field.add(parseField());
+                }
+                else if (peek("DEF")){
+                    method.add(parseMethod());
+                    methodPassed = true;
                 }
-                field.add(parseField());
             }
-            else if (peek("DEF")){
-                method.add(parseMethod());
-                methodPassed = true;
+
+            source = new Ast.Source(field, method);
+            return source;
+        }
+        catch (RuntimeException e) {
+            event.fail(e);
+            throw e;
+        }
+        finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.tokens = tokens.tokens.size();
+                if (source != null) {
+                    event.nodes = Events.count(source);
+                }
+                event.commit();
             }
         }
-
-        return new Ast.Source(field, method);
     }
 
     /**
@@ -56,6 +76,7 @@ public final class Parser {
     public Ast.Field parseField() throws ParseException {
         String name = "";
         String type = "";
+        int start = offset();
         match("LET");
 
         Optional<Ast.Expr> val = Optional.empty();
@@ -96,7 +117,7 @@ public final class Parser {
             // Error, no identifier (LET )
             throw new ParseException("No variable name found", tokens.get(0).getIndex());
         }
-        return new Ast.Field(name, type, val);
+        return at(start, new Ast.Field(name, type, val));
     }
 
     /**
@@ -104,6 +125,7 @@ public final class Parser {
      * next tokens start a method, aka {@code DEF}.
      */
     public Ast.Method parseMethod() throws ParseException {
+        int start = offset();
         match("DEF");
         // Layout: (DEF add(num1, num2) DO return num1 + num2 END)
         String name = "";
@@ -201,7 +223,7 @@ public final class Parser {
             throw new ParseException("No END found", index);
         }
 
-        return new Ast.Method(name, parameters, parameterTypes,returnType,statements);
+        return at(start, new Ast.Method(name, parameters, parameterTypes,returnType,statements));
 
     }
 
@@ -211,20 +233,21 @@ public final class Parser {
      * statement, then it is an expression/assignment statement.
      */
     public Ast.Stmt parseStatement() throws ParseException {
+        int start = offset();
         if(peek("LET")) {
-            return parseDeclarationStatement();
+            return at(start, parseDeclarationStatement());
         }
         else if (peek("IF")) {
-            return parseIfStatement();
+            return at(start, parseIfStatement());
         }
         else if (peek("FOR")) {
-            return parseForStatement();
+            return at(start, parseForStatement());
         }
         else if (peek("WHILE")) {
-            return parseWhileStatement();
+            return at(start, parseWhileStatement());
         }
         else if (peek("RETURN")) {
-            return parseReturnStatement();
+            return at(start, parseReturnStatement());
         }
 
         Ast.Expr beg = parseExpression();
@@ -236,7 +259,7 @@ public final class Parser {
                 int index = tokens.get(-1).getIndex() + tokens.get(-1).getLiteral().length();
                 throw new ParseException("Missing semicolon", index);
             }
-            return new Ast.Stmt.Assignment(beg, end);
+            return at(start, new Ast.Stmt.Assignment(beg, end));
         }
         else if (!match(";")){
             // Throw parse error, it's missing a semicolon
@@ -244,7 +267,7 @@ public final class Parser {
             throw new ParseException("Missing semicolon", index);
         }
 
-        return new Ast.Stmt.Expression(beg);
+        return at(start, new Ast.Stmt.Expression(beg));
     }
 
     /**
@@ -473,10 +496,10 @@ public final class Parser {
             Ast.Expr end = parseEqualityExpression();
 
             if (accumulate == null){
-                accumulate = new Ast.Expr.Binary(op, beg, end);
+                accumulate = at(beg.getOffset(), new Ast.Expr.Binary(op, beg, end));
             }
             else{
-                accumulate = new Ast.Expr.Binary(op, accumulate, end);
+                accumulate = at(accumulate.getOffset(), new Ast.Expr.Binary(op, accumulate, end));
             }
         }
 
@@ -511,10 +534,10 @@ public final class Parser {
             Ast.Expr right = parseAdditiveExpression();
 
             if (accumulate == null){
-                accumulate = new Ast.Expr.Binary(op, left, right);
+                accumulate = at(left.getOffset(), new Ast.Expr.Binary(op, left, right));
             }
             else{
-                accumulate = new Ast.Expr.Binary(op, accumulate, right);
+                accumulate = at(accumulate.getOffset(), new Ast.Expr.Binary(op, accumulate, right));
             }
 
         }
@@ -544,10 +567,10 @@ public final class Parser {
 
 
             if (accumulate == null){
-                accumulate = new Ast.Expr.Binary(op, left, right);
+                accumulate = at(left.getOffset(), new Ast.Expr.Binary(op, left, right));
             }
             else{
-                accumulate = new Ast.Expr.Binary(op, accumulate, right);
+                accumulate = at(accumulate.getOffset(), new Ast.Expr.Binary(op, accumulate, right));
             }
         }
 
@@ -575,10 +598,10 @@ public final class Parser {
             Ast.Expr right = parseSecondaryExpression();
 
             if (accumulate == null){
-                accumulate = new Ast.Expr.Binary(op, left, right);
+                accumulate = at(left.getOffset(), new Ast.Expr.Binary(op, left, right));
             }
             else{
-                accumulate = new Ast.Expr.Binary(op, accumulate, right);
+                accumulate = at(accumulate.getOffset(), new Ast.Expr.Binary(op, accumulate, right));
             }
         }
 
@@ -593,6 +616,7 @@ public final class Parser {
      */
     public Ast.Expr parseSecondaryExpression() throws ParseException {
         List<Ast.Expr> param = new ArrayList<Ast.Expr>();
+        int start = offset();
         Ast.Expr left = parsePrimaryExpression();
         String func = null;
 
@@ -612,10 +636,10 @@ public final class Parser {
                         // Throw parse error, no closing parentheses
                         throw new ParseException("Missing closing parentheses", tokens.get(0).getIndex());
                     }
-                    return new Ast.Expr.Function(Optional.of(left), func, param);
+                    return at(start, new Ast.Expr.Function(Optional.of(left), func, param));
                 }
                 else {
-                    left = new Ast.Expr.Access(Optional.of(left), func);
+                    left = at(start, new Ast.Expr.Access(Optional.of(left), func));
                 }
 
             }
@@ -636,20 +660,21 @@ public final class Parser {
      * not strictly necessary.
      */
     public Ast.Expr parsePrimaryExpression() throws ParseException {
+        int start = offset();
         if (match("NIL")){
-            return new Ast.Expr.Literal(null);
+            return at(start, new Ast.Expr.Literal(null));
         }
         else if (match("TRUE")){
-            return new Ast.Expr.Literal(true);
+            return at(start, new Ast.Expr.Literal(true));
         }
         else if (match("FALSE")){
-            return new Ast.Expr.Literal(false);
+            return at(start, new Ast.Expr.Literal(false));
         }
         else if (match(Token.Type.INTEGER)){
-            return new Ast.Expr.Literal(new BigInteger(tokens.get(-1).getLiteral()));
+            return at(start, new Ast.Expr.Literal(new BigInteger(tokens.get(-1).getLiteral())));
         }
         else if (match(Token.Type.DECIMAL)) {
-            return new Ast.Expr.Literal(new BigDecimal(tokens.get(-1).getLiteral()));
+            return at(start, new Ast.Expr.Literal(new BigDecimal(tokens.get(-1).getLiteral())));
         }
         else if (match(Token.Type.CHARACTER)) {
             char chars = tokens.get(-1).getLiteral().charAt(1);
@@ -678,7 +703,7 @@ public final class Parser {
                 }
             }
 
-            return new Ast.Expr.Literal(chars);
+            return at(start, new Ast.Expr.Literal(chars));
         }
         else if (match(Token.Type.STRING)) {
             String it = tokens.get(-1).getLiteral();
@@ -690,7 +715,7 @@ public final class Parser {
                     .replace("\\\'", "\'")
                     .replace("\\\"", "\"")
                     .replace("\\\\", "\\\\");
-            return new Ast.Expr.Literal(it);
+            return at(start, new Ast.Expr.Literal(it));
         }
         else if (match("(")){
             Ast.Expr expr = parseExpression();
@@ -703,7 +728,7 @@ public final class Parser {
                 }
             }
             else {
-                return new Ast.Expr.Group(expr);
+                return at(start, new Ast.Expr.Group(expr));
             }
         }
         else if (match(Token.Type.IDENTIFIER)){
@@ -712,7 +737,7 @@ public final class Parser {
             if (match("(")){
                 if (match(")")){
                     List<Ast.Expr> empty = new ArrayList<Ast.Expr>();
-                    return new Ast.Expr.Function(Optional.empty(), identity, empty);
+                    return at(start, new Ast.Expr.Function(Optional.empty(), identity, empty));
                 }
                 else{
                     Ast.Expr express = parseExpression();
@@ -723,7 +748,7 @@ public final class Parser {
                         params.add(parseExpression());
                     }
                     if (match(")")){
-                        return new Ast.Expr.Function(Optional.empty(), identity, params);
+                        return at(start, new Ast.Expr.Function(Optional.empty(), identity, params));
                     }
                     else {
                         //Throw parse error, no ending parentheses TODO
@@ -732,12 +757,28 @@ public final class Parser {
                 }
             }
             else {
-                return new Ast.Expr.Access(Optional.empty(), identity);
+                return at(start, new Ast.Expr.Access(Optional.empty(), identity));
             }
         }
         throw new ParseException("Invalid Primary Expression", tokens.get(0).getIndex());
     }
 
+    /**
+     * Returns the index of the next token in the source, or -1 at the end of
+     * the input.
+     */
+    private int offset() {
+        return tokens.has(0) ? tokens.get(0).getIndex() : -1;
+    }
+
+    /**
+     * Records that {@code ast} starts at {@code offset} in the source.
+     */
+    private static <T extends Ast> T at(int offset, T ast) {
+        ast.setOffset(offset);
+        return ast;
+    }
+
     /**
      * As in the lexer, returns {@code true} if the current sequence of tokens
      * matches the given patterns. Unlike the lexer, the pattern is not a regex;
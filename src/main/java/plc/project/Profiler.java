@@ -0,0 +1,302 @@
+package plc.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the executions of the statements, expressions and methods of a
+ * program run by an {@link Interpreter} (see
+ * {@link Interpreter#setProfiler(Profiler)}), and the time spent in them.
+ *
+ * For every node, the total time is the time from entering to exiting it,
+ * counted once for recursive executions, while the self time excludes the
+ * nodes executed within it. Methods and statements are also recorded as
+ * stacks, which can be written in the collapsed format read by flame graph
+ * tools. Nodes are located in the source by {@link Ast#getOffset()}.
+ *
+ * A profiler is not thread safe, like the interpreter using it.
+ */
+public final class Profiler {
+
+    private final Map<Ast, Entry> entries = new IdentityHashMap<>();
+    private final Frame root = new Frame(null, null);
+    private Frame frame = root;
+    private Activation[] stack = new Activation[64];
+    private int depth = 0;
+    private int top = -1;
+
+    void enter(Ast ast) {
+        Entry entry = entries.get(ast);
+        if (entry == null) {
+            entry = new Entry(ast);
+            entries.put(ast, entry);
+        }
+        entry.count++;
+        entry.active++;
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+        Activation activation = stack[depth];
+        if (activation == null) {
+            activation = new Activation();
+            stack[depth] = activation;
+        }
+        activation.entry = entry;
+        activation.children = 0;
+        activation.frameChildren = 0;
+        activation.enclosing = -1;
+        if (ast instanceof Ast.Method || ast instanceof Ast.Stmt) {
+            activation.enclosing = top;
+            top = depth;
+            frame = frame.child(ast);
+        }
+        depth++;
+        activation.start = System.nanoTime();
+    }
+
+    void exit() {
+        long now = System.nanoTime();
+        Activation activation = stack[--depth];
+        long elapsed = now - activation.start;
+        Entry entry = activation.entry;
+        entry.selfNanos += elapsed - activation.children;
+        if (--entry.active == 0) {
+            entry.totalNanos += elapsed;
+        }
+        if (depth > 0) {
+            stack[depth - 1].children += elapsed;
+        }
+        if (top == depth) {
+            frame.nanos += elapsed - activation.frameChildren;
+            frame = frame.parent;
+            top = activation.enclosing;
+            if (top >= 0) {
+                stack[top].frameChildren += elapsed;
+            }
+        }
+        activation.entry = null;
+    }
+
+    /**
+     * Returns the entries of all nodes executed so far, from the highest
+     * self time to the lowest.
+     */
+    public List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        list.sort(Comparator.comparingLong(Entry::getSelfNanos).reversed()
+                .thenComparing(Comparator.comparingLong(Entry::getCount).reversed()));
+        return list;
+    }
+
+    /**
+     * Returns the entry of {@code ast}, or {@code null} if it was not
+     * executed.
+     */
+    public Entry getEntry(Ast ast) {
+        return entries.get(ast);
+    }
+
+    public void reset() {
+        if (depth != 0) {
+            throw new IllegalStateException("Cannot reset a profiler during execution.");
+        }
+        entries.clear();
+        root.children.clear();
+        root.nanos = 0;
+    }
+
+    /**
+     * Returns a report of the hot spots, which are the {@code limit} nodes
+     * with the highest self time, located in {@code source} by line and
+     * column (or by offset if the source is {@code null}).
+     */
+    public String report(String source, int limit) {
+        Lines lines = new Lines(source);
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%12s %12s %12s  %-10s %s%n", "self (ms)", "total (ms)", "count", "location", "node"));
+        List<Entry> list = getEntries();
+        for (Entry entry : list.subList(0, Math.min(limit, list.size()))) {
+            builder.append(String.format("%12.3f %12.3f %12d  %-10s %s%n",
+                    entry.selfNanos / 1e6, entry.totalNanos / 1e6, entry.count,
+                    lines.locate(entry.ast.getOffset()), describe(entry.ast)));
+        }
+        return builder.toString();
+    }
+
+    public String report(String source) {
+        return report(source, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the stacks of methods and statements executed so far in the
+     * collapsed format ({@code frame;frame;frame nanoseconds}, one stack per
+     * line), with the self time of the innermost frame in nanoseconds.
+     * Expressions are part of the statement they are executed in.
+     */
+    public void writeCollapsed(Appendable out, String source) throws IOException {
+        Lines lines = new Lines(source);
+        for (Frame child : root.children.values()) {
+            writeCollapsed(out, child, "", lines);
+        }
+    }
+
+    private static void writeCollapsed(Appendable out, Frame frame, String prefix, Lines lines) throws IOException {
+        String stack = prefix + label(frame.ast, lines);
+        if (frame.nanos > 0) {
+            out.append(stack).append(' ').append(Long.toString(frame.nanos)).append('\n');
+        }
+        for (Frame child : frame.children.values()) {
+            writeCollapsed(out, child, stack + ";", lines);
+        }
+    }
+
+    private static String label(Ast ast, Lines lines) {
+        if (ast instanceof Ast.Method) {
+            return ((Ast.Method) ast).getName() + "/" + ((Ast.Method) ast).getParameters().size();
+        }
+        return ast.getClass().getSimpleName() + "@" + lines.locate(ast.getOffset());
+    }
+
+    private static String describe(Ast ast) {
+        if (ast instanceof Ast.Method) {
+            return "DEF " + label(ast, null);
+        } else if (ast instanceof Ast.Expr.Binary) {
+            return "Binary " + ((Ast.Expr.Binary) ast).getOperator();
+        } else if (ast instanceof Ast.Expr.Access) {
+            return "Access " + ((Ast.Expr.Access) ast).getName();
+        } else if (ast instanceof Ast.Expr.Function) {
+            return "Function " + ((Ast.Expr.Function) ast).getName() + "/" + ((Ast.Expr.Function) ast).getArguments().size();
+        } else if (ast instanceof Ast.Stmt.Declaration) {
+            return "Declaration " + ((Ast.Stmt.Declaration) ast).getName();
+        } else if (ast instanceof Ast.Stmt.For) {
+            return "For " + ((Ast.Stmt.For) ast).getName();
+        }
+        return ast.getClass().getSimpleName();
+    }
+
+    /**
+     * The statistics of a node.
+     */
+    public static final class Entry {
+
+        private final Ast ast;
+        private long count = 0;
+        private long totalNanos = 0;
+        private long selfNanos = 0;
+        private int active = 0;
+
+        private Entry(Ast ast) {
+            this.ast = ast;
+        }
+
+        public Ast getAst() {
+            return ast;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getSelfNanos() {
+            return selfNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "ast=" + describe(ast) +
+                    ", offset=" + ast.getOffset() +
+                    ", count=" + count +
+                    ", totalNanos=" + totalNanos +
+                    ", selfNanos=" + selfNanos +
+                    '}';
+        }
+
+    }
+
+    /**
+     * A node of the tree of stacks, with the self time of its last frame.
+     */
+    private static final class Frame {
+
+        private final Ast ast;
+        private final Frame parent;
+        private final Map<Ast, Frame> children = new IdentityHashMap<>();
+        private long nanos = 0;
+
+        private Frame(Ast ast, Frame parent) {
+            this.ast = ast;
+            this.parent = parent;
+        }
+
+        private Frame child(Ast ast) {
+            Frame child = children.get(ast);
+            if (child == null) {
+                child = new Frame(ast, this);
+                children.put(ast, child);
+            }
+            return child;
+        }
+
+    }
+
+    /**
+     * A node being executed, which is reused once it has exited.
+     */
+    private static final class Activation {
+
+        private Entry entry;
+        private long start;
+        private long children;
+        private long frameChildren;
+        private int enclosing;
+
+    }
+
+    /**
+     * Converts offsets in a source to lines and columns, starting at 1.
+     */
+    private static final class Lines {
+
+        private final int[] starts;
+
+        private Lines(String source) {
+            if (source == null) {
+                starts = null;
+                return;
+            }
+            List<Integer> list = new ArrayList<>();
+            list.add(0);
+            for (int i = 0; i < source.length(); i++) {
+                if (source.charAt(i) == '\n') {
+                    list.add(i + 1);
+                }
+            }
+            starts = list.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private String locate(int offset) {
+            if (offset < 0) {
+                return "?";
+            } else if (starts == null) {
+                return Integer.toString(offset);
+            }
+            int line = Arrays.binarySearch(starts, offset);
+            if (line < 0) {
+                line = -line - 2;
+            }
+            return (line + 1) + ":" + (offset - starts[line] + 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+package plc.project;
+
+/**
+ * A source which has been lexed, parsed, analyzed and compiled to
+ * {@link Bytecode} once, so it can be executed any number of times, by any
+ * number of threads at once. A program is immutable; the state of an
+ * execution (such as the values of fields) is kept in the
+ * {@link ExecutionContext} created for it.
+ */
+public final class Program {
+
+    private final Ast.Source ast;
+    private final TypeRegistry types;
+    private final Bytecode bytecode;
+
+    /**
+     * Creates a program from a source which has already been analyzed. The
+     * AST must not be modified afterwards.
+     */
+    public Program(Ast.Source ast) {
+        this(ast, Environment.getTypes());
+    }
+
+    /**
+     * Creates a program as {@link #Program(Ast.Source)} from a source which
+     * has been analyzed with the types of {@code types}.
+     */
+    public Program(Ast.Source ast, TypeRegistry types) {
+        this.ast = ast;
+        this.types = types;
+        this.bytecode = new BytecodeCompiler().compile(ast);
+    }
+
+    /**
+     * Lexes, parses, analyzes, optimizes (see {@link #optimize(Ast.Source)})
+     * and compiles {@code input}, throwing a {@link ParseException} or
+     * {@link RuntimeException} if it is invalid. The ranges of its integers
+     * are analyzed with the {@link RangeAnalyzer}, so arithmetic proven to fit
+     * in a {@code long} is compiled to {@link Bytecode#BINARY_LONG}.
+     */
+    public static Program compile(String input) {
+        return compile(input, new Scope(null));
+    }
+
+    /**
+     * Compiles {@code input} as {@link #compile(String)}, analyzing it with the
+     * variables and functions defined in {@code scope} available. They must
+     * then be defined in the parent scope of every execution, for example
+     * as inputs (see {@link ExecutionService.Job}).
+     */
+    public static Program compile(String input, Scope scope) {
+        return compile(input, scope, Environment.getTypes());
+    }
+
+    /**
+     * Compiles {@code input} as {@link #compile(String, Scope)}, resolving the
+     * names of types in {@code types} (such as the registry of a tenant,
+     * whose parent is {@link Environment#getTypes()}).
+     */
+    public static Program compile(String input, Scope scope, TypeRegistry types) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(scope, types).visit(ast);
+        Ast.Source optimized = optimize(ast);
+        new RangeAnalyzer().visit(optimized);
+        return new Program(optimized, types);
+    }
+
+    /**
+     * Runs the optimization passes over an analyzed source, in order: the
+     * {@link ConstantFolder}, the {@link DeadCodeEliminator} (which then
+     * removes the code that folding made unreachable) and the
+     * {@link CommonSubexpressionEliminator}. Fields that are never read and
+     * methods that can't be called from {@code main/0} are removed, so they
+     * are not defined in the scope of an execution.
+     */
+    public static Ast.Source optimize(Ast.Source ast) {
+        Ast.Source folded = (Ast.Source) new ConstantFolder().visit(ast);
+        Ast.Source live = (Ast.Source) new DeadCodeEliminator().visit(folded);
+        return (Ast.Source) new CommonSubexpressionEliminator().visit(live);
+    }
+
+    public Ast.Source getAst() {
+        return ast;
+    }
+
+    /**
+     * Returns the registry of the types this program was analyzed with.
+     */
+    public TypeRegistry getTypes() {
+        return types;
+    }
+
+    public Bytecode getBytecode() {
+        return bytecode;
+    }
+
+    /**
+     * Creates a context for a new execution of this program, with its own
+     * fields and methods defined in a child of {@code parent}.
+     */
+    public ExecutionContext newContext(Scope parent) {
+        return newContext(parent, OutputSink.stdout());
+    }
+
+    /**
+     * Creates a context as {@link #newContext(Scope)}, whose {@code print}
+     * function writes to {@code output}.
+     */
+    public ExecutionContext newContext(Scope parent, OutputSink output) {
+        return new ExecutionContext(this, parent, output);
+    }
+
+    /**
+     * Executes this program in a new context, returning the result of
+     * {@code main/0}.
+     */
+    public Environment.PlcObject execute() {
+        return newContext(new Scope(null)).execute();
+    }
+
+}
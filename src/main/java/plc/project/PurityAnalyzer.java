@@ -0,0 +1,175 @@
+package plc.project;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Classifies the methods of an analyzed {@link Ast.Source} by their side
+ * effects and stores the result on each method's
+ * {@link Environment.Function} (see {@link Environment.Function#getPurity()}).
+ *
+ * A method is {@link Environment.Purity#READ_ONLY} if it reads a variable
+ * that is not one of its own parameters or locals (a field, or a variable of
+ * an enclosing scope such as an input of the program) or the field of an
+ * object, and {@link Environment.Purity#EFFECTFUL} if it assigns either, or
+ * calls a function that is itself effectful (such as {@code print}). Locals
+ * are told apart by the identity of the variables the {@link Analyzer}
+ * attached to the AST, as in the {@link CommonSubexpressionEliminator}. Otherwise, it only depends on its arguments and is
+ * {@link Environment.Purity#PURE}. Calls are followed transitively: every
+ * method starts out pure and is reclassified until nothing changes, so
+ * (mutually) recursive methods are only as impure as their bodies require.
+ * Methods that may not return are still considered pure.
+ */
+public final class PurityAnalyzer implements Ast.Visitor<Environment.Purity> {
+
+    private final Set<Environment.Variable> locals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Set<String> bound = new HashSet<>();
+
+    @Override
+    public Environment.Purity visit(Ast.Source ast) {
+        for (Ast.Method method : ast.getMethods()) {
+            method.getFunction().setPurity(Environment.Purity.PURE);
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ast.Method method : ast.getMethods()) {
+                Environment.Purity purity = visit(method);
+                if (purity != method.getFunction().getPurity()) {
+                    method.getFunction().setPurity(purity);
+                    changed = true;
+                }
+            }
+        }
+        Environment.Purity purity = Environment.Purity.PURE;
+        for (Ast.Method method : ast.getMethods()) {
+            purity = purity.join(method.getFunction().getPurity());
+        }
+        return purity;
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Field ast) {
+        return ast.getValue().isPresent() ? visit(ast.getValue().get()) : Environment.Purity.PURE;
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Method ast) {
+        locals.clear();
+        bound = new HashSet<>(ast.getParameters());
+        try {
+            return visitStatements(ast.getStatements());
+        } finally {
+            bound = new HashSet<>();
+        }
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Stmt.Expression ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Stmt.Declaration ast) {
+        Environment.Purity purity = ast.getValue().isPresent() ? visit(ast.getValue().get()) : Environment.Purity.PURE;
+        locals.add(ast.getVariable());
+        return purity;
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        Environment.Purity purity = visit(ast.getValue());
+        if (receiver.getReceiver().isPresent() || !isLocal(receiver)) {
+            return Environment.Purity.EFFECTFUL;
+        }
+        return purity;
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Stmt.If ast) {
+        return visit(ast.getCondition())
+                .join(visitStatements(ast.getThenStatements()))
+                .join(visitStatements(ast.getElseStatements()));
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Stmt.For ast) {
+        Environment.Purity purity = visit(ast.getValue());
+        Set<String> outer = bound;
+        bound = new HashSet<>(outer);
+        bound.add(ast.getName());
+        try {
+            return purity.join(visitStatements(ast.getStatements()));
+        } finally {
+            bound = outer;
+        }
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Stmt.While ast) {
+        return visit(ast.getCondition()).join(visitStatements(ast.getStatements()));
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Stmt.Return ast) {
+        return visit(ast.getValue());
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Expr.Literal ast) {
+        return Environment.Purity.PURE;
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Expr.Binary ast) {
+        return visit(ast.getLeft()).join(visit(ast.getRight()));
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            return visit(ast.getReceiver().get()).join(Environment.Purity.READ_ONLY);
+        }
+        return isLocal(ast) ? Environment.Purity.PURE : Environment.Purity.READ_ONLY;
+    }
+
+    @Override
+    public Environment.Purity visit(Ast.Expr.Function ast) {
+        Environment.Purity purity = ast.getReceiver().isPresent() ? visit(ast.getReceiver().get()) : Environment.Purity.PURE;
+        for (Ast.Expr argument : ast.getArguments()) {
+            purity = purity.join(visit(argument));
+        }
+        return purity.join(ast.getFunction().getPurity());
+    }
+
+    /**
+     * Returns {@code true} if {@code ast} (which has no receiver) accesses a
+     * parameter or local of the method being visited, either one declared
+     * before or one bound by name (parameters, and names of {@code FOR} loops
+     * within their body).
+     */
+    private boolean isLocal(Ast.Expr.Access ast) {
+        if (bound.contains(ast.getName())) {
+            locals.add(ast.getVariable());
+        }
+        return locals.contains(ast.getVariable());
+    }
+
+    private Environment.Purity visitStatements(List<Ast.Stmt> statements) {
+        Environment.Purity purity = Environment.Purity.PURE;
+        for (Ast.Stmt stmt : statements) {
+            purity = purity.join(visit(stmt));
+        }
+        return purity;
+    }
+
+}
@@ -0,0 +1,440 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interval analysis over the {@code Integer} expressions of an analyzed
+ * {@link Ast.Source}. Every {@code Integer} expression is annotated (see
+ * {@link Ast.Expr#getInterval()}) with a range that contains every value it
+ * can produce when the program is run from {@code main/0}. The
+ * {@link BytecodeCompiler} uses them to compute with {@code long}s without
+ * overflow checks wherever {@link Interval#fitsLong()} holds (see
+ * {@link Bytecode#BINARY_LONG}), which {@link Program#compile(String)} does.
+ *
+ * Locals and parameters are tracked flow-sensitively and refined by loop and
+ * branch conditions, while fields are tracked flow-insensitively since any
+ * call may assign them. Parameter ranges are the join of the arguments at
+ * every call site, and loops and recursion are brought to a fixed point by
+ * widening followed by a narrowing pass. Calls to functions outside of the
+ * source are unbounded, as are all parameters if there is no {@code main/0}.
+ */
+public final class RangeAnalyzer implements Ast.Visitor<Interval> {
+
+    private static final int WIDENING_DELAY = 3;
+    private static final int NARROWING_PASSES = 2;
+
+    private final Set<Environment.Variable> fieldVariables = identitySet();
+    private final Set<Environment.Function> methodFunctions = identitySet();
+    private final Map<Environment.Variable, Interval> fields = new IdentityHashMap<>();
+    private final Map<Environment.Function, Interval[]> parameters = new IdentityHashMap<>();
+    private final Map<Environment.Function, Interval> returns = new IdentityHashMap<>();
+    private final Deque<String> loopVariables = new ArrayDeque<>();
+
+    private Ast.Method method = null;
+    private State state = new State();
+    private boolean changed;
+    private int round;
+
+    @Override
+    public Interval visit(Ast.Source ast) {
+        for (Ast.Field field : ast.getFields()) {
+            fieldVariables.add(field.getVariable());
+        }
+        boolean main = ast.getMethods().stream().anyMatch(method -> method.getName().equals("main") && method.getParameters().isEmpty());
+        for (Ast.Method method : ast.getMethods()) {
+            methodFunctions.add(method.getFunction());
+            Interval[] intervals = new Interval[method.getParameters().size()];
+            Arrays.fill(intervals, main ? Interval.EMPTY : Interval.UNBOUNDED);
+            parameters.put(method.getFunction(), intervals);
+        }
+        round = 0;
+        do {
+            changed = false;
+            for (Ast.Field field : ast.getFields()) {
+                visit(field);
+            }
+            for (Ast.Method method : ast.getMethods()) {
+                visit(method);
+            }
+            round++;
+        } while (changed);
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Field ast) {
+        state = new State();
+        Interval interval = ast.getValue().isPresent() ? visit(ast.getValue().get()) : Interval.EMPTY;
+        update(fields, ast.getVariable(), interval);
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Method ast) {
+        method = ast;
+        state = new State();
+        try {
+            ast.getStatements().forEach(this::visit);
+        } finally {
+            method = null;
+        }
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Stmt.Declaration ast) {
+        Interval interval = ast.getValue().isPresent() ? visit(ast.getValue().get()) : Interval.EMPTY;
+        state.values.put(ast.getVariable(), interval);
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if (receiver.getReceiver().isPresent()) {
+            visit(receiver.getReceiver().get());
+            visit(ast.getValue());
+        } else if (fieldVariables.contains(receiver.getVariable())) {
+            update(fields, receiver.getVariable(), visit(ast.getValue()));
+        } else {
+            state.values.put(receiver.getVariable(), visit(ast.getValue()));
+        }
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Stmt.If ast) {
+        visit(ast.getCondition());
+        State entry = state;
+        state = refine(entry, ast.getCondition(), true);
+        ast.getThenStatements().forEach(this::visit);
+        State then = state;
+        state = refine(entry, ast.getCondition(), false);
+        ast.getElseStatements().forEach(this::visit);
+        state = then.join(state);
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
+        loopVariables.push(ast.getName());
+        try {
+            state = loop(state, null, ast.getStatements());
+        } finally {
+            loopVariables.pop();
+        }
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Stmt.While ast) {
+        State head = loop(state, ast.getCondition(), ast.getStatements());
+        state = refine(head, ast.getCondition(), false);
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Stmt.Return ast) {
+        Interval interval = visit(ast.getValue());
+        if (method != null) {
+            update(returns, method.getFunction(), interval);
+        }
+        state = state.copy();
+        state.reachable = false;
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Expr.Literal ast) {
+        if (ast.getLiteral() instanceof BigInteger) {
+            return annotate(ast, Interval.of((BigInteger) ast.getLiteral()));
+        }
+        return Interval.UNBOUNDED;
+    }
+
+    @Override
+    public Interval visit(Ast.Expr.Group ast) {
+        return annotate(ast, visit(ast.getExpression()));
+    }
+
+    @Override
+    public Interval visit(Ast.Expr.Binary ast) {
+        String op = ast.getOperator();
+        Interval left = visit(ast.getLeft());
+        if (op.equals("AND") || op.equals("OR")) {
+            State entry = state;
+            state = refine(entry, ast.getLeft(), op.equals("AND"));
+            visit(ast.getRight());
+            state = entry;
+            return Interval.UNBOUNDED;
+        }
+        Interval right = visit(ast.getRight());
+        Interval result = Interval.UNBOUNDED;
+        if (op.equals("+")) {
+            result = left.add(right);
+        } else if (op.equals("-")) {
+            result = left.subtract(right);
+        } else if (op.equals("*")) {
+            result = left.multiply(right);
+        } else if (op.equals("/")) {
+            result = left.divide(right);
+        }
+        return annotate(ast, result);
+    }
+
+    @Override
+    public Interval visit(Ast.Expr.Access ast) {
+        if (ast.getReceiver().isPresent()) {
+            visit(ast.getReceiver().get());
+            return annotate(ast, Interval.UNBOUNDED);
+        }
+        return annotate(ast, lookup(ast));
+    }
+
+    @Override
+    public Interval visit(Ast.Expr.Function ast) {
+        ast.getReceiver().ifPresent(this::visit);
+        Interval[] arguments = new Interval[ast.getArguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = visit(ast.getArguments().get(i));
+        }
+        Environment.Function function = ast.getFunction();
+        if (ast.getReceiver().isPresent() || !methodFunctions.contains(function)) {
+            return annotate(ast, Interval.UNBOUNDED);
+        }
+        if (state.reachable) {
+            Interval[] summary = parameters.get(function);
+            for (int i = 0; i < arguments.length; i++) {
+                Interval next = round >= WIDENING_DELAY ? summary[i].widen(summary[i].join(arguments[i])) : summary[i].join(arguments[i]);
+                if (!next.equals(summary[i])) {
+                    summary[i] = next;
+                    changed = true;
+                }
+            }
+        }
+        return annotate(ast, returns.getOrDefault(function, Interval.EMPTY));
+    }
+
+    /**
+     * Runs a loop body to a fixed point, widening the state at the head of
+     * the loop after a few iterations and then narrowing it again. The body
+     * is analyzed one last time with the final state so its annotations hold
+     * for every iteration. Returns the state at the head of the loop.
+     */
+    private State loop(State entry, Ast.Expr condition, List<Ast.Stmt> statements) {
+        State head = entry;
+        for (int iteration = 0; ; iteration++) {
+            State next = entry.join(iterate(head, condition, statements));
+            next = iteration >= WIDENING_DELAY ? head.widen(next) : head.join(next);
+            if (next.same(head)) {
+                break;
+            }
+            head = next;
+        }
+        for (int i = 0; i < NARROWING_PASSES; i++) {
+            head = entry.join(iterate(head, condition, statements));
+        }
+        iterate(head, condition, statements);
+        return head.join(state);
+    }
+
+    private State iterate(State head, Ast.Expr condition, List<Ast.Stmt> statements) {
+        state = head;
+        if (condition != null) {
+            visit(condition);
+            state = refine(head, condition, true);
+        }
+        statements.forEach(this::visit);
+        return state;
+    }
+
+    /**
+     * Returns the state in which {@code condition} evaluated to
+     * {@code outcome}. Only comparisons of locals and parameters are used,
+     * since fields may change between the condition and their next use.
+     * Equality is not used, as the {@link Interpreter} compares the operand
+     * expressions rather than their values.
+     */
+    private State refine(State entry, Ast.Expr condition, boolean outcome) {
+        if (condition instanceof Ast.Expr.Group) {
+            return refine(entry, ((Ast.Expr.Group) condition).getExpression(), outcome);
+        } else if (condition instanceof Ast.Expr.Literal) {
+            if (Boolean.valueOf(!outcome).equals(((Ast.Expr.Literal) condition).getLiteral())) {
+                State unreachable = entry.copy();
+                unreachable.reachable = false;
+                return unreachable;
+            }
+            return entry;
+        } else if (!(condition instanceof Ast.Expr.Binary)) {
+            return entry;
+        }
+        Ast.Expr.Binary binary = (Ast.Expr.Binary) condition;
+        String op = binary.getOperator();
+        if (op.equals("AND") || op.equals("OR")) {
+            boolean and = op.equals("AND");
+            State leftHolds = refine(entry, binary.getLeft(), and);
+            State both = refine(leftHolds, binary.getRight(), and);
+            // the outcome that does not short circuit needs both operands
+            if (outcome == and) {
+                return both;
+            }
+            return refine(entry, binary.getLeft(), !and).join(refine(leftHolds, binary.getRight(), !and));
+        }
+        if (!binary.getLeft().getType().equals(Environment.Type.INTEGER) || !binary.getRight().getType().equals(Environment.Type.INTEGER)) {
+            return entry;
+        }
+        if (!outcome) {
+            op = op.equals("<") ? ">=" : op.equals("<=") ? ">" : op.equals(">") ? "<=" : op.equals(">=") ? "<" : op;
+        }
+        State saved = state;
+        state = entry;
+        Interval left = visit(binary.getLeft());
+        Interval right = visit(binary.getRight());
+        state = saved;
+
+        State refined = entry.copy();
+        if (op.equals("<") || op.equals("<=")) {
+            narrow(refined, binary.getLeft(), left.below(right, op.equals("<=")));
+            narrow(refined, binary.getRight(), right.above(left, op.equals("<=")));
+        } else if (op.equals(">") || op.equals(">=")) {
+            narrow(refined, binary.getLeft(), left.above(right, op.equals(">=")));
+            narrow(refined, binary.getRight(), right.below(left, op.equals(">=")));
+        }
+        return refined;
+    }
+
+    private void narrow(State state, Ast.Expr expr, Interval interval) {
+        if (interval.isEmpty()) {
+            state.reachable = false;
+        }
+        if (expr instanceof Ast.Expr.Access && !((Ast.Expr.Access) expr).getReceiver().isPresent()) {
+            Environment.Variable variable = ((Ast.Expr.Access) expr).getVariable();
+            if (!fieldVariables.contains(variable)) {
+                state.values.put(variable, interval);
+            }
+        }
+    }
+
+    /**
+     * Returns the range of a variable that is not the field of an object.
+     */
+    private Interval lookup(Ast.Expr.Access ast) {
+        Environment.Variable variable = ast.getVariable();
+        if (state.values.containsKey(variable)) {
+            return state.values.get(variable);
+        } else if (fieldVariables.contains(variable)) {
+            return fields.getOrDefault(variable, Interval.EMPTY);
+        }
+        return initial(variable);
+    }
+
+    /**
+     * Returns the range of a local variable before it is first assigned.
+     * Parameters and loop variables are not attached to the AST, so they are
+     * recognized by name.
+     */
+    private Interval initial(Environment.Variable variable) {
+        if (!loopVariables.contains(variable.getName()) && method != null && method.getParameters().contains(variable.getName())) {
+            Environment.Function function = method.getFunction();
+            return parameters.get(function)[method.getParameters().indexOf(variable.getName())];
+        }
+        return Interval.UNBOUNDED;
+    }
+
+    private Interval annotate(Ast.Expr ast, Interval interval) {
+        if (ast.getType().equals(Environment.Type.INTEGER)) {
+            ast.setInterval(interval);
+        }
+        return interval;
+    }
+
+    private <K> void update(Map<K, Interval> summaries, K key, Interval interval) {
+        Interval previous = summaries.getOrDefault(key, Interval.EMPTY);
+        Interval next = round >= WIDENING_DELAY ? previous.widen(previous.join(interval)) : previous.join(interval);
+        if (!next.equals(previous)) {
+            summaries.put(key, next);
+            changed = true;
+        }
+    }
+
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * The ranges of the locals and parameters at a point in a method. Values
+     * missing from the map have not been assigned since the method started,
+     * see {@link #initial(Environment.Variable)}.
+     */
+    private final class State {
+
+        private final Map<Environment.Variable, Interval> values = new IdentityHashMap<>();
+        private boolean reachable = true;
+
+        private State copy() {
+            State copy = new State();
+            copy.values.putAll(values);
+            copy.reachable = reachable;
+            return copy;
+        }
+
+        private State join(State other) {
+            return merge(other, false);
+        }
+
+        private State widen(State other) {
+            return merge(other, true);
+        }
+
+        private State merge(State other, boolean widen) {
+            if (!other.reachable) {
+                return this;
+            } else if (!reachable) {
+                return other;
+            }
+            State merged = new State();
+            Set<Environment.Variable> variables = identitySet();
+            variables.addAll(values.keySet());
+            variables.addAll(other.values.keySet());
+            for (Environment.Variable variable : variables) {
+                Interval first = values.containsKey(variable) ? values.get(variable) : initial(variable);
+                Interval second = other.values.containsKey(variable) ? other.values.get(variable) : initial(variable);
+                merged.values.put(variable, widen ? first.widen(first.join(second)) : first.join(second));
+            }
+            return merged;
+        }
+
+        /**
+         * Compares the ranges by value, as {@link IdentityHashMap#equals}
+         * compares them by reference.
+         */
+        private boolean same(State other) {
+            if (reachable != other.reachable || !values.keySet().equals(other.values.keySet())) {
+                return false;
+            }
+            for (Map.Entry<Environment.Variable, Interval> entry : values.entrySet()) {
+                if (!entry.getValue().equals(other.values.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
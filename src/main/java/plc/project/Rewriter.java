@@ -0,0 +1,225 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Base class for passes that transform an analyzed AST into a new AST. Each
+ * visit method returns the rewritten node, which is the original node when
+ * nothing underneath it changed, so unchanged subtrees are shared rather than
+ * copied. Rebuilt nodes keep the type, variable, and function annotations set
+ * by the {@link Analyzer}, so the result can be handed to the back ends
+ * directly.
+ *
+ * Subclasses override the visit methods for the nodes they care about, and
+ * {@link #rewrite(Ast.Stmt, List)} when a statement should be replaced by
+ * zero or several statements.
+ */
+public abstract class Rewriter implements Ast.Visitor<Ast> {
+
+    @Override
+    public Ast visit(Ast.Source ast) {
+        List<Ast.Field> fields = new ArrayList<>();
+        for (Ast.Field field : ast.getFields()) {
+            fields.add((Ast.Field) visit(field));
+        }
+        List<Ast.Method> methods = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            methods.add((Ast.Method) visit(method));
+        }
+        return new Ast.Source(fields, methods);
+    }
+
+    @Override
+    public Ast visit(Ast.Field ast) {
+        Optional<Ast.Expr> value = rewrite(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Field field = new Ast.Field(ast.getName(), ast.getTypeName(), value);
+        field.setVariable(ast.getVariable());
+        return field;
+    }
+
+    @Override
+    public Ast visit(Ast.Method ast) {
+        List<Ast.Stmt> statements = rewrite(ast.getStatements());
+        if (same(statements, ast.getStatements())) {
+            return ast;
+        }
+        Ast.Method method = new Ast.Method(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+        method.setFunction(ast.getFunction());
+        return method;
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Expression ast) {
+        Ast.Expr expression = rewrite(ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Stmt.Expression(expression);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Declaration ast) {
+        Optional<Ast.Expr> value = rewrite(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration(ast.getName(), ast.getTypeName(), value);
+        declaration.setVariable(ast.getVariable());
+        return declaration;
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Assignment ast) {
+        Ast.Expr receiver = rewrite(ast.getReceiver());
+        Ast.Expr value = rewrite(ast.getValue());
+        if (receiver == ast.getReceiver() && value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Stmt.Assignment(receiver, value);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.If ast) {
+        Ast.Expr condition = rewrite(ast.getCondition());
+        List<Ast.Stmt> thenStatements = rewrite(ast.getThenStatements());
+        List<Ast.Stmt> elseStatements = rewrite(ast.getElseStatements());
+        if (condition == ast.getCondition() && same(thenStatements, ast.getThenStatements()) && same(elseStatements, ast.getElseStatements())) {
+            return ast;
+        }
+        return new Ast.Stmt.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.For ast) {
+        Ast.Expr value = rewrite(ast.getValue());
+        List<Ast.Stmt> statements = rewrite(ast.getStatements());
+        if (value == ast.getValue() && same(statements, ast.getStatements())) {
+            return ast;
+        }
+        return new Ast.Stmt.For(ast.getName(), value, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.While ast) {
+        Ast.Expr condition = rewrite(ast.getCondition());
+        List<Ast.Stmt> statements = rewrite(ast.getStatements());
+        if (condition == ast.getCondition() && same(statements, ast.getStatements())) {
+            return ast;
+        }
+        return new Ast.Stmt.While(condition, statements);
+    }
+
+    @Override
+    public Ast visit(Ast.Stmt.Return ast) {
+        Ast.Expr value = rewrite(ast.getValue());
+        return value == ast.getValue() ? ast : new Ast.Stmt.Return(value);
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Group ast) {
+        Ast.Expr expression = rewrite(ast.getExpression());
+        if (expression == ast.getExpression()) {
+            return ast;
+        }
+        Ast.Expr.Group group = new Ast.Expr.Group(expression);
+        group.setType(ast.getType());
+        return group;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Binary ast) {
+        Ast.Expr left = rewrite(ast.getLeft());
+        Ast.Expr right = rewrite(ast.getRight());
+        if (left == ast.getLeft() && right == ast.getRight()) {
+            return ast;
+        }
+        Ast.Expr.Binary binary = new Ast.Expr.Binary(ast.getOperator(), left, right);
+        binary.setType(ast.getType());
+        return binary;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Access ast) {
+        Optional<Ast.Expr> receiver = rewrite(ast.getReceiver());
+        if (receiver == ast.getReceiver()) {
+            return ast;
+        }
+        Ast.Expr.Access access = new Ast.Expr.Access(receiver, ast.getName());
+        access.setVariable(ast.getVariable());
+        return access;
+    }
+
+    @Override
+    public Ast visit(Ast.Expr.Function ast) {
+        Optional<Ast.Expr> receiver = rewrite(ast.getReceiver());
+        List<Ast.Expr> arguments = new ArrayList<>();
+        boolean changed = receiver != ast.getReceiver();
+        for (Ast.Expr argument : ast.getArguments()) {
+            Ast.Expr rewritten = rewrite(argument);
+            changed |= rewritten != argument;
+            arguments.add(rewritten);
+        }
+        if (!changed) {
+            return ast;
+        }
+        Ast.Expr.Function function = new Ast.Expr.Function(receiver, ast.getName(), arguments);
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    /**
+     * Rewrites a list of statements, giving each statement the chance to
+     * expand into any number of replacements.
+     */
+    protected List<Ast.Stmt> rewrite(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> rewritten = new ArrayList<>();
+        for (Ast.Stmt stmt : statements) {
+            rewrite(stmt, rewritten);
+        }
+        return rewritten;
+    }
+
+    /**
+     * Appends the rewritten form of {@code stmt} to {@code output}. The default
+     * replaces each statement with exactly one statement.
+     */
+    protected void rewrite(Ast.Stmt stmt, List<Ast.Stmt> output) {
+        output.add((Ast.Stmt) visit(stmt));
+    }
+
+    protected Ast.Expr rewrite(Ast.Expr expr) {
+        return (Ast.Expr) visit(expr);
+    }
+
+    protected Optional<Ast.Expr> rewrite(Optional<Ast.Expr> expr) {
+        if (!expr.isPresent()) {
+            return expr;
+        }
+        Ast.Expr rewritten = rewrite(expr.get());
+        return rewritten == expr.get() ? expr : Optional.of(rewritten);
+    }
+
+    /**
+     * Returns {@code true} if both lists hold the same node instances, which
+     * is cheaper than the structural {@code equals} on large subtrees.
+     */
+    protected static boolean same(List<? extends Ast> first, List<? extends Ast> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i) != second.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
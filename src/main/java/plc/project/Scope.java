@@ -1,16 +1,30 @@
 package plc.project;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Function;
 
+/**
+ * Variables and functions are stored by {@link Symbol}, and functions also
+ * by arity, which are created when the first one is defined, as most block
+ * scopes define neither. Lookups by name intern it once and then only
+ * compare numbers through the whole chain of scopes; the overloads taking a
+ * symbol skip interning as well.
+ *
+ * Functions are stored in small tables (see {@link Table}), and variables
+ * in a persistent hash trie (see {@link Node}), so that the variables of a
+ * scope can be captured by a {@link Snapshot} and forked into other scopes
+ * in constant time, sharing the trie until they are assigned.
+ */
 public final class Scope {
 
     private final Scope parent;
-    private final Map<String, Environment.Variable> variables = new HashMap<>();
-    private final Map<String, Environment.Function> functions = new HashMap<>();
+    private Node variables = null;
+    private Edit edit = null;
+    private Table<Environment.Function> functions = null;
+    private long functionVersion = 0;
 
     public Scope(Scope parent) {
         this.parent = parent;
@@ -25,60 +39,457 @@ public final class Scope {
     }
 
     public Environment.Variable defineVariable(String name, String jvmName, Environment.Type type, Environment.PlcObject value) {
-        if (variables.containsKey(name)) {
+        int key = Symbol.of(name).getId();
+        if (Node.get(variables, key) != null) {
             throw new RuntimeException("The variable " + name + " is already defined in this scope.");
-        } else {
-            Environment.Variable variable = new Environment.Variable(name, jvmName, type, value);
-            variables.put(variable.getName(), variable);
-            return variables.get(name);
+        } else if (edit == null) {
+            edit = new Edit();
         }
+        Environment.Variable variable = new Environment.Variable(name, jvmName, type, value);
+        variable.owner = edit;
+        variables = Node.put(variables, edit, key, variable, 0);
+        return variable;
     }
 
     public Environment.Variable lookupVariable(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        } else if (parent != null) {
-            return parent.lookupVariable(name);
-        } else {
-            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        return lookupVariable(Symbol.of(name));
+    }
+
+    public Environment.Variable lookupVariable(Symbol symbol) {
+        int key = symbol.getId();
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (scope.variables != null) {
+                Environment.Variable variable = Node.get(scope.variables, key);
+                if (variable != null) {
+                    return variable.owner == scope.edit ? variable : scope.copy(key, variable);
+                }
+            }
         }
+        throw new RuntimeException("The variable " + symbol.getName() + " is not defined in this scope.");
     }
 
-    public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        List<Environment.Type> parameterTypes = new ArrayList<>();
-        for (int i = 0; i < arity; i++) {
-            parameterTypes.add(Environment.Type.ANY);
+    /**
+     * Replaces a variable shared with a snapshot by a copy owned by this
+     * scope, which is the one assigned from then on.
+     */
+    private Environment.Variable copy(int key, Environment.Variable variable) {
+        Environment.Variable copy = new Environment.Variable(variable.getName(), variable.getJvmName(), variable.getType(), variable.getValue());
+        copy.owner = edit;
+        variables = Node.put(variables, edit, key, copy, 0);
+        return copy;
+    }
+
+    /**
+     * Returns a snapshot of the variables defined in this scope (but not its
+     * parents), in constant time. The variables are then shared by this
+     * scope and the snapshot until they are looked up again from this
+     * scope, which copies them, so that the snapshot never changes.
+     * Variables looked up before cannot be assigned anymore (see
+     * {@link Environment.Variable#setValue(Environment.PlcObject)}).
+     */
+    public Snapshot snapshot() {
+        if (edit != null) {
+            edit.frozen = true;
+            edit = new Edit();
         }
-        defineFunction(name, name, parameterTypes, Environment.Type.ANY, function);
+        return new Snapshot(variables);
+    }
+
+    public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
+        defineFunction(name, name, parameters(arity), Environment.Type.ANY, function);
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (functions.containsKey(name + "/" + parameterTypes.size())) {
-            throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
-        } else {
-            Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
-            return func;
+        return defineFunction(new Environment.Function(name, jvmName, parameterTypes, returnType, function));
+    }
+
+    /**
+     * Defines a function of type {@code Any} taking no arguments, which is
+     * invoked without allocating a list of them. The same goes for the
+     * functions below, up to four arguments.
+     */
+    public Environment.Function defineFunction(String name, Environment.Function.Invoker0 invoker) {
+        return defineFunction(Environment.Function.of(name, name, parameters(0), Environment.Type.ANY, invoker));
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function.Invoker1 invoker) {
+        return defineFunction(Environment.Function.of(name, name, parameters(1), Environment.Type.ANY, invoker));
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function.Invoker2 invoker) {
+        return defineFunction(Environment.Function.of(name, name, parameters(2), Environment.Type.ANY, invoker));
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function.Invoker3 invoker) {
+        return defineFunction(Environment.Function.of(name, name, parameters(3), Environment.Type.ANY, invoker));
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function.Invoker4 invoker) {
+        return defineFunction(Environment.Function.of(name, name, parameters(4), Environment.Type.ANY, invoker));
+    }
+
+    public Environment.Function defineFunction(Environment.Function func) {
+        long key = key(Symbol.of(func.getName()), func.getParameterTypes().size());
+        if (functions == null) {
+            functions = new Table<>();
+        } else if (functions.get(key) != null) {
+            throw new RuntimeException("The function " + func.getName() + "/" + func.getParameterTypes().size() + " is already defined in this scope.");
         }
+        functions.put(key, func);
+        functionVersion++;
+        return func;
+    }
+
+    private static List<Environment.Type> parameters(int arity) {
+        return new ArrayList<>(Collections.nCopies(arity, Environment.Type.ANY));
     }
 
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
-        } else if (parent != null) {
-            return parent.lookupFunction(name, arity);
+        return lookupFunction(Symbol.of(name), arity);
+    }
+
+    public Environment.Function lookupFunction(Symbol symbol, int arity) {
+        long key = key(symbol, arity);
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (scope.functions != null) {
+                Environment.Function function = scope.functions.get(key);
+                if (function != null) {
+                    return function;
+                }
+            }
+        }
+        throw new RuntimeException("The function " + symbol.getName() + "/" + arity + " is not defined in this scope.");
+    }
+
+    /**
+     * Returns the key of a function in {@link #functions}, which combines
+     * the symbol and arity.
+     */
+    private static long key(Symbol symbol, int arity) {
+        return ((long) symbol.getId() << 32) | arity;
+    }
+
+    /**
+     * Removes the variables defined in this scope, so that it can be reused
+     * for another execution of the same block (such as the next iteration of
+     * a loop) instead of allocating a new scope.
+     */
+    public void reset() {
+        if (variables != null && variables.edit == edit) {
+            variables.clear();
         } else {
-            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+            variables = null;
+        }
+    }
+
+    /**
+     * Returns the nearest scope, starting with this one, which defines any
+     * functions (or the outermost scope if none do). Function lookups from
+     * this scope have the same result as lookups from that one.
+     */
+    public Scope getFunctionScope() {
+        Scope scope = this;
+        while ((scope.functions == null || scope.functions.size == 0) && scope.parent != null) {
+            scope = scope.parent;
+        }
+        return scope;
+    }
+
+    /**
+     * Returns the scope, starting with this one, which defines the function
+     * {@code symbol/arity}.
+     */
+    Scope lookupFunctionScope(Symbol symbol, int arity) {
+        long key = key(symbol, arity);
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (scope.functions != null && scope.functions.get(key) != null) {
+                return scope;
+            }
+        }
+        throw new RuntimeException("The function " + symbol.getName() + "/" + arity + " is not defined in this scope.");
+    }
+
+    /**
+     * Returns a number which changes whenever a function is defined in this
+     * scope or a parent up to {@code until} (an ancestor of this scope), used
+     * by the {@link InlineCache}s of call sites to tell whether the function
+     * they found in {@code until} may have been shadowed since.
+     */
+    long getFunctionVersion(Scope until) {
+        long version = 0;
+        for (Scope scope = this; ; scope = scope.parent) {
+            version += scope.functionVersion;
+            if (scope == until) {
+                return version;
+            }
         }
     }
 
     @Override
     public String toString() {
+        List<String> variables = new ArrayList<>();
+        Node.names(this.variables, variables);
+        List<String> functions = new ArrayList<>();
+        if (this.functions != null) {
+            for (int i = 0; i < this.functions.size; i++) {
+                functions.add(this.functions.value(i).getName() + "/" + this.functions.value(i).getParameterTypes().size());
+            }
+        }
         return "Scope{" +
                 "parent=" + parent +
-                ", variables=" + variables.keySet() +
-                ", functions=" + functions.keySet() +
+                ", variables=" + variables +
+                ", functions=" + functions +
                 '}';
     }
 
+    /**
+     * The variables of a scope at the time of {@link Scope#snapshot()},
+     * which never change and can be shared between threads, such as to fork
+     * the fields of a program initialized once for every execution.
+     */
+    public static final class Snapshot {
+
+        private final Node variables;
+
+        private Snapshot(Node variables) {
+            this.variables = variables;
+        }
+
+        public Environment.PlcObject getValue(String name) {
+            Environment.Variable variable = Node.get(variables, Symbol.of(name).getId());
+            if (variable == null) {
+                throw new RuntimeException("The variable " + name + " is not defined in this snapshot.");
+            }
+            return variable.getValue();
+        }
+
+        /**
+         * Returns a new child scope of {@code parent} defining the variables
+         * of this snapshot, in constant time. Assignments in the scope affect
+         * neither this snapshot nor other forks of it.
+         */
+        public Scope fork(Scope parent) {
+            Scope scope = new Scope(parent);
+            scope.variables = variables;
+            scope.edit = new Edit();
+            return scope;
+        }
+
+        @Override
+        public String toString() {
+            List<String> names = new ArrayList<>();
+            Node.names(variables, names);
+            return "Snapshot{variables=" + names + '}';
+        }
+
+    }
+
+    /**
+     * The owner of the nodes and variables created by a scope since its last
+     * snapshot, which it may change in place. They are frozen once a snapshot
+     * is taken, and are then copied before being changed.
+     */
+    static final class Edit {
+
+        boolean frozen = false;
+
+    }
+
+    /**
+     * A node of a hash trie of variables by the ids of their symbols, which
+     * are unique and thus used as hashes without collisions, five bits per
+     * level. The entries present are marked in a bitmap and stored in
+     * arrays, either as a variable (with its id as key) or as a child node
+     * (with 0 as key). Nodes are changed in place by the scope owning them,
+     * and otherwise copied along the path to the changed entry.
+     */
+    private static final class Node {
+
+        private final Edit edit;
+        private int bitmap = 0;
+        private int[] keys;
+        private Object[] entries;
+
+        private Node(Edit edit, int capacity) {
+            this.edit = edit;
+            keys = new int[capacity];
+            entries = new Object[capacity];
+        }
+
+        private static Environment.Variable get(Node node, int key) {
+            for (int shift = 0; node != null; shift += 5) {
+                int bit = 1 << ((key >>> shift) & 31);
+                if ((node.bitmap & bit) == 0) {
+                    return null;
+                }
+                int i = Integer.bitCount(node.bitmap & (bit - 1));
+                if (node.keys[i] == key) {
+                    return (Environment.Variable) node.entries[i];
+                } else if (node.keys[i] != 0) {
+                    return null;
+                }
+                node = (Node) node.entries[i];
+            }
+            return null;
+        }
+
+        /**
+         * Returns the node with the variable of {@code key} set, which is
+         * {@code node} if it is owned by {@code edit}.
+         */
+        private static Node put(Node node, Edit edit, int key, Environment.Variable variable, int shift) {
+            if (node == null) {
+                node = new Node(edit, 2);
+            }
+            int bit = 1 << ((key >>> shift) & 31);
+            int i = Integer.bitCount(node.bitmap & (bit - 1));
+            if ((node.bitmap & bit) == 0) {
+                node = node.own(edit);
+                node.insert(i, bit, key, variable);
+            } else if (node.keys[i] == key) {
+                node = node.own(edit);
+                node.entries[i] = variable;
+            } else if (node.keys[i] == 0) {
+                Node child = put((Node) node.entries[i], edit, key, variable, shift + 5);
+                if (child != node.entries[i]) {
+                    node = node.own(edit);
+                    node.entries[i] = child;
+                }
+            } else {
+                Node child = put(null, edit, node.keys[i], (Environment.Variable) node.entries[i], shift + 5);
+                child = put(child, edit, key, variable, shift + 5);
+                node = node.own(edit);
+                node.keys[i] = 0;
+                node.entries[i] = child;
+            }
+            return node;
+        }
+
+        private Node own(Edit edit) {
+            if (this.edit == edit) {
+                return this;
+            }
+            Node node = new Node(edit, keys.length);
+            node.bitmap = bitmap;
+            System.arraycopy(keys, 0, node.keys, 0, keys.length);
+            System.arraycopy(entries, 0, node.entries, 0, entries.length);
+            return node;
+        }
+
+        private void insert(int i, int bit, int key, Object entry) {
+            int count = Integer.bitCount(bitmap);
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * count);
+                entries = Arrays.copyOf(entries, 2 * count);
+            }
+            System.arraycopy(keys, i, keys, i + 1, count - i);
+            System.arraycopy(entries, i, entries, i + 1, count - i);
+            keys[i] = key;
+            entries[i] = entry;
+            bitmap |= bit;
+        }
+
+        private void clear() {
+            Arrays.fill(entries, 0, Integer.bitCount(bitmap), null);
+            bitmap = 0;
+        }
+
+        private static void names(Node node, List<String> names) {
+            if (node == null) {
+                return;
+            }
+            for (int i = 0; i < Integer.bitCount(node.bitmap); i++) {
+                if (node.keys[i] != 0) {
+                    names.add(((Environment.Variable) node.entries[i]).getName());
+                } else {
+                    names((Node) node.entries[i], names);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * A table of values by non-zero keys, in the order they were added. Small
+     * tables (which most are) are searched linearly, while larger ones have
+     * an open-addressed index of the positions of the keys.
+     */
+    private static final class Table<V> {
+
+        private static final int LINEAR = 8;
+
+        private long[] keys = new long[4];
+        private Object[] values = new Object[4];
+        private int size = 0;
+        private int[] index = null;
+
+        @SuppressWarnings("unchecked")
+        private V get(long key) {
+            if (index == null) {
+                for (int i = 0; i < size; i++) {
+                    if (keys[i] == key) {
+                        return (V) values[i];
+                    }
+                }
+                return null;
+            }
+            int mask = index.length - 1;
+            for (int slot = hash(key) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[index[slot] - 1] == key) {
+                    return (V) values[index[slot] - 1];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V value(int position) {
+            return (V) values[position];
+        }
+
+        /**
+         * Adds a value for a key which is not in the table.
+         */
+        private void put(long key, V value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            keys[size] = key;
+            values[size] = value;
+            size++;
+            if (size > LINEAR) {
+                if (index == null || 2 * size > index.length) {
+                    index = new int[4 * Integer.highestOneBit(size)];
+                    for (int i = 0; i < size; i++) {
+                        insert(i);
+                    }
+                } else {
+                    insert(size - 1);
+                }
+            }
+        }
+
+        private void insert(int position) {
+            int mask = index.length - 1;
+            int slot = hash(keys[position]) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = position + 1;
+        }
+
+        private void clear() {
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+            index = null;
+        }
+
+        private static int hash(long key) {
+            int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+
+    }
+
 }
@@ -0,0 +1,53 @@
+package plc.project;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interned name of a variable or function, identified by a small number
+ * so that a {@link Scope} can store and compare names without hashing or
+ * comparing strings. There is exactly one symbol for every name, shared by
+ * all threads, which is never released.
+ */
+public final class Symbol {
+
+    private static final ConcurrentHashMap<String, Symbol> SYMBOLS = new ConcurrentHashMap<>();
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+
+    private Symbol(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Returns the symbol of {@code name}, which is created the first time it
+     * is requested.
+     */
+    public static Symbol of(String name) {
+        Symbol symbol = SYMBOLS.get(name);
+        if (symbol == null) {
+            symbol = SYMBOLS.computeIfAbsent(name, key -> new Symbol(key, IDS.incrementAndGet()));
+        }
+        return symbol;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number identifying this symbol, which is positive.
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
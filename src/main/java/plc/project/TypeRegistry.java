@@ -0,0 +1,78 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The types known by name to the {@link Analyzer}. Registries are layered:
+ * the builtin types are registered in {@link Environment#getTypes()}, and
+ * every tenant (such as a user whose programs define their own types) can
+ * have its own child registry, whose types are only visible to the programs
+ * analyzed with it (see {@link Program#compile(String, Scope, TypeRegistry)}).
+ *
+ * Registries are safe to use from any number of threads. Lookups don't
+ * lock, and a name can only be registered once in a registry and its
+ * parents, so concurrent registrations of the same name fail for all but
+ * one of them.
+ */
+public final class TypeRegistry {
+
+    private final TypeRegistry parent;
+    private final ConcurrentHashMap<String, Environment.Type> types = new ConcurrentHashMap<>();
+
+    public TypeRegistry(TypeRegistry parent) {
+        this.parent = parent;
+    }
+
+    public TypeRegistry getParent() {
+        return parent;
+    }
+
+    public Environment.Type getType(String name) {
+        for (TypeRegistry registry = this; registry != null; registry = registry.parent) {
+            Environment.Type type = registry.types.get(name);
+            if (type != null) {
+                return type;
+            }
+        }
+        throw new RuntimeException("Unknown type " + name + ".");
+    }
+
+    public boolean isRegistered(String name) {
+        for (TypeRegistry registry = this; registry != null; registry = registry.parent) {
+            if (registry.types.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers {@code type} in this registry, which must not have been
+     * registered here or in a parent registry. A type registered in a parent
+     * afterwards with the same name is hidden by this one.
+     */
+    public void register(Environment.Type type) {
+        if ((parent != null && parent.isRegistered(type.getName())) || types.putIfAbsent(type.getName(), type) != null) {
+            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+        }
+    }
+
+    /**
+     * Returns the names of the types registered in this registry (but not its
+     * parents).
+     */
+    public List<String> getNames() {
+        return new ArrayList<>(types.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return "TypeRegistry{" +
+                "parent=" + parent +
+                ", types=" + types.keySet() +
+                '}';
+    }
+
+}
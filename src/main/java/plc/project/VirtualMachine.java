@@ -0,0 +1,418 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes {@link Bytecode} produced by the {@link BytecodeCompiler} in a
+ * single dispatch loop over an operand stack. Calls from one compiled method
+ * to another push a frame in the same loop instead of recursing, so the
+ * depth of recursion in a program is limited by memory rather than the Java
+ * stack.
+ *
+ * Like the {@link Interpreter}, a machine has a scope in which fields and
+ * methods are defined and in which {@code print} is available. Variables and
+ * functions outside of a method are linked to the method definition the
+ * first time they are used.
+ */
+public final class VirtualMachine {
+
+    private static final Operator[] OPERATORS = Operator.values();
+
+    private final Map<Environment.Function, Procedure> procedures = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Scope scope;
+    private Budget budget = null;
+    private final OutputSink output;
+
+    public VirtualMachine(Scope parent) {
+        this(parent, OutputSink.stdout());
+    }
+
+    /**
+     * Creates a machine whose {@code print} function writes to
+     * {@code output}, which is flushed after each execution.
+     */
+    public VirtualMachine(Scope parent, OutputSink output) {
+        this.output = output;
+        scope = new Scope(parent);
+        scope.defineFunction("print", value -> {
+            output.println(value.getValue());
+            return Environment.NIL;
+        });
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Sets the budget of steps (backward jumps and method entries) for the
+     * code executed afterwards, or {@code null} for none.
+     */
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Compiles and executes {@code ast}, see
+     * {@link BytecodeCompiler#compile(Ast)}.
+     */
+    public Environment.PlcObject execute(Ast ast) {
+        return execute(new BytecodeCompiler().compile(ast));
+    }
+
+    /**
+     * Executes code outside of a method in the scope of this machine.
+     */
+    public Environment.PlcObject execute(Bytecode bytecode) {
+        try {
+            return run(new Frame(bytecode, null, scope, 0, null), new Environment.PlcObject[0]);
+        } finally {
+            output.flush();
+        }
+    }
+
+    /**
+     * A method definition, which links the compiled method to the scope it
+     * was defined in. The links of variables and functions used by the
+     * method are stored by the position of the instruction using them.
+     */
+    private static final class Procedure {
+
+        private final Bytecode bytecode;
+        private final Scope capture;
+        private final Object[] links;
+
+        private Procedure(Bytecode bytecode, Scope capture) {
+            this.bytecode = bytecode;
+            this.capture = capture;
+            this.links = new Object[bytecode.code().length];
+        }
+
+    }
+
+    /**
+     * The state of a method (or of code outside of a method) being executed.
+     * Its slots are the bottom {@link Bytecode#getSlots()} values of its part
+     * of the operand stack, starting at {@link #base}.
+     */
+    private static final class Frame {
+
+        private final Bytecode bytecode;
+        private final Procedure procedure;
+        private final int base;
+        private final Frame caller;
+        private Scope scope;
+        private int pc = 0;
+
+        private Frame(Bytecode bytecode, Procedure procedure, Scope scope, int base, Frame caller) {
+            this.bytecode = bytecode;
+            this.procedure = procedure;
+            this.scope = scope;
+            this.base = base;
+            this.caller = caller;
+        }
+
+    }
+
+    private Environment.PlcObject invoke(Procedure procedure, List<Environment.PlcObject> arguments) {
+        if (budget != null) {
+            budget.step();
+        }
+        Frame frame = new Frame(procedure.bytecode, procedure, procedure.capture, 0, null);
+        return run(frame, arguments.toArray(new Environment.PlcObject[0]));
+    }
+
+    private Environment.PlcObject run(Frame frame, Environment.PlcObject[] arguments) {
+        Object[] stack = new Object[Math.max(16, frame.bytecode.getSlots() + frame.bytecode.getMaxStack())];
+        System.arraycopy(arguments, 0, stack, 0, arguments.length);
+        int sp = frame.bytecode.getSlots();
+        int[] code = frame.bytecode.code();
+        Environment.PlcObject[] constants = frame.bytecode.constants();
+        String[] names = frame.bytecode.names();
+        Object[] links = frame.procedure != null ? frame.procedure.links : null;
+        int base = frame.base;
+        int pc = 0;
+        while (true) {
+            int at = pc;
+            switch (code[pc++]) {
+                case Bytecode.CONST:
+                    stack[sp++] = constants[code[pc++]];
+                    break;
+                case Bytecode.POP:
+                    stack[--sp] = null;
+                    break;
+                case Bytecode.LOAD:
+                    stack[sp++] = stack[base + code[pc++]];
+                    break;
+                case Bytecode.STORE:
+                    stack[base + code[pc++]] = stack[--sp];
+                    break;
+                case Bytecode.LOAD_GLOBAL:
+                    stack[sp++] = variable(frame, links, at, names[code[pc++]]).getValue();
+                    break;
+                case Bytecode.VARIABLE:
+                    stack[sp++] = variable(frame, links, at, names[code[pc++]]);
+                    break;
+                case Bytecode.SET_VARIABLE: {
+                    Environment.PlcObject value = (Environment.PlcObject) stack[--sp];
+                    ((Environment.Variable) stack[--sp]).setValue(value);
+                    break;
+                }
+                case Bytecode.DECLARE:
+                    frame.scope.defineVariable(names[code[pc++]], (Environment.PlcObject) stack[--sp]);
+                    break;
+                case Bytecode.GET_FIELD:
+                    stack[sp - 1] = ((Environment.PlcObject) stack[sp - 1]).getField(names[code[pc++]]).getValue();
+                    break;
+                case Bytecode.SET_FIELD: {
+                    Environment.PlcObject value = (Environment.PlcObject) stack[--sp];
+                    ((Environment.PlcObject) stack[--sp]).setField(names[code[pc++]], value);
+                    break;
+                }
+                case Bytecode.CALL: {
+                    String name = names[code[pc++]];
+                    int count = code[pc++];
+                    Object target = function(frame, links, at, name, count);
+                    if (target instanceof Procedure) {
+                        Procedure procedure = (Procedure) target;
+                        if (budget != null) {
+                            budget.step();
+                        }
+                        frame.pc = pc;
+                        frame = new Frame(procedure.bytecode, procedure, procedure.capture, sp - count, frame);
+                        base = frame.base;
+                        sp = base + procedure.bytecode.getSlots();
+                        int required = sp + procedure.bytecode.getMaxStack();
+                        if (required > stack.length) {
+                            stack = Arrays.copyOf(stack, Math.max(required, 2 * stack.length));
+                        }
+                        code = procedure.bytecode.code();
+                        constants = procedure.bytecode.constants();
+                        names = procedure.bytecode.names();
+                        links = procedure.links;
+                        pc = 0;
+                    } else {
+                        Environment.PlcObject result = call((Environment.Function) target, null, stack, sp - count, count);
+                        sp -= count;
+                        Arrays.fill(stack, sp, sp + count, null);
+                        stack[sp++] = result;
+                    }
+                    break;
+                }
+                case Bytecode.CALL_METHOD: {
+                    String name = names[code[pc++]];
+                    int count = code[pc++];
+                    Environment.PlcObject receiver = (Environment.PlcObject) stack[--sp];
+                    Environment.PlcObject result = call(receiver.getType().getMethod(name, count), receiver, stack, sp - count, count);
+                    sp -= count;
+                    Arrays.fill(stack, sp, sp + count + 1, null);
+                    stack[sp++] = result;
+                    break;
+                }
+                case Bytecode.BINARY: {
+                    Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                    stack[sp] = null;
+                    stack[sp - 1] = OPERATORS[code[pc++]].apply((Environment.PlcObject) stack[sp - 1], right);
+                    break;
+                }
+                case Bytecode.BINARY_LONG: {
+                    Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                    Environment.PlcObject left = (Environment.PlcObject) stack[sp - 1];
+                    stack[sp] = null;
+                    Operator operator = OPERATORS[code[pc++]];
+                    stack[sp - 1] = left.isLong() && right.isLong()
+                            ? apply(operator, left.getLong(), right.getLong())
+                            : operator.apply(left, right);
+                    break;
+                }
+                case Bytecode.GROUP:
+                    stack[sp - 1] = Environment.createFrom((Environment.PlcObject) stack[sp - 1]);
+                    break;
+                case Bytecode.BOOLEAN:
+                    stack[sp - 1] = Environment.create(Operator.requireType(Boolean.class, (Environment.PlcObject) stack[sp - 1]));
+                    break;
+                case Bytecode.JUMP:
+                    if (code[pc] < at && budget != null) {
+                        budget.step();
+                    }
+                    pc = code[pc];
+                    break;
+                case Bytecode.JUMP_IF_FALSE: {
+                    boolean condition = Operator.requireType(Boolean.class, (Environment.PlcObject) stack[--sp]);
+                    stack[sp] = null;
+                    pc = condition ? pc + 1 : code[pc];
+                    break;
+                }
+                case Bytecode.JUMP_IF_TRUE: {
+                    boolean condition = Operator.requireType(Boolean.class, (Environment.PlcObject) stack[--sp]);
+                    stack[sp] = null;
+                    pc = condition ? code[pc] : pc + 1;
+                    break;
+                }
+                case Bytecode.ENTER:
+                    frame.scope = new Scope(frame.scope);
+                    break;
+                case Bytecode.EXIT:
+                    frame.scope = frame.scope.getParent();
+                    break;
+                case Bytecode.ITERATOR:
+                    stack[sp - 1] = Operator.requireType(Iterable.class, (Environment.PlcObject) stack[sp - 1]).iterator();
+                    break;
+                case Bytecode.NEXT: {
+                    Iterator<?> iterator = (Iterator<?>) stack[sp - 1];
+                    if (iterator.hasNext()) {
+                        stack[sp++] = (Environment.PlcObject) iterator.next();
+                        pc++;
+                    } else {
+                        stack[--sp] = null;
+                        pc = code[pc];
+                    }
+                    break;
+                }
+                case Bytecode.DEFINE:
+                    define(frame.bytecode.methods()[code[pc++]], frame.scope);
+                    break;
+                case Bytecode.RETURN: {
+                    Environment.PlcObject value = (Environment.PlcObject) stack[--sp];
+                    if (frame.procedure == null) {
+                        throw new RuntimeException("Cannot return outside of a method.");
+                    }
+                    Arrays.fill(stack, base, sp, null);
+                    if (frame.caller == null) {
+                        return value;
+                    }
+                    sp = base;
+                    stack[sp++] = value;
+                    frame = frame.caller;
+                    base = frame.base;
+                    code = frame.bytecode.code();
+                    constants = frame.bytecode.constants();
+                    names = frame.bytecode.names();
+                    links = frame.procedure != null ? frame.procedure.links : null;
+                    pc = frame.pc;
+                    break;
+                }
+                case Bytecode.HALT:
+                    return (Environment.PlcObject) stack[--sp];
+                case Bytecode.THROW: {
+                    int message = code[pc];
+                    throw message < 0 ? new RuntimeException() : new RuntimeException((String) constants[message].getValue());
+                }
+                default:
+                    throw new IllegalStateException("Invalid opcode " + code[at] + " at " + at + ".");
+            }
+        }
+    }
+
+    /**
+     * Applies {@code operator} for {@link Bytecode#BINARY_LONG}, whose result
+     * is proven not to overflow (and whose divisor is never zero).
+     */
+    private static Environment.PlcObject apply(Operator operator, long left, long right) {
+        switch (operator) {
+            case LESS:
+                return Environment.create(left < right);
+            case LESS_EQUAL:
+                return Environment.create(left <= right);
+            case GREATER:
+                return Environment.create(left > right);
+            case GREATER_EQUAL:
+                return Environment.create(left >= right);
+            case ADD:
+                return Environment.createInteger(left + right);
+            case SUBTRACT:
+                return Environment.createInteger(left - right);
+            case MULTIPLY:
+                return Environment.createInteger(left * right);
+            case DIVIDE:
+                return Environment.createInteger(left / right);
+            default:
+                throw new IllegalStateException("Invalid operator " + operator + " for BINARY_LONG.");
+        }
+    }
+
+    /**
+     * Calls {@code function} with the {@code count} arguments on the stack
+     * starting at {@code from}, after {@code receiver} for methods. Up to four
+     * values are passed to the function directly, without copying them.
+     */
+    private static Environment.PlcObject call(Environment.Function function, Environment.PlcObject receiver, Object[] stack, int from, int count) {
+        if (receiver != null) {
+            switch (count) {
+                case 0:
+                    return function.invoke1(receiver);
+                case 1:
+                    return function.invoke2(receiver, (Environment.PlcObject) stack[from]);
+                case 2:
+                    return function.invoke3(receiver, (Environment.PlcObject) stack[from], (Environment.PlcObject) stack[from + 1]);
+                case 3:
+                    return function.invoke4(receiver, (Environment.PlcObject) stack[from], (Environment.PlcObject) stack[from + 1], (Environment.PlcObject) stack[from + 2]);
+            }
+        } else {
+            switch (count) {
+                case 0:
+                    return function.invoke0();
+                case 1:
+                    return function.invoke1((Environment.PlcObject) stack[from]);
+                case 2:
+                    return function.invoke2((Environment.PlcObject) stack[from], (Environment.PlcObject) stack[from + 1]);
+                case 3:
+                    return function.invoke3((Environment.PlcObject) stack[from], (Environment.PlcObject) stack[from + 1], (Environment.PlcObject) stack[from + 2]);
+                case 4:
+                    return function.invoke4((Environment.PlcObject) stack[from], (Environment.PlcObject) stack[from + 1], (Environment.PlcObject) stack[from + 2], (Environment.PlcObject) stack[from + 3]);
+            }
+        }
+        Environment.PlcObject[] values = new Environment.PlcObject[count];
+        System.arraycopy(stack, from, values, 0, count);
+        return receiver != null ? function.invokeMethod(receiver, values) : function.invoke(values);
+    }
+
+    /**
+     * Returns the variable {@code name}, which is linked the first time it is
+     * used in a method and looked up every time in code outside of methods.
+     */
+    private static Environment.Variable variable(Frame frame, Object[] links, int at, String name) {
+        if (links == null) {
+            return frame.scope.lookupVariable(name);
+        }
+        Object link = links[at];
+        if (link == null) {
+            link = frame.scope.lookupVariable(name);
+            links[at] = link;
+        }
+        return (Environment.Variable) link;
+    }
+
+    /**
+     * Returns the target of a call, which is the {@link Procedure} if the
+     * function is a method defined by this machine.
+     */
+    private Object function(Frame frame, Object[] links, int at, String name, int arity) {
+        Object link = links != null ? links[at] : null;
+        if (link == null) {
+            Environment.Function function = frame.scope.lookupFunction(name, arity);
+            Procedure procedure = procedures.get(function);
+            link = procedure != null ? procedure : function;
+            if (links != null) {
+                links[at] = link;
+            }
+        }
+        return link;
+    }
+
+    private void define(Bytecode bytecode, Scope scope) {
+        Procedure procedure = new Procedure(bytecode, scope);
+        List<Environment.Type> parameterTypes = new ArrayList<>(Collections.nCopies(bytecode.getArity(), Environment.Type.ANY));
+        Environment.Function function = scope.defineFunction(bytecode.getName(), bytecode.getName(), parameterTypes, Environment.Type.ANY, args -> {
+            return invoke(procedure, args);
+        });
+        procedures.put(function, procedure);
+    }
+
+}
@@ -0,0 +1,148 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+/**
+ * Compares the time of integer arithmetic through {@link IntegerArithmetic}
+ * with plain {@link BigInteger} operations and with the previous fast path
+ * (which computed with {@code long}s but held every integer as a
+ * {@link BigInteger}), and of a loop-heavy program on each engine (and on
+ * the {@link VirtualMachine} with ranges from the {@link RangeAnalyzer}), and of deeply nested expressions (whose time should grow
+ * linearly with the depth). Results are printed; nothing is asserted about
+ * the timings.
+ */
+@Tag("benchmark")
+final class ArithmeticBenchmarks {
+
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    void testOperations() {
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            Environment.PlcObject sum = Environment.createInteger(0);
+            for (int i = 0; i < ITERATIONS; i++) {
+                sum = Environment.create(((BigInteger) sum.getValue()).add(BigInteger.valueOf(i & 7)).subtract(BigInteger.valueOf(i & 7)));
+            }
+            report("BigInteger", System.nanoTime() - start, ITERATIONS);
+            start = System.nanoTime();
+            Environment.PlcObject previous = Environment.createInteger(0);
+            for (int i = 0; i < ITERATIONS; i++) {
+                Environment.PlcObject operand = Environment.createInteger(i & 7);
+                Environment.PlcObject added = previousAdd((BigInteger) previous.getValue(), (BigInteger) operand.getValue());
+                previous = previousSubtract((BigInteger) added.getValue(), (BigInteger) operand.getValue());
+            }
+            report("BigInteger (bitLength)", System.nanoTime() - start, ITERATIONS);
+            start = System.nanoTime();
+            Environment.PlcObject fast = Environment.createInteger(0);
+            for (int i = 0; i < ITERATIONS; i++) {
+                Environment.PlcObject operand = Environment.createInteger(i & 7);
+                fast = IntegerArithmetic.subtract(IntegerArithmetic.add(fast, operand), operand);
+            }
+            report("IntegerArithmetic", System.nanoTime() - start, ITERATIONS);
+            Assertions.assertEquals(sum.getValue(), previous.getValue());
+            Assertions.assertEquals(sum.getValue(), fast.getValue());
+        }
+    }
+
+    /**
+     * The previous fast path, which held every integer as a
+     * {@link BigInteger} and only computed with {@code long}s in between.
+     */
+    private static Environment.PlcObject previousAdd(BigInteger left, BigInteger right) {
+        if (left.bitLength() < 64 && right.bitLength() < 64) {
+            long x = left.longValue();
+            long y = right.longValue();
+            long result = x + y;
+            if (((x ^ result) & (y ^ result)) >= 0) {
+                return Environment.create(BigInteger.valueOf(result));
+            }
+        }
+        return Environment.create(left.add(right));
+    }
+
+    private static Environment.PlcObject previousSubtract(BigInteger left, BigInteger right) {
+        if (left.bitLength() < 64 && right.bitLength() < 64) {
+            long x = left.longValue();
+            long y = right.longValue();
+            long result = x - y;
+            if (((x ^ y) & (x ^ result)) >= 0) {
+                return Environment.create(BigInteger.valueOf(result));
+            }
+        }
+        return Environment.create(left.subtract(right));
+    }
+
+    /**
+     * Runs the loop with integers held as {@code long}s, and with {@code i}
+     * offset by 10^21 (computed, since literals must fit in an {@code int})
+     * so every operation is on {@link BigInteger}s.
+     */
+    @Test
+    void testLoop() {
+        for (BigInteger start : new BigInteger[] {BigInteger.ZERO, BigInteger.TEN.pow(21)}) {
+            String initial = start.signum() == 0 ? "0" : "1000000000 * 1000000000 * 1000";
+            Ast.Source ast = new Parser(new Lexer(String.join("\n",
+                    "DEF main(): Integer DO",
+                    "    LET i = " + initial + ";",
+                    "    LET sum = 0;",
+                    "    LET end = i + 100000;",
+                    "    WHILE i < end DO",
+                    "        sum = sum + i * 3 - i / 2;",
+                    "        i = i + 1;",
+                    "    END",
+                    "    RETURN sum;",
+                    "END"
+            )).lex()).parseSource();
+            new Analyzer(new Scope(null)).visit(ast);
+            Bytecode unchecked = new BytecodeCompiler().compile(ast);
+            new RangeAnalyzer().visit(ast);
+            Bytecode ranged = new BytecodeCompiler().compile(ast);
+            BigInteger expected = BigInteger.ZERO;
+            for (long i = 0; i < 100000; i++) {
+                BigInteger value = start.add(BigInteger.valueOf(i));
+                expected = expected.add(value.multiply(BigInteger.valueOf(3))).subtract(value.divide(BigInteger.valueOf(2)));
+            }
+            String suffix = start.signum() == 0 ? ")" : ", BigInteger)";
+            for (int run = 0; run < 5; run++) {
+                long time = System.nanoTime();
+                Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+                report("loop (interpreter" + suffix, System.nanoTime() - time, 100000);
+                time = System.nanoTime();
+                Assertions.assertEquals(expected, new ClosureCompiler(new Scope(null)).execute(ast).getValue());
+                report("loop (closures" + suffix, System.nanoTime() - time, 100000);
+                time = System.nanoTime();
+                Assertions.assertEquals(expected, new VirtualMachine(new Scope(null)).execute(unchecked).getValue());
+                report("loop (bytecode" + suffix, System.nanoTime() - time, 100000);
+                time = System.nanoTime();
+                Assertions.assertEquals(expected, new VirtualMachine(new Scope(null)).execute(ranged).getValue());
+                report("loop (bytecode, ranges" + suffix, System.nanoTime() - time, 100000);
+            }
+        }
+    }
+
+    @Test
+    void testNestedExpression() {
+        for (int depth = 4; depth <= 24; depth += 4) {
+            Ast.Expr expr = new Ast.Expr.Literal(BigInteger.ONE);
+            for (int i = 0; i < depth; i++) {
+                expr = new Ast.Expr.Binary("+", expr, new Ast.Expr.Binary("*", new Ast.Expr.Literal(BigInteger.valueOf(2)), new Ast.Expr.Literal(BigInteger.ONE)));
+            }
+            Interpreter interpreter = new Interpreter(new Scope(null));
+            long start = System.nanoTime();
+            for (int run = 0; run < 1000; run++) {
+                Assertions.assertEquals(BigInteger.valueOf(1 + 2 * depth), interpreter.visit(expr).getValue());
+            }
+            report("nested (depth " + depth + ")", System.nanoTime() - start, 1000);
+        }
+    }
+
+    private static void report(String name, long nanos, int iterations) {
+        System.out.printf("%-36s %10.2f ms %8.1f ns/iteration%n", name, nanos / 1e6, (double) nanos / iterations);
+    }
+
+}
@@ -0,0 +1,114 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+final class BudgetTests {
+
+    private static final String LOOP = String.join("\n",
+            "DEF main(): Integer DO",
+            "    WHILE TRUE DO END",
+            "    RETURN 0;",
+            "END"
+    );
+
+    private static final String RECURSION = String.join("\n",
+            "DEF f(n: Integer): Integer DO RETURN f(n + 1) + 1; END",
+            "DEF main(): Integer DO RETURN f(0); END"
+    );
+
+    private static final String COUNT = String.join("\n",
+            "DEF main(): Integer DO",
+            "    LET i = 0;",
+            "    WHILE i < 100 DO i = i + 1; END",
+            "    RETURN i;",
+            "END"
+    );
+
+    @Test
+    void testSteps() {
+        Ast.Source loop = parse(LOOP);
+        Ast.Source recursion = parse(RECURSION);
+        for (Ast.Source ast : new Ast.Source[] {loop, recursion}) {
+            Interpreter interpreter = new Interpreter(new Scope(null));
+            interpreter.setBudget(Budget.ofSteps(500));
+            assertReason(ExecutionLimitException.Reason.STEPS, () -> interpreter.visit(ast));
+            ClosureCompiler compiler = new ClosureCompiler(new Scope(null));
+            compiler.setBudget(Budget.ofSteps(500));
+            assertReason(ExecutionLimitException.Reason.STEPS, () -> compiler.execute(ast));
+            VirtualMachine machine = new VirtualMachine(new Scope(null));
+            machine.setBudget(Budget.ofSteps(500));
+            assertReason(ExecutionLimitException.Reason.STEPS, () -> machine.execute(ast));
+        }
+    }
+
+    @Test
+    void testWithinBudget() {
+        Ast.Source ast = parse(COUNT);
+        Budget budget = Budget.ofSteps(101);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setBudget(budget);
+        Assertions.assertEquals(BigInteger.valueOf(100), interpreter.visit(ast).getValue());
+        Assertions.assertEquals(101, budget.getSteps());
+        VirtualMachine machine = new VirtualMachine(new Scope(null));
+        machine.setBudget(Budget.ofSteps(101));
+        Assertions.assertEquals(BigInteger.valueOf(100), machine.execute(ast).getValue());
+        ExecutionContext context = new Program(ast).newContext(new Scope(null));
+        context.setBudget(Budget.ofSteps(100));
+        assertReason(ExecutionLimitException.Reason.STEPS, context::execute);
+    }
+
+    @Test
+    void testDeadline() {
+        ExecutionContext context = Program.compile(LOOP).newContext(new Scope(null));
+        context.setBudget(Budget.ofTimeout(20, TimeUnit.MILLISECONDS));
+        assertReason(ExecutionLimitException.Reason.DEADLINE, context::execute);
+    }
+
+    @Test
+    void testCancel() throws InterruptedException {
+        ExecutionContext context = Program.compile(LOOP).newContext(new Scope(null));
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutionLimitException[] error = new ExecutionLimitException[1];
+        Thread thread = new Thread(() -> {
+            started.countDown();
+            try {
+                context.execute();
+            } catch (ExecutionLimitException e) {
+                error[0] = e;
+            }
+        });
+        thread.start();
+        started.await();
+        context.cancel();
+        thread.join(5000);
+        Assertions.assertFalse(thread.isAlive());
+        Assertions.assertEquals(ExecutionLimitException.Reason.CANCELLED, error[0].getReason());
+    }
+
+    @Test
+    void testInterrupt() {
+        Thread.currentThread().interrupt();
+        try {
+            assertReason(ExecutionLimitException.Reason.CANCELLED, () -> Program.compile(LOOP).execute());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static void assertReason(ExecutionLimitException.Reason reason, Runnable runnable) {
+        ExecutionLimitException exception = Assertions.assertThrows(ExecutionLimitException.class, runnable::run);
+        Assertions.assertEquals(reason, exception.getReason());
+    }
+
+    private static Ast.Source parse(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+}
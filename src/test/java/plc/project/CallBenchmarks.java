@@ -0,0 +1,57 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+/**
+ * Measures the call throughput of each engine on recursion-heavy programs.
+ * Results are printed as calls per second; nothing is asserted about the
+ * timings.
+ */
+@Tag("benchmark")
+final class CallBenchmarks {
+
+    @Test
+    void testFibonacci() {
+        run("fib(20)", String.join("\n",
+                "DEF fib(n: Integer): Integer DO",
+                "    IF n < 2 DO RETURN n; END",
+                "    RETURN fib(n - 1) + fib(n - 2);",
+                "END",
+                "DEF main(): Integer DO RETURN fib(20); END"
+        ), BigInteger.valueOf(6765), 21891);
+    }
+
+    @Test
+    void testAckermann() {
+        run("ack(2, 200)", String.join("\n",
+                "DEF ack(m: Integer, n: Integer): Integer DO",
+                "    IF m < 1 DO RETURN n + 1; END",
+                "    IF n < 1 DO RETURN ack(m - 1, 1); END",
+                "    RETURN ack(m - 1, ack(m, n - 1));",
+                "END",
+                "DEF main(): Integer DO RETURN ack(2, 200); END"
+        ), BigInteger.valueOf(403), 81405);
+    }
+
+    private static void run(String name, String input, Object expected, int calls) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        for (int run = 0; run < 5; run++) {
+            time(name + " (interpreter)", calls, () -> new Interpreter(new Scope(null)).visit(ast), expected);
+            time(name + " (closures)", calls, () -> new ClosureCompiler(new Scope(null)).execute(ast), expected);
+            time(name + " (bytecode)", calls, () -> new VirtualMachine(new Scope(null)).execute(ast), expected);
+        }
+    }
+
+    private static void time(String name, int calls, java.util.function.Supplier<Environment.PlcObject> program, Object expected) {
+        long start = System.nanoTime();
+        Assertions.assertEquals(expected, program.get().getValue());
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-32s %10.2f ms %12.0f calls/s%n", name, nanos / 1e6, calls * 1e9 / nanos);
+    }
+
+}
@@ -0,0 +1,256 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Runs the {@link InterpreterTests} cases against the
+ * {@link ClosureCompiler}, along with programs comparing both engines.
+ */
+final class ClosureCompilerTests {
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testSource")
+    void testSource(String test, Ast.Source ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testField")
+    void testField(String test, Ast.Field ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testMethod")
+    void testMethod(String test, Ast.Method ast, List<Environment.PlcObject> args, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupFunction(ast.getName(), args.size()).invoke(args).getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testDeclarationStatement")
+    void testDeclarationStatement(String test, Ast.Stmt.Declaration ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testIfStatement")
+    void testIfStatement(String test, Ast.Stmt.If ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("num", Environment.NIL);
+        test(ast, Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(expected, scope.lookupVariable("num").getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource({
+            "plc.project.InterpreterTests#testLiteralExpression",
+            "plc.project.InterpreterTests#testGroupExpression",
+            "plc.project.InterpreterTests#testBinaryExpression"
+    })
+    void testExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testAccessExpression")
+    void testAccessExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", Environment.create("variable"));
+        Scope object = new Scope(null);
+        object.defineVariable("field", Environment.create("object.field"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testFunctionExpression")
+    void testFunctionExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 0, args -> Environment.create("function"));
+        Scope object = new Scope(null);
+        object.defineFunction("method", 1, args -> Environment.create("object.method"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    @Test
+    void testRecursion() {
+        compare(String.join("\n",
+                "DEF fib(n: Integer): Integer DO",
+                "    IF n < 2 DO RETURN n; END",
+                "    RETURN fib(n - 1) + fib(n - 2);",
+                "END",
+                "DEF main(): Integer DO RETURN fib(15); END"
+        ), BigInteger.valueOf(610));
+    }
+
+    @Test
+    void testScopes() {
+        compare(String.join("\n",
+                "LET x: Integer = 1;",
+                "LET total: Integer = 0;",
+                "DEF shadow(): Integer DO",
+                "    LET before = x;",
+                "    LET x = 10;",
+                "    LET i = 0;",
+                "    WHILE i < 3 DO",
+                "        LET x = i * 100;",
+                "        total = total + x;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN before + x;",
+                "END",
+                "DEF main(): Integer DO",
+                "    print(shadow());",
+                "    print(x);",
+                "    RETURN total;",
+                "END"
+        ), BigInteger.valueOf(300));
+    }
+
+    @Test
+    void testErrors() {
+        Ast.Source ast = parse(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET x = 0;",
+                "    RETURN 1 / x;",
+                "END"
+        ));
+        Assertions.assertThrows(RuntimeException.class, () -> new ClosureCompiler(new Scope(null)).execute(ast));
+        Assertions.assertThrows(RuntimeException.class, () -> new ClosureCompiler(new Scope(null)).execute(
+                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))
+        ));
+    }
+
+    @Test
+    void testSpecialization() {
+        Ast.Source ast = new Parser(new Lexer(String.join("\n",
+                "DEF add(a: Any, b: Any): Any DO RETURN a + b; END",
+                "DEF less(a: Any, b: Any): Boolean DO RETURN a < b; END",
+                "DEF main(): Integer DO RETURN 0; END"
+        )).lex()).parseSource();
+        ClosureCompiler compiler = new ClosureCompiler(new Scope(null), true);
+        compiler.execute(ast);
+        Environment.Function add = compiler.getScope().lookupFunction("add", 2);
+        Environment.Function less = compiler.getScope().lookupFunction("less", 2);
+        Assertions.assertEquals(BigInteger.valueOf(3), add.invoke(Arrays.asList(Environment.create(BigInteger.ONE), Environment.create(BigInteger.valueOf(2)))).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(5), add.invoke(Arrays.asList(Environment.create(BigInteger.valueOf(2)), Environment.create(BigInteger.valueOf(3)))).getValue());
+        Assertions.assertEquals(true, less.invoke(Arrays.asList(Environment.create("a"), Environment.create("b"))).getValue());
+        Assertions.assertEquals(Collections.singletonMap("BigInteger +", 1), filter(compiler.getSpecializations(), "+"));
+        Assertions.assertEquals(new BigDecimal("1.5"), add.invoke(Arrays.asList(Environment.create(BigDecimal.ONE), Environment.create(new BigDecimal("0.5")))).getValue());
+        Assertions.assertEquals("a1", add.invoke(Arrays.asList(Environment.create("a"), Environment.create(BigInteger.ONE))).getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> add.invoke(Arrays.asList(Environment.create(BigInteger.ONE), Environment.create(BigDecimal.ONE))));
+        Map<String, Integer> expected = new TreeMap<>();
+        expected.put("BigInteger +", 1);
+        expected.put("generic +", 1);
+        Assertions.assertEquals(expected, filter(compiler.getSpecializations(), "+"));
+        Assertions.assertEquals(Integer.valueOf(1), compiler.getSpecializations().get("String <"));
+    }
+
+    @ParameterizedTest
+    @MethodSource({
+            "plc.project.InterpreterTests#testLiteralExpression",
+            "plc.project.InterpreterTests#testGroupExpression",
+            "plc.project.InterpreterTests#testBinaryExpression"
+    })
+    void testSpecializedExpression(String test, Ast ast, Object expected) {
+        ClosureCompiler compiler = new ClosureCompiler(new Scope(null), true);
+        if (expected != null) {
+            Assertions.assertEquals(expected, compiler.execute(ast).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> compiler.execute(ast));
+        }
+    }
+
+    @Test
+    void testSpecializedReceivers() {
+        Scope scope = new Scope(null);
+        Scope first = new Scope(null);
+        first.defineVariable("field", Environment.create("first"));
+        first.defineFunction("method", 1, args -> Environment.create("first.method"));
+        Scope second = new Scope(null);
+        second.defineVariable("field", Environment.create("second"));
+        second.defineFunction("method", 1, args -> Environment.create("second.method"));
+        scope.defineVariable("object", new Environment.PlcObject(first, "first"));
+        ClosureCompiler compiler = new ClosureCompiler(scope, true);
+        Ast.Method method = new Ast.Method("get", Arrays.asList(), Arrays.asList(
+                new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.of(new Ast.Expr.Access(Optional.empty(), "object")), "method", Arrays.asList())),
+                new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                        new Ast.Expr.Access(Optional.of(new Ast.Expr.Access(Optional.empty(), "object")), "field"),
+                        new Ast.Expr.Function(Optional.of(new Ast.Expr.Access(Optional.empty(), "object")), "method", Arrays.asList())
+                ))
+        ));
+        compiler.execute(method);
+        Environment.Function get = compiler.getScope().lookupFunction("get", 0);
+        Assertions.assertEquals("firstfirst.method", get.invoke(Arrays.asList()).getValue());
+        Assertions.assertEquals("firstfirst.method", get.invoke(Arrays.asList()).getValue());
+        scope.lookupVariable("object").setValue(new Environment.PlcObject(second, "second"));
+        Assertions.assertEquals("secondsecond.method", get.invoke(Arrays.asList()).getValue());
+        Assertions.assertEquals(Integer.valueOf(1), compiler.getSpecializations().get("generic field"));
+        Assertions.assertEquals(Integer.valueOf(2), compiler.getSpecializations().get("generic method"));
+    }
+
+    private static Map<String, Integer> filter(Map<String, Integer> specializations, String operator) {
+        Map<String, Integer> filtered = new TreeMap<>();
+        specializations.forEach((variant, count) -> {
+            if (variant.endsWith(" " + operator)) {
+                filtered.put(variant, count);
+            }
+        });
+        return filtered;
+    }
+
+    /**
+     * Runs a program on both engines, checking the result and that the
+     * printed output is the same.
+     */
+    private static void compare(String input, Object expected) {
+        Ast.Source ast = parse(input);
+        PrintStream sysout = System.out;
+        try {
+            ByteArrayOutputStream interpreted = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(interpreted));
+            Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+            ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(compiled));
+            Assertions.assertEquals(expected, new ClosureCompiler(new Scope(null)).execute(ast).getValue());
+            Assertions.assertEquals(interpreted.toString(), compiled.toString());
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    private static Ast.Source parse(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+    private static Scope test(Ast ast, Object expected, Scope scope) {
+        ClosureCompiler compiler = new ClosureCompiler(scope);
+        if (expected != null) {
+            Assertions.assertEquals(expected, compiler.execute(ast).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> compiler.execute(ast));
+        }
+        return compiler.getScope();
+    }
+
+}
@@ -0,0 +1,148 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class CommonSubexpressionEliminatorTests {
+
+    @Test
+    void testRepeatedBinary() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET x = 3;",
+                "    LET a = (x * x) + 1;",
+                "    LET b = (x * x) + 2;",
+                "    RETURN a + b;",
+                "END"
+        ));
+        List<Ast.Stmt> statements = ast.getMethods().get(0).getStatements();
+        Assertions.assertEquals(Arrays.asList("x", "$cse0", "a", "b"), declared(statements));
+        Assertions.assertEquals(BigInteger.valueOf(21), new Interpreter(new Scope(null)).visit(ast).getValue());
+
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(ast);
+        Assertions.assertTrue(writer.toString().contains("int $cse0 = x * x;"), writer.toString());
+    }
+
+    @Test
+    void testAssignmentKills() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET x = 1;",
+                "    LET a = x + 1;",
+                "    x = 2;",
+                "    LET b = x + 1;",
+                "    RETURN a + b;",
+                "END"
+        ));
+        Assertions.assertEquals(Arrays.asList("x", "a", "b"), declared(ast.getMethods().get(0).getStatements()));
+        Assertions.assertEquals(BigInteger.valueOf(5), new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    @Test
+    void testCalls() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "LET counter: Integer = 0;",
+                "DEF square(x: Integer): Integer DO RETURN x * x; END",
+                "DEF current(): Integer DO RETURN counter; END",
+                "DEF increment(): Integer DO counter = counter + 1; RETURN counter; END",
+                "DEF main(): Integer DO",
+                "    LET a = square(2) + current();",
+                "    LET b = square(2) + current();",
+                "    increment();",
+                "    LET c = square(2) + current();",
+                "    RETURN a + b + c;",
+                "END"
+        ));
+        List<Ast.Stmt> statements = ast.getMethods().get(3).getStatements();
+        Assertions.assertEquals(Arrays.asList("$cse1", "$cse0", "a", "b", "c"), declared(statements));
+        Assertions.assertEquals(BigInteger.valueOf(13), new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    @Test
+    void testBlocks() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET x = 2;",
+                "    LET total = 0;",
+                "    WHILE total < 10 DO",
+                "        total = total + (x * 3);",
+                "        LET y = x * 3;",
+                "    END",
+                "    IF x == x DO RETURN total + (x * 3); END",
+                "    RETURN x * 3;",
+                "END"
+        ));
+        List<Ast.Stmt> statements = ast.getMethods().get(0).getStatements();
+        Assertions.assertEquals(Arrays.asList("x", "total"), declared(statements));
+        Assertions.assertEquals(Arrays.asList("$cse0", "y"), declared(((Ast.Stmt.While) statements.get(2)).getStatements()));
+        Assertions.assertEquals(BigInteger.valueOf(18), new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    @Test
+    void testFieldShadowedInBlock() {
+        // the local count declared in the IF block must not make the field a local
+        String source = String.join("\n",
+                "LET count: Integer = 0;",
+                "DEF inc(): Integer DO",
+                "    count = count + 1;",
+                "    RETURN count;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET a = count * 2;",
+                "    inc();",
+                "    LET b = count * 2;",
+                "    IF a < b DO",
+                "        LET count = 5;",
+                "        print(count);",
+                "    END",
+                "    RETURN b;",
+                "END"
+        );
+        Ast.Source ast = eliminate(source);
+        Assertions.assertEquals(Arrays.asList("a", "b"), declared(ast.getMethods().get(1).getStatements()));
+        Ast.Source original = new Parser(new Lexer(source).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(original);
+        Assertions.assertEquals(BigInteger.valueOf(2), new Interpreter(null, new OutputSink.Collector()).visit(original).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(2), new Interpreter(null, new OutputSink.Collector()).visit(ast).getValue());
+    }
+
+    @Test
+    void testScopeVariableCalls() {
+        String source = String.join("\n",
+                "DEF next(): Integer DO counter = counter + 1; RETURN counter; END",
+                "DEF main(): Integer DO RETURN next() * 10 + next(); END"
+        );
+        Scope inputs = new Scope(null);
+        inputs.defineVariable("counter", "counter", Environment.Type.INTEGER, Environment.NIL);
+        Ast.Source ast = new Parser(new Lexer(source).lex()).parseSource();
+        new Analyzer(inputs).visit(ast);
+        Ast.Source eliminated = (Ast.Source) new CommonSubexpressionEliminator().visit(ast);
+        Assertions.assertEquals(Collections.emptyList(), declared(eliminated.getMethods().get(1).getStatements()));
+        Scope parent = new Scope(null);
+        parent.defineVariable("counter", Environment.create(BigInteger.ZERO));
+        Assertions.assertEquals(BigInteger.valueOf(12), Program.compile(source, inputs).newContext(parent).execute().getValue());
+    }
+
+    private static Ast.Source eliminate(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return (Ast.Source) new CommonSubexpressionEliminator().visit(ast);
+    }
+
+    private static List<String> declared(List<Ast.Stmt> statements) {
+        return statements.stream()
+                .filter(stmt -> stmt instanceof Ast.Stmt.Declaration)
+                .map(stmt -> ((Ast.Stmt.Declaration) stmt).getName())
+                .collect(Collectors.toList());
+    }
+
+}
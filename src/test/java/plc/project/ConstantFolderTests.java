@@ -0,0 +1,140 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public final class ConstantFolderTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testBinaryExpression(String test, String input, Object expected) {
+        Ast.Expr ast = analyze(input);
+        Ast.Expr folded = (Ast.Expr) new ConstantFolder().visit(ast);
+        Assertions.assertTrue(folded instanceof Ast.Expr.Literal, folded.toString());
+        Assertions.assertEquals(expected, ((Ast.Expr.Literal) folded).getLiteral());
+        Assertions.assertEquals(ast.getType(), folded.getType());
+    }
+
+    private static Stream<Arguments> testBinaryExpression() {
+        return Stream.of(
+                Arguments.of("Integer Arithmetic", "1 + 2 * 3 - 4 / 2", BigInteger.valueOf(5)),
+                Arguments.of("Nested Group", "(1 + 2) * (3 + 4)", BigInteger.valueOf(21)),
+                Arguments.of("Decimal Arithmetic", "1.5 * 2.0", new BigDecimal("3.00")),
+                Arguments.of("Decimal Division", "1.2 / 3.0", new BigDecimal("0.4")),
+                Arguments.of("Concatenation", "\"a\" + \"b\" + 1", "ab1"),
+                Arguments.of("And", "TRUE AND FALSE", false),
+                Arguments.of("Or", "FALSE OR TRUE", true)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testUnfolded(String test, String input) {
+        Ast.Expr ast = analyze(input);
+        Assertions.assertSame(ast, new ConstantFolder().visit(ast));
+    }
+
+    private static Stream<Arguments> testUnfolded() {
+        return Stream.of(
+                Arguments.of("Integer Overflow", "2147483647 + 1"),
+                Arguments.of("Division by Zero", "1 / 0"),
+                Arguments.of("Decimal Division by Zero", "1.0 / 0.0"),
+                Arguments.of("Variable", "x + 1"),
+                Arguments.of("Comparison", "1 < 2"),
+                Arguments.of("Equality of Folded Operands", "(1 + 2) == 3"),
+                Arguments.of("Inequality of Identity", "5 * 1 != 5"),
+                Arguments.of("Equality of Groups", "(x + 0) == x")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSimplification(String test, String input, String expected) {
+        Ast.Expr ast = analyze(input);
+        Assertions.assertEquals(analyze(expected), new ConstantFolder().visit(ast));
+    }
+
+    private static Stream<Arguments> testSimplification() {
+        return Stream.of(
+                Arguments.of("Addition Identity", "x + 0", "x"),
+                Arguments.of("Multiplication Identity", "1 * x", "x"),
+                Arguments.of("Partial Fold", "x * (2 + 3)", "x * 5"),
+                Arguments.of("And Identity", "flag AND TRUE", "flag"),
+                Arguments.of("And Short Circuit", "FALSE AND flag", "FALSE"),
+                Arguments.of("Or Identity", "FALSE OR flag", "flag"),
+                Arguments.of("Group Kept", "(x + 1) * 2", "(x + 1) * 2")
+        );
+    }
+
+    @Test
+    void testIfPruning() {
+        Ast.Source ast = analyzeSource(String.join("\n",
+                "DEF main(): Integer DO",
+                "    IF TRUE AND 1 < 2 DO print(1); ELSE print(2); END",
+                "    IF TRUE OR FALSE DO LET x = 3; print(x); END",
+                "    WHILE FALSE DO print(4); END",
+                "    RETURN (1 + 1);",
+                "END"
+        ));
+        Ast.Method main = ((Ast.Source) new ConstantFolder().visit(ast)).getMethods().get(0);
+        Assertions.assertEquals("<", ((Ast.Expr.Binary) ((Ast.Stmt.If) main.getStatements().get(0)).getCondition()).getOperator());
+        Assertions.assertEquals(Ast.Stmt.If.class, main.getStatements().get(1).getClass());
+        Assertions.assertEquals(Arrays.asList(), ((Ast.Stmt.If) main.getStatements().get(1)).getElseStatements());
+        Assertions.assertEquals(3, main.getStatements().size());
+        Assertions.assertEquals(BigInteger.valueOf(2), ((Ast.Expr.Literal) ((Ast.Stmt.Return) main.getStatements().get(2)).getValue()).getLiteral());
+    }
+
+    @Test
+    void testBranchInlining() {
+        Ast.Source ast = analyzeSource(String.join("\n",
+                "DEF main(): Integer DO",
+                "    IF TRUE AND TRUE DO print(1); ELSE print(2); END",
+                "    RETURN 0;",
+                "END"
+        ));
+        Ast.Method main = ((Ast.Source) new ConstantFolder().visit(ast)).getMethods().get(0);
+        Assertions.assertEquals(Ast.Stmt.Expression.class, main.getStatements().get(0).getClass());
+        Assertions.assertEquals(2, main.getStatements().size());
+    }
+
+    @Test
+    void testEqualityUnchanged() {
+        // the interpreter compares the operands of == and != without evaluating them
+        Ast.Source ast = analyzeSource(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET b = (1 + 2) == 3;",
+                "    LET c = 5 * 1 != 5;",
+                "    IF b DO RETURN 1; END",
+                "    IF c DO RETURN 2; END",
+                "    RETURN 0;",
+                "END"
+        ));
+        Assertions.assertEquals(BigInteger.valueOf(2), new Interpreter(null).visit(ast).getValue());
+        Ast.Source folded = (Ast.Source) new ConstantFolder().visit(ast);
+        Assertions.assertEquals(BigInteger.valueOf(2), new Interpreter(null).visit(folded).getValue());
+    }
+
+    private static Ast.Expr analyze(String input) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", "x", Environment.Type.INTEGER, Environment.NIL);
+        scope.defineVariable("flag", "flag", Environment.Type.BOOLEAN, Environment.NIL);
+        Ast.Expr ast = new Parser(new Lexer(input).lex()).parseExpression();
+        new Analyzer(scope).visit(ast);
+        return ast;
+    }
+
+    private static Ast.Source analyzeSource(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+}
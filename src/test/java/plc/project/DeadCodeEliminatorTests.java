@@ -0,0 +1,102 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class DeadCodeEliminatorTests {
+
+    @Test
+    void testUnreachableMethods() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "DEF nested(x: Integer): Integer DO RETURN x + 1; END",
+                "DEF helper(x: Integer): Integer DO RETURN nested(x); END",
+                "DEF unused(): Integer DO RETURN helper(2); END",
+                "DEF recursive(x: Integer): Integer DO RETURN recursive(x); END",
+                "DEF main(): Integer DO RETURN helper(1); END"
+        ));
+        Assertions.assertEquals(Arrays.asList("nested", "helper", "main"), names(ast.getMethods()));
+        Assertions.assertEquals(BigInteger.valueOf(2), new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    @Test
+    void testUnusedFields() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "LET read: Integer = 1;",
+                "LET written: Integer = 2;",
+                "LET chained: Integer = 3;",
+                "LET source: Integer = chained;",
+                "LET called: Integer;",
+                "LET unused: Integer = 4;",
+                "DEF next(): Integer DO RETURN 6; END",
+                "DEF main(): Integer DO",
+                "    LET unused = 5;",
+                "    written = unused;",
+                "    called = next();",
+                "    RETURN read;",
+                "END"
+        ));
+        List<String> fields = ast.getFields().stream().map(Ast.Field::getName).collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList("read", "called"), fields);
+        Assertions.assertEquals(3, ast.getMethods().get(1).getStatements().size());
+        Assertions.assertEquals(BigInteger.ONE, new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    @Test
+    void testFailingValuesKept() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "LET quotient: Integer = 1 / 0;",
+                "LET sum: Integer;",
+                "LET folded: Integer = 6 / 3;",
+                "LET same: Boolean = (1 / 0) == 2;",
+                "DEF main(): Integer DO",
+                "    LET x: Integer;",
+                "    sum = x + 1;",
+                "    RETURN 0;",
+                "END"
+        ));
+        List<String> fields = ast.getFields().stream().map(Ast.Field::getName).collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList("quotient", "sum"), fields);
+        Assertions.assertEquals(3, ast.getMethods().get(0).getStatements().size());
+        Assertions.assertThrows(RuntimeException.class, () -> new Interpreter(new Scope(null)).visit(ast));
+    }
+
+    @Test
+    void testStatementsAfterReturn() {
+        Ast.Source ast = eliminate(String.join("\n",
+                "DEF main(): Integer DO",
+                "    IF TRUE DO",
+                "        RETURN 1;",
+                "        print(\"unreachable\");",
+                "    ELSE",
+                "        RETURN 2;",
+                "    END",
+                "    RETURN 3;",
+                "END"
+        ));
+        List<Ast.Stmt> statements = ast.getMethods().get(0).getStatements();
+        Assertions.assertEquals(1, statements.size());
+        Assertions.assertEquals(1, ((Ast.Stmt.If) statements.get(0)).getThenStatements().size());
+
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(ast);
+        Assertions.assertFalse(writer.toString().contains("unreachable"));
+    }
+
+    private static Ast.Source eliminate(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return (Ast.Source) new DeadCodeEliminator().visit(ast);
+    }
+
+    private static List<String> names(List<Ast.Method> methods) {
+        return methods.stream().map(Ast.Method::getName).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,110 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+final class EnvironmentTests {
+
+    @Test
+    void testCanonicalBooleans() {
+        Assertions.assertSame(Environment.TRUE, Environment.create(true));
+        Assertions.assertSame(Environment.FALSE, Environment.create(Boolean.valueOf("false")));
+        Assertions.assertEquals(true, Environment.TRUE.getValue());
+        Assertions.assertEquals(false, Environment.FALSE.getValue());
+    }
+
+    @Test
+    void testSmallIntegers() {
+        Assertions.assertSame(Environment.create(BigInteger.valueOf(-128)), Environment.create(new BigInteger("-128")));
+        Assertions.assertSame(Environment.create(BigInteger.valueOf(1024)), Environment.create(new BigInteger("1024")));
+        Assertions.assertEquals(BigInteger.valueOf(7), Environment.create(BigInteger.valueOf(7)).getValue());
+        Assertions.assertNotSame(Environment.create(BigInteger.valueOf(1025)), Environment.create(BigInteger.valueOf(1025)));
+        Assertions.assertNotSame(Environment.create(BigInteger.valueOf(-129)), Environment.create(BigInteger.valueOf(-129)));
+        BigInteger large = BigInteger.ONE.shiftLeft(64).add(BigInteger.ONE);
+        Assertions.assertEquals(large, Environment.create(large).getValue());
+    }
+
+    @Test
+    void testLongIntegers() {
+        Environment.PlcObject integer = Environment.createInteger(Long.MIN_VALUE);
+        Assertions.assertTrue(integer.isLong());
+        Assertions.assertEquals(Long.MIN_VALUE, integer.getLong());
+        Assertions.assertEquals(BigInteger.valueOf(Long.MIN_VALUE), integer.getValue());
+        Assertions.assertSame(integer.getValue(), integer.getValue());
+        Assertions.assertEquals(Long.MAX_VALUE, Environment.create(BigInteger.valueOf(Long.MAX_VALUE)).getLong());
+        Environment.PlcObject large = Environment.create(BigInteger.ONE.shiftLeft(63));
+        Assertions.assertFalse(large.isLong());
+        Assertions.assertThrows(IllegalStateException.class, large::getLong);
+        Assertions.assertFalse(Environment.create("1").isLong());
+        Assertions.assertSame(integer, Environment.createFrom(integer));
+        Environment.PlcObject object = new Environment.PlcObject(new Scope(null), BigInteger.valueOf(2000));
+        Assertions.assertTrue(object.isLong());
+        Assertions.assertNotSame(object.getType(), Environment.createFrom(object).getType());
+        Assertions.assertEquals(2000, Environment.createFrom(object).getLong());
+    }
+
+    @Test
+    void testSharedScope() {
+        Environment.PlcObject string = Environment.create("string");
+        Environment.PlcObject decimal = Environment.create(new BigDecimal("1.0"));
+        Assertions.assertSame(string.getType(), decimal.getType());
+        Assertions.assertEquals("Unknown", string.getType().getName());
+        Assertions.assertThrows(RuntimeException.class, () -> string.getField("length"));
+        Assertions.assertThrows(RuntimeException.class, () -> Environment.TRUE.setField("field", Environment.NIL));
+    }
+
+    @Test
+    void testFixedArityFunction() {
+        Scope scope = new Scope(null);
+        Environment.Function concat = scope.defineFunction("concat", (a, b) -> Environment.create("" + a.getValue() + b.getValue()));
+        Assertions.assertSame(concat, scope.lookupFunction("concat", 2));
+        Assertions.assertEquals(Arrays.asList(Environment.Type.ANY, Environment.Type.ANY), concat.getParameterTypes());
+        Environment.PlcObject a = Environment.create("a");
+        Environment.PlcObject b = Environment.create("b");
+        Assertions.assertEquals("ab", concat.invoke2(a, b).getValue());
+        Assertions.assertEquals("ab", concat.invoke(a, b).getValue());
+        Assertions.assertEquals("ab", concat.invoke(Arrays.asList(a, b)).getValue());
+    }
+
+    @Test
+    void testListFunction() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("count", 3, args -> Environment.create(BigInteger.valueOf(args.size())));
+        Environment.Function count = scope.lookupFunction("count", 3);
+        Environment.PlcObject nil = Environment.NIL;
+        Assertions.assertEquals(BigInteger.valueOf(3), count.invoke3(nil, nil, nil).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(3), count.invoke(nil, nil, nil).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(6), count.invoke(nil, nil, nil, nil, nil, nil).getValue());
+    }
+
+    @Test
+    void testTypedFunction() {
+        Environment.Function negate = Environment.Function.of("negate", "negate", Arrays.asList(Environment.Type.INTEGER), Environment.Type.INTEGER,
+                value -> Environment.create(((BigInteger) value.getValue()).negate()));
+        Scope scope = new Scope(null);
+        Assertions.assertSame(negate, scope.defineFunction(negate));
+        Assertions.assertEquals(Environment.Type.INTEGER, scope.lookupFunction("negate", 1).getReturnType());
+        Assertions.assertEquals(BigInteger.valueOf(-2), negate.invoke1(Environment.create(BigInteger.valueOf(2))).getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> scope.defineFunction(negate));
+    }
+
+    @Test
+    void testCallMethod() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("describe", (self, a, b) -> Environment.create(self.getValue() + ":" + a.getValue() + b.getValue()));
+        Environment.PlcObject object = new Environment.PlcObject(scope, "object");
+        Environment.PlcObject a = Environment.create("a");
+        Environment.PlcObject b = Environment.create("b");
+        Assertions.assertEquals("object:ab", object.callMethod("describe", a, b).getValue());
+        Assertions.assertEquals("object:ab", object.callMethod("describe", Arrays.asList(a, b)).getValue());
+        scope.defineFunction("first", 6, args -> args.get(0));
+        Environment.PlcObject[] arguments = Collections.nCopies(5, a).toArray(new Environment.PlcObject[0]);
+        Assertions.assertSame(object, object.callMethod("first", arguments));
+    }
+
+}
@@ -0,0 +1,92 @@
+package plc.project;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+final class EventsTests {
+
+    private static final String SOURCE = String.join("\n",
+            "LET x: Integer = 1;",
+            "DEF main(): Integer DO",
+            "    RETURN x + 1;",
+            "END");
+
+    @Test
+    void testPipeline() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            List<Token> tokens = new Lexer(SOURCE).lex();
+            Ast.Source ast = new Parser(tokens).parseSource();
+            new Analyzer(new Scope(null)).visit(ast);
+            new Generator(new PrintWriter(new StringWriter())).visit(ast);
+            new Interpreter(null, new OutputSink.Collector()).visit(ast);
+        });
+        RecordedEvent lex = single(events, "plc.Lex");
+        Assertions.assertEquals(SOURCE.length(), lex.getLong("inputSize"));
+        Assertions.assertEquals(20, lex.getInt("tokens"));
+        Assertions.assertEquals("success", lex.getString("outcome"));
+        RecordedEvent parse = single(events, "plc.Parse");
+        Assertions.assertEquals(20, parse.getInt("tokens"));
+        // source, field, literal, method, return, binary, access, literal
+        Assertions.assertEquals(8, parse.getInt("nodes"));
+        Assertions.assertEquals(8, single(events, "plc.Analyze").getInt("nodes"));
+        Assertions.assertEquals("main", single(events, "plc.Analyze").getString("method"));
+        Assertions.assertEquals(8, single(events, "plc.Generate").getInt("nodes"));
+        RecordedEvent execute = single(events, "plc.Execute");
+        Assertions.assertEquals("main", execute.getString("method"));
+        Assertions.assertEquals("success", execute.getString("outcome"));
+        Assertions.assertFalse(execute.getDuration().isNegative());
+    }
+
+    @Test
+    void testFailure() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            Assertions.assertThrows(ParseException.class, () -> new Lexer("\"unterminated").lex());
+            Ast.Source ast = new Parser(new Lexer("DEF main(): Integer DO RETURN y; END").lex()).parseSource();
+            Assertions.assertThrows(RuntimeException.class, () -> new Interpreter(null, new OutputSink.Collector()).visit(ast));
+        });
+        Assertions.assertTrue(events.stream().filter(named("plc.Lex"))
+                .anyMatch(event -> event.getString("outcome").startsWith("ParseException")));
+        Assertions.assertTrue(single(events, "plc.Execute").getString("outcome").startsWith("RuntimeException"));
+    }
+
+    private static List<RecordedEvent> record(Runnable runnable) throws IOException {
+        Path path = Files.createTempFile("events", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"plc.Lex", "plc.Parse", "plc.Analyze", "plc.Generate", "plc.Execute"}) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            runnable.run();
+            recording.stop();
+            recording.dump(path);
+            return RecordingFile.readAllEvents(path).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("plc."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static Predicate<RecordedEvent> named(String name) {
+        return event -> event.getEventType().getName().equals(name);
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream().filter(named(name)).collect(Collectors.toList());
+        Assertions.assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+
+}
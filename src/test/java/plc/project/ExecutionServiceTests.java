@@ -0,0 +1,104 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+final class ExecutionServiceTests {
+
+    @Test
+    void testInputs() throws InterruptedException {
+        Scope scope = new Scope(null);
+        scope.defineVariable("n", "n", Environment.Type.INTEGER, Environment.NIL);
+        Program program = Program.compile(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET i = 0;",
+                "    LET sum = 0;",
+                "    WHILE i < n DO",
+                "        i = i + 1;",
+                "        sum = sum + i;",
+                "    END",
+                "    RETURN sum;",
+                "END"
+        ), scope);
+        List<ExecutionService.Job> jobs = new ArrayList<>();
+        for (int n = 0; n < 200; n++) {
+            jobs.add(new ExecutionService.Job("sum " + n, program, Collections.singletonMap("n", BigInteger.valueOf(n))));
+        }
+        try (ExecutionService service = new ExecutionService(4)) {
+            ExecutionService.Report report = service.executeAll(jobs);
+            Assertions.assertEquals(200, report.getCount(ExecutionService.Status.SUCCEEDED));
+            for (int n = 0; n < 200; n++) {
+                ExecutionService.Result result = report.getResults().get(n);
+                Assertions.assertSame(jobs.get(n), result.getJob());
+                Assertions.assertEquals(BigInteger.valueOf(n * (n + 1) / 2), result.getValue().getValue());
+            }
+        }
+    }
+
+    @Test
+    void testFailures() throws InterruptedException {
+        Program program = Program.compile(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET x = 0;",
+                "    RETURN 1 / x;",
+                "END"
+        ));
+        try (ExecutionService service = new ExecutionService(2)) {
+            ExecutionService.Report report = service.executeAll(Collections.nCopies(3, new ExecutionService.Job("divide", program, Collections.emptyMap())));
+            Assertions.assertEquals(3, report.getCount(ExecutionService.Status.FAILED));
+            Assertions.assertTrue(report.getResults().get(0).getError() instanceof RuntimeException);
+        }
+    }
+
+    @Test
+    void testErrors() throws InterruptedException {
+        Scope scope = new Scope(null);
+        scope.defineVariable("value", "value", Environment.Type.ANY, Environment.NIL);
+        Program program = Program.compile(String.join("\n",
+                "DEF main(): Integer DO",
+                "    print(value);",
+                "    RETURN 1;",
+                "END"
+        ), scope);
+        Object value = new Object() {
+
+            @Override
+            public String toString() {
+                throw new AssertionError("toString");
+            }
+
+        };
+        try (ExecutionService service = new ExecutionService(1)) {
+            ExecutionService.Report report = service.executeAll(Collections.singletonList(new ExecutionService.Job("error", program, Collections.singletonMap("value", value))));
+            Assertions.assertEquals(1, report.getCount(ExecutionService.Status.FAILED));
+            Assertions.assertTrue(report.getResults().get(0).getError() instanceof AssertionError);
+        }
+    }
+
+    @Test
+    void testTimeout() throws InterruptedException {
+        Program loop = Program.compile(String.join("\n",
+                "DEF main(): Integer DO",
+                "    WHILE TRUE DO END",
+                "    RETURN 0;",
+                "END"
+        ));
+        Program quick = Program.compile("DEF main(): Integer DO RETURN 1; END");
+        try (ExecutionService service = new ExecutionService(2)) {
+            List<ExecutionService.Job> jobs = new ArrayList<>();
+            jobs.add(new ExecutionService.Job("loop", loop, Collections.emptyMap(), 50, TimeUnit.MILLISECONDS));
+            jobs.add(new ExecutionService.Job("quick", quick, Collections.emptyMap(), 5, TimeUnit.SECONDS));
+            ExecutionService.Report report = service.executeAll(jobs);
+            Assertions.assertEquals(ExecutionService.Status.TIMED_OUT, report.getResults().get(0).getStatus());
+            Assertions.assertEquals(ExecutionService.Status.SUCCEEDED, report.getResults().get(1).getStatus());
+            Assertions.assertTrue(report.getNanos() < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+}
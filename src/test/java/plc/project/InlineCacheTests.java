@@ -0,0 +1,110 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+final class InlineCacheTests {
+
+    @Test
+    void testHit() {
+        Scope global = new Scope(null);
+        global.defineFunction("f", 0, args -> Environment.create("global"));
+        InlineCache cache = new InlineCache("f", 0);
+        Assertions.assertEquals("global", cache.lookup(new Scope(global)).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals("global", cache.lookup(new Scope(new Scope(global))).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+        Assertions.assertEquals(0.5, cache.getHitRate());
+    }
+
+    @Test
+    void testShadowed() {
+        Scope global = new Scope(null);
+        global.defineFunction("f", 0, args -> Environment.create("global"));
+        Scope local = new Scope(global);
+        InlineCache cache = new InlineCache("f", 0);
+        Assertions.assertEquals("global", cache.lookup(local).invoke(Collections.emptyList()).getValue());
+        local.defineFunction("f", 0, args -> Environment.create("local"));
+        Assertions.assertEquals("local", cache.lookup(local).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals("global", cache.lookup(global).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void testDefinedElsewhere() {
+        Scope global = new Scope(null);
+        global.defineFunction("f", 0, args -> Environment.create("global"));
+        Scope other = new Scope(global);
+        InlineCache cache = new InlineCache("f", 0);
+        cache.lookup(global);
+        // functions defined in other scopes, such as a sibling or unrelated
+        // scope, don't invalidate the cache
+        other.defineFunction("g", 0, args -> Environment.NIL);
+        new Scope(null).defineFunction("f", 0, args -> Environment.NIL);
+        Assertions.assertEquals("global", cache.lookup(global).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals("global", cache.lookup(other).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testShadowedBetween() {
+        Scope global = new Scope(null);
+        global.defineFunction("f", 0, args -> Environment.create("global"));
+        Scope middle = new Scope(global);
+        middle.defineFunction("g", 0, args -> Environment.NIL);
+        Scope local = new Scope(middle);
+        InlineCache cache = new InlineCache("f", 0);
+        Assertions.assertEquals("global", cache.lookup(local).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals("global", cache.lookup(local).invoke(Collections.emptyList()).getValue());
+        middle.defineFunction("f", 0, args -> Environment.create("middle"));
+        Assertions.assertEquals("middle", cache.lookup(local).invoke(Collections.emptyList()).getValue());
+        global.defineFunction("h", 0, args -> Environment.NIL);
+        Assertions.assertEquals("middle", cache.lookup(local).invoke(Collections.emptyList()).getValue());
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testInterpreterRecursion() {
+        Ast.Source ast = new Parser(new Lexer(String.join("\n",
+                "DEF fib(n: Integer): Integer DO",
+                "    IF n < 2 DO RETURN n; END",
+                "    RETURN fib(n - 1) + fib(n - 2);",
+                "END",
+                "DEF main(): Integer DO RETURN fib(15); END"
+        )).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        Assertions.assertEquals(BigInteger.valueOf(610), interpreter.visit(ast).getValue());
+        Assertions.assertEquals(3, interpreter.getInlineCaches().size());
+        long hits = 0;
+        for (InlineCache cache : interpreter.getInlineCaches().values()) {
+            Assertions.assertEquals(1, cache.getMisses(), cache.toString());
+            hits += cache.getHits();
+        }
+        Assertions.assertTrue(hits > 1000);
+    }
+
+    @Test
+    void testInterpreterMethod() {
+        Scope type = new Scope(null);
+        type.defineFunction("method", 2, args -> Environment.create(args.get(1).getValue() + "!"));
+        Scope scope = new Scope(null);
+        scope.defineVariable("object", new Environment.PlcObject(type, "object"));
+        Interpreter interpreter = new Interpreter(scope);
+        Ast.Expr.Function call = new Ast.Expr.Function(
+                java.util.Optional.of(new Ast.Expr.Access(java.util.Optional.empty(), "object")),
+                "method",
+                Arrays.asList(new Ast.Expr.Literal("x"))
+        );
+        Assertions.assertEquals("x!", interpreter.visit(call).getValue());
+        Assertions.assertEquals("x!", interpreter.visit(call).getValue());
+        Assertions.assertEquals(1, interpreter.getInlineCaches().get(call).getHits());
+    }
+
+}
@@ -0,0 +1,61 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Checks the fast paths against {@link BigInteger} around the limits of
+ * {@code int} and {@code long}, where results have to be promoted, and that
+ * results are held as {@code long}s exactly when they fit in one.
+ */
+final class IntegerArithmeticTests {
+
+    private static final long[] VALUES = {
+            0, 1, -1, 2, -2, 7, -7, 1024, 1025, -128, -129,
+            Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L, Integer.MIN_VALUE - 1L,
+            Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1,
+            Long.MAX_VALUE / 2, Long.MIN_VALUE / 2
+    };
+
+    @ParameterizedTest
+    @MethodSource
+    void testOperations(String test, BigInteger left, BigInteger right) {
+        Assertions.assertEquals(left.bitLength() < 64, Environment.create(left).isLong());
+        Assertions.assertEquals(left.compareTo(right), IntegerArithmetic.compare(Environment.create(left), Environment.create(right)));
+        test(left, right, IntegerArithmetic::add, BigInteger::add);
+        test(left, right, IntegerArithmetic::subtract, BigInteger::subtract);
+        test(left, right, IntegerArithmetic::multiply, BigInteger::multiply);
+        if (right.signum() != 0) {
+            test(left, right, IntegerArithmetic::divide, BigInteger::divide);
+        } else {
+            Assertions.assertThrows(ArithmeticException.class, () -> IntegerArithmetic.divide(Environment.create(left), Environment.create(right)));
+        }
+    }
+
+    private static Stream<Arguments> testOperations() {
+        BigInteger large = BigInteger.ONE.shiftLeft(70);
+        Stream.Builder<Arguments> builder = Stream.builder();
+        for (long left : VALUES) {
+            for (long right : VALUES) {
+                builder.add(Arguments.of(left + ", " + right, BigInteger.valueOf(left), BigInteger.valueOf(right)));
+            }
+            builder.add(Arguments.of(left + ", 2^70", BigInteger.valueOf(left), large));
+            builder.add(Arguments.of("-2^70, " + left, large.negate(), BigInteger.valueOf(left)));
+        }
+        return builder.build();
+    }
+
+    private static void test(BigInteger left, BigInteger right, BinaryOperator<Environment.PlcObject> operation, BinaryOperator<BigInteger> expected) {
+        BigInteger result = expected.apply(left, right);
+        Environment.PlcObject actual = operation.apply(Environment.create(left), Environment.create(right));
+        Assertions.assertEquals(result, actual.getValue());
+        Assertions.assertEquals(result.bitLength() < 64, actual.isLong(), "held as a long");
+    }
+
+}
@@ -10,6 +10,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -382,6 +383,117 @@ final class InterpreterTests {
         );
     }
 
+    @Test
+    void testOperandEvaluation() {
+        Scope scope = new Scope(null);
+        List<Object> log = new ArrayList<>();
+        scope.defineFunction("log", 1, args -> {
+            log.add(args.get(0).getValue());
+            return args.get(0);
+        });
+        Ast.Expr expr = new Ast.Expr.Function(Optional.empty(), "log", Arrays.asList(new Ast.Expr.Literal(BigInteger.ZERO)));
+        for (int i = 1; i <= 30; i++) {
+            expr = new Ast.Expr.Binary(i % 2 == 0 ? "+" : "*",
+                    expr,
+                    new Ast.Expr.Function(Optional.empty(), "log", Arrays.asList(new Ast.Expr.Literal(BigInteger.valueOf(i))))
+            );
+        }
+        test(new Ast.Expr.Binary("<", expr, new Ast.Expr.Literal(BigInteger.ZERO)), false, scope);
+        Assertions.assertEquals(31, log.size());
+        for (int i = 0; i < log.size(); i++) {
+            Assertions.assertEquals(BigInteger.valueOf(i), log.get(i));
+        }
+    }
+
+    @Test
+    void testLoopScopes() {
+        Ast.Source ast = new Parser(new Lexer(String.join("\n",
+                "LET total: Integer = 0;",
+                "DEF count(n: Integer): Integer DO",
+                "    LET i = 0;",
+                "    WHILE i < n DO",
+                "        LET x = i;",
+                "        IF x < 2 DO",
+                "            LET y = x * 10;",
+                "            total = total + y;",
+                "        END",
+                "        IF i < n - 1 DO",
+                "            total = total + count(i);",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN i;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET x = 1000;",
+                "    count(4);",
+                "    RETURN total + x;",
+                "END"
+        )).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Assertions.assertEquals(BigInteger.valueOf(1013), new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    @Test
+    void testTailCalls() {
+        Ast.Source ast = new Parser(new Lexer(String.join("\n",
+                "DEF sum(n: Integer, total: Integer): Integer DO",
+                "    IF n < 1 DO RETURN total; END",
+                "    RETURN sum(n - 1, total + n);",
+                "END",
+                "DEF even(n: Integer): Boolean DO",
+                "    IF n < 1 DO RETURN TRUE; END",
+                "    RETURN odd(n - 1);",
+                "END",
+                "DEF odd(n: Integer): Boolean DO",
+                "    IF n < 1 DO RETURN FALSE; END",
+                "    RETURN even(n - 1);",
+                "END",
+                "DEF main(): Integer DO",
+                "    print(even(100001));",
+                "    RETURN sum(100000, 0);",
+                "END"
+        )).lex()).parseSource();
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(out));
+            Assertions.assertEquals(BigInteger.valueOf(5000050000L), new Interpreter(new Scope(null)).visit(ast).getValue());
+        } finally {
+            System.setOut(sysout);
+        }
+        Assertions.assertEquals("false", out.toString().trim());
+    }
+
+    @Test
+    void testExecuteFromSnapshot() {
+        Ast.Source ast = new Parser(new Lexer(String.join("\n",
+                "LET calls: Integer = 0;",
+                "LET base: Integer = init();",
+                "DEF init(): Integer DO",
+                "    RETURN 100;",
+                "END",
+                "DEF next(): Integer DO",
+                "    calls = calls + 1;",
+                "    RETURN base + calls;",
+                "END",
+                "DEF main(): Integer DO",
+                "    next();",
+                "    RETURN next();",
+                "END"
+        )).lex()).parseSource();
+        Interpreter warm = new Interpreter(null, new OutputSink.Collector());
+        warm.getScope().defineFunction("init", () -> Environment.create(BigInteger.valueOf(100)));
+        Scope.Snapshot fields = warm.initialize(ast);
+        Interpreter interpreter = new Interpreter(null, new OutputSink.Collector());
+        for (int i = 0; i < 3; i++) {
+            // every execution starts from the fields as they were initialized
+            Assertions.assertEquals(BigInteger.valueOf(102), interpreter.execute(ast, fields).getValue());
+        }
+        Assertions.assertEquals(BigInteger.ZERO, fields.getValue("calls").getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> interpreter.getScope().lookupVariable("calls"));
+    }
+
     private static Scope test(Ast ast, Object expected, Scope scope) {
         Interpreter interpreter = new Interpreter(scope);
         if (expected != null) {
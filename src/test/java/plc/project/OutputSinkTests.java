@@ -0,0 +1,83 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+final class OutputSinkTests {
+
+    private static final String PRINTS = String.join("\n",
+            "DEF main(): Integer DO",
+            "    LET i = 0;",
+            "    WHILE i < 5 DO",
+            "        print(i);",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN i;",
+            "END"
+    );
+
+    @Test
+    void testCollector() {
+        Ast.Source ast = Program.compile(PRINTS).getAst();
+        OutputSink.Collector interpreted = new OutputSink.Collector();
+        new Interpreter(new Scope(null), interpreted).visit(ast);
+        OutputSink.Collector compiled = new OutputSink.Collector();
+        new ClosureCompiler(new Scope(null), false, compiled).execute(ast);
+        OutputSink.Collector machine = new OutputSink.Collector();
+        new VirtualMachine(new Scope(null), machine).execute(ast);
+        Assertions.assertEquals(Arrays.asList("0", "1", "2", "3", "4"), interpreted.getLines());
+        Assertions.assertEquals(interpreted.getLines(), compiled.getLines());
+        Assertions.assertEquals(interpreted.getLines(), machine.getLines());
+    }
+
+    @Test
+    void testBuffered() {
+        StringWriter writer = new StringWriter();
+        OutputSink sink = OutputSink.buffered(writer, 6);
+        sink.println("ab");
+        Assertions.assertEquals("", writer.toString());
+        sink.println("cd");
+        String separator = System.lineSeparator();
+        Assertions.assertEquals("ab" + separator + "cd" + separator, writer.toString());
+        sink.println("e");
+        sink.flush();
+        Assertions.assertEquals("ab" + separator + "cd" + separator + "e" + separator, writer.toString());
+    }
+
+    @Test
+    void testBufferedFlushedAfterExecution() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Program.compile(PRINTS).newContext(new Scope(null), OutputSink.buffered(new PrintStream(out), 1 << 16)).execute();
+        Assertions.assertEquals(Arrays.asList("0", "1", "2", "3", "4"), Arrays.asList(out.toString().split(System.lineSeparator())));
+    }
+
+    @Test
+    void testRing() {
+        OutputSink.Ring ring = new OutputSink.Ring(3);
+        Program.compile(PRINTS).newContext(new Scope(null), ring).execute();
+        Assertions.assertEquals(Arrays.asList("2", "3", "4"), ring.getLines());
+        Assertions.assertEquals(2, ring.getDropped());
+        OutputSink.Ring empty = new OutputSink.Ring(0);
+        empty.println("dropped");
+        Assertions.assertEquals(Collections.emptyList(), empty.getLines());
+        Assertions.assertEquals(1, empty.getDropped());
+    }
+
+    @Test
+    void testServiceOutput() throws InterruptedException {
+        Program program = Program.compile(PRINTS);
+        try (ExecutionService service = new ExecutionService(4)) {
+            ExecutionService.Report report = service.executeAll(Collections.nCopies(8, new ExecutionService.Job("prints", program, Collections.emptyMap())));
+            for (ExecutionService.Result result : report.getResults()) {
+                Assertions.assertEquals(Arrays.asList("0", "1", "2", "3", "4"), result.getOutput());
+            }
+        }
+    }
+
+}
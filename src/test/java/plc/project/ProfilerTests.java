@@ -0,0 +1,154 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+final class ProfilerTests {
+
+    private static final String FIB = String.join("\n",
+            "DEF fib(n: Integer): Integer DO",
+            "    IF n < 2 DO",
+            "        RETURN n;",
+            "    END",
+            "    RETURN fib(n - 1) + fib(n - 2);",
+            "END",
+            "DEF main(): Integer DO",
+            "    RETURN fib(10);",
+            "END");
+
+    @Test
+    void testOffsets() {
+        Ast.Source source = parse(FIB);
+        Ast.Method fib = source.getMethods().get(0);
+        Assertions.assertEquals(0, fib.getOffset());
+        Ast.Stmt.If condition = (Ast.Stmt.If) fib.getStatements().get(0);
+        Assertions.assertEquals(FIB.indexOf("IF"), condition.getOffset());
+        Assertions.assertEquals(FIB.indexOf("n < 2"), condition.getCondition().getOffset());
+        Ast.Stmt.Return last = (Ast.Stmt.Return) fib.getStatements().get(1);
+        Ast.Expr.Binary sum = (Ast.Expr.Binary) last.getValue();
+        Assertions.assertEquals(FIB.indexOf("fib(n - 1)"), sum.getOffset());
+        Assertions.assertEquals(FIB.indexOf("fib(n - 2)"), sum.getRight().getOffset());
+        Assertions.assertEquals(FIB.indexOf("n - 2"), ((Ast.Expr.Function) sum.getRight()).getArguments().get(0).getOffset());
+    }
+
+    @Test
+    void testOffsetsIgnoredByEquals() {
+        Ast.Expr.Access access = new Ast.Expr.Access(java.util.Optional.empty(), "x");
+        access.setOffset(5);
+        Assertions.assertEquals(new Ast.Expr.Access(java.util.Optional.empty(), "x"), access);
+    }
+
+    @Test
+    void testCounts() {
+        Ast.Source source = parse(FIB);
+        Profiler profiler = run(source);
+        Ast.Method fib = source.getMethods().get(0);
+        Ast.Stmt.If condition = (Ast.Stmt.If) fib.getStatements().get(0);
+        Ast.Stmt.Return last = (Ast.Stmt.Return) fib.getStatements().get(1);
+        // fib(10) makes 177 calls, of which 89 return n
+        Assertions.assertEquals(177, profiler.getEntry(fib).getCount());
+        Assertions.assertEquals(177, profiler.getEntry(condition).getCount());
+        Assertions.assertEquals(89, profiler.getEntry(condition.getThenStatements().get(0)).getCount());
+        Assertions.assertEquals(88, profiler.getEntry(last).getCount());
+        Assertions.assertEquals(88, profiler.getEntry(last.getValue()).getCount());
+        Assertions.assertEquals(1, profiler.getEntry(source.getMethods().get(1)).getCount());
+    }
+
+    @Test
+    void testTimes() {
+        Ast.Source source = parse(FIB);
+        Profiler profiler = run(source);
+        Profiler.Entry main = profiler.getEntry(source.getMethods().get(1));
+        Profiler.Entry fib = profiler.getEntry(source.getMethods().get(0));
+        Assertions.assertTrue(fib.getTotalNanos() > 0);
+        Assertions.assertTrue(fib.getSelfNanos() <= fib.getTotalNanos());
+        // main makes a tail call, so it has exited when fib is called, and
+        // recursive calls of fib are counted once in its total time
+        long self = profiler.getEntries().stream().mapToLong(Profiler.Entry::getSelfNanos).sum();
+        Assertions.assertEquals(main.getTotalNanos() + fib.getTotalNanos(), self);
+        List<Profiler.Entry> entries = profiler.getEntries();
+        for (int i = 1; i < entries.size(); i++) {
+            Assertions.assertTrue(entries.get(i - 1).getSelfNanos() >= entries.get(i).getSelfNanos());
+        }
+    }
+
+    @Test
+    void testReport() {
+        Profiler profiler = run(parse(FIB));
+        String[] lines = profiler.report(FIB, 3).split("\n");
+        Assertions.assertEquals(4, lines.length);
+        Assertions.assertTrue(lines[0].contains("location"));
+        String all = profiler.report(FIB);
+        Assertions.assertTrue(all.contains(" 2:5 "), all);
+        Assertions.assertTrue(all.contains("DEF fib/1"), all);
+        Assertions.assertTrue(all.contains("Binary <"), all);
+    }
+
+    @Test
+    void testCollapsed() throws IOException {
+        Profiler profiler = run(parse(FIB));
+        StringBuilder builder = new StringBuilder();
+        profiler.writeCollapsed(builder, FIB);
+        List<String> stacks = Arrays.stream(builder.toString().split("\n"))
+                .map(line -> line.substring(0, line.lastIndexOf(' ')))
+                .collect(Collectors.toList());
+        // main makes a tail call, so fib replaces it at the bottom of the stack
+        Assertions.assertTrue(stacks.contains("main/0;Return@8:5"), stacks.toString());
+        Assertions.assertTrue(stacks.contains("fib/1;If@2:5"), stacks.toString());
+        Assertions.assertTrue(stacks.contains("fib/1;Return@5:5;fib/1;If@2:5"), stacks.toString());
+        Assertions.assertTrue(stacks.stream().anyMatch(stack -> stack.endsWith(";fib/1;Return@5:5;fib/1;If@2:5;Return@3:9")), stacks.toString());
+        for (String line : builder.toString().split("\n")) {
+            Assertions.assertTrue(Long.parseLong(line.substring(line.lastIndexOf(' ') + 1)) > 0, line);
+        }
+    }
+
+    @Test
+    void testTailCalls() {
+        String source = String.join("\n",
+                "DEF sum(n: Integer, total: Integer): Integer DO",
+                "    IF n < 1 DO",
+                "        RETURN total;",
+                "    END",
+                "    RETURN sum(n - 1, total + n);",
+                "END",
+                "DEF main(): Integer DO",
+                "    RETURN sum(1000, 0);",
+                "END");
+        Ast.Source ast = parse(source);
+        Profiler profiler = new Profiler();
+        Interpreter interpreter = new Interpreter(null);
+        interpreter.setProfiler(profiler);
+        Assertions.assertEquals(BigInteger.valueOf(500500), interpreter.visit(ast).getValue());
+        Assertions.assertEquals(1001, profiler.getEntry(ast.getMethods().get(0)).getCount());
+    }
+
+    @Test
+    void testDisabled() {
+        Ast.Source source = parse(FIB);
+        Profiler profiler = new Profiler();
+        Interpreter interpreter = new Interpreter(null);
+        interpreter.setProfiler(profiler);
+        interpreter.setProfiler(null);
+        Assertions.assertEquals(BigInteger.valueOf(55), interpreter.visit(source).getValue());
+        Assertions.assertTrue(profiler.getEntries().isEmpty());
+    }
+
+    private static Ast.Source parse(String source) {
+        return new Parser(new Lexer(source).lex()).parseSource();
+    }
+
+    private static Profiler run(Ast.Source source) {
+        Profiler profiler = new Profiler();
+        Interpreter interpreter = new Interpreter(null);
+        interpreter.setProfiler(profiler);
+        Assertions.assertEquals(BigInteger.valueOf(55), interpreter.visit(source).getValue());
+        return profiler;
+    }
+
+}
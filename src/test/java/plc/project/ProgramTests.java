@@ -0,0 +1,105 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+final class ProgramTests {
+
+    private static final String COUNTER = String.join("\n",
+            "LET count: Integer = 0;",
+            "DEF increment(n: Integer): Integer DO",
+            "    count = count + n;",
+            "    RETURN count;",
+            "END",
+            "DEF main(): Integer DO",
+            "    LET i = 0;",
+            "    WHILE i < 1000 DO",
+            "        increment(i);",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN count;",
+            "END"
+    );
+
+    @Test
+    void testExecute() {
+        Program program = Program.compile(COUNTER);
+        Assertions.assertEquals(BigInteger.valueOf(499500), program.execute().getValue());
+        Assertions.assertEquals(BigInteger.valueOf(499500), program.execute().getValue());
+    }
+
+    @Test
+    void testContext() {
+        Program program = Program.compile(COUNTER);
+        ExecutionContext context = program.newContext(new Scope(null));
+        Assertions.assertEquals(BigInteger.valueOf(499500), context.execute().getValue());
+        Assertions.assertEquals(BigInteger.valueOf(499500), context.getScope().lookupVariable("count").getValue().getValue());
+        Assertions.assertThrows(IllegalStateException.class, context::execute);
+    }
+
+    @Test
+    void testOptimized() {
+        Program program = Program.compile(String.join("\n",
+                "LET unused: Integer = 5;",
+                "DEF helper(): Integer DO RETURN 1; END",
+                "DEF main(): Integer DO",
+                "    LET x = 2 * 3;",
+                "    IF FALSE AND TRUE DO RETURN helper(); END",
+                "    RETURN (x + 1) * (x + 1);",
+                "END"
+        ));
+        Assertions.assertTrue(program.getAst().getFields().isEmpty());
+        Assertions.assertEquals(1, program.getAst().getMethods().size());
+        List<Ast.Stmt> statements = program.getAst().getMethods().get(0).getStatements();
+        Assertions.assertEquals(3, statements.size());
+        Assertions.assertEquals(BigInteger.valueOf(6), ((Ast.Expr.Literal) ((Ast.Stmt.Declaration) statements.get(0)).getValue().get()).getLiteral());
+        Assertions.assertEquals("$cse0", ((Ast.Stmt.Declaration) statements.get(1)).getName());
+        Assertions.assertEquals(BigInteger.valueOf(49), program.execute().getValue());
+    }
+
+    @Test
+    void testRanges() {
+        Program program = Program.compile(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET x = 2000000000 * 2000000000;",
+                "    RETURN x * 3;",
+                "END"
+        ));
+        String bytecode = program.getBytecode().toString();
+        Assertions.assertTrue(bytecode.contains("BINARY_LONG 10  ; *"), bytecode);
+        Assertions.assertTrue(bytecode.contains("BINARY 10  ; *"), bytecode);
+        Assertions.assertEquals(new BigInteger("12000000000000000000"), program.execute().getValue());
+    }
+
+    @Test
+    void testInvalid() {
+        Assertions.assertThrows(ParseException.class, () -> Program.compile("DEF main(): Integer DO"));
+        Assertions.assertThrows(RuntimeException.class, () -> Program.compile("DEF main(): Integer DO RETURN TRUE; END"));
+    }
+
+    @Test
+    void testConcurrent() throws Exception {
+        Program program = Program.compile(COUNTER);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Environment.PlcObject>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit((Callable<Environment.PlcObject>) program::execute));
+            }
+            for (Future<Environment.PlcObject> result : results) {
+                Assertions.assertEquals(BigInteger.valueOf(499500), result.get().getValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class PurityAnalyzerTests {
+
+    @Test
+    void testClassification() {
+        Ast.Source ast = analyze(String.join("\n",
+                "LET counter: Integer = 0;",
+                "DEF square(x: Integer): Integer DO LET y = x * x; RETURN y; END",
+                "DEF size(s: String): Integer DO RETURN s.length; END",
+                "DEF current(): Integer DO RETURN counter; END",
+                "DEF next(): Integer DO counter = counter + 1; RETURN counter; END",
+                "DEF log(x: Integer): Integer DO print(x); RETURN x; END",
+                "DEF caller(x: Integer): Integer DO RETURN square(current()); END",
+                "DEF main(): Integer DO RETURN log(next()); END"
+        ));
+        Assertions.assertEquals(Arrays.asList(
+                Environment.Purity.PURE,
+                Environment.Purity.READ_ONLY,
+                Environment.Purity.READ_ONLY,
+                Environment.Purity.EFFECTFUL,
+                Environment.Purity.EFFECTFUL,
+                Environment.Purity.READ_ONLY,
+                Environment.Purity.EFFECTFUL
+        ), purities(ast));
+    }
+
+    @Test
+    void testRecursion() {
+        Ast.Source ast = analyze(String.join("\n",
+                "LET limit: Integer = 10;",
+                "DEF count(n: Integer): Integer DO IF n < 1 DO RETURN 0; END RETURN count(n - 1) + 1; END",
+                "DEF bounded(n: Integer): Integer DO IF n < limit DO RETURN bounded(n + 1); END RETURN n; END",
+                "DEF main(): Integer DO RETURN count(bounded(0)); END"
+        ));
+        Assertions.assertEquals(Arrays.asList(
+                Environment.Purity.PURE,
+                Environment.Purity.READ_ONLY,
+                Environment.Purity.READ_ONLY
+        ), purities(ast));
+    }
+
+    @Test
+    void testScopeVariables() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("counter", "counter", Environment.Type.INTEGER, Environment.NIL);
+        Ast.Source ast = analyze(String.join("\n",
+                "DEF next(): Integer DO counter = counter + 1; RETURN counter; END",
+                "DEF current(): Integer DO RETURN counter; END",
+                "DEF shadow(counter: Integer): Integer DO counter = counter + 1; RETURN counter; END",
+                "DEF local(): Integer DO LET total = 0; total = total + 1; RETURN total; END",
+                "DEF main(): Integer DO RETURN next() + current() + shadow(1) + local(); END"
+        ), scope);
+        Assertions.assertEquals(Arrays.asList(
+                Environment.Purity.EFFECTFUL,
+                Environment.Purity.READ_ONLY,
+                Environment.Purity.PURE,
+                Environment.Purity.PURE,
+                Environment.Purity.EFFECTFUL
+        ), purities(ast));
+    }
+
+    private static Ast.Source analyze(String input) {
+        return analyze(input, new Scope(null));
+    }
+
+    private static Ast.Source analyze(String input, Scope scope) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(scope).visit(ast);
+        new PurityAnalyzer().visit(ast);
+        return ast;
+    }
+
+    private static List<Environment.Purity> purities(Ast.Source ast) {
+        return ast.getMethods().stream().map(method -> method.getFunction().getPurity()).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,72 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+public final class RangeAnalyzerTests {
+
+    @Test
+    void testLoopCounter() {
+        Ast.Source ast = analyze(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET i = 0;",
+                "    LET big = 1;",
+                "    WHILE i < 100 DO",
+                "        big = big * 2;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN i;",
+                "END"
+        ));
+        Ast.Stmt.While loop = (Ast.Stmt.While) ast.getMethods().get(0).getStatements().get(2);
+        Ast.Expr.Binary doubled = (Ast.Expr.Binary) ((Ast.Stmt.Assignment) loop.getStatements().get(0)).getValue();
+        Ast.Expr.Binary increment = (Ast.Expr.Binary) ((Ast.Stmt.Assignment) loop.getStatements().get(1)).getValue();
+        Assertions.assertEquals(range(0, 99), increment.getLeft().getInterval().get());
+        Assertions.assertEquals(range(1, 100), increment.getInterval().get());
+        Assertions.assertTrue(increment.getInterval().get().fitsInt());
+        Assertions.assertFalse(doubled.getInterval().get().fitsLong());
+        Ast.Stmt.Return result = (Ast.Stmt.Return) ast.getMethods().get(0).getStatements().get(3);
+        Assertions.assertEquals(range(100, 100), result.getValue().getInterval().get());
+    }
+
+    @Test
+    void testSummaries() {
+        Ast.Source ast = analyze(String.join("\n",
+                "LET total: Integer = 0;",
+                "DEF square(x: Integer): Integer DO RETURN x * x; END",
+                "DEF pick(flag: Boolean): Integer DO",
+                "    IF flag DO",
+                "        total = square(3);",
+                "    ELSE",
+                "        total = square(-2);",
+                "    END",
+                "    RETURN total;",
+                "END",
+                "DEF main(): Integer DO RETURN pick(TRUE); END"
+        ));
+        Ast.Stmt.Return square = (Ast.Stmt.Return) ast.getMethods().get(0).getStatements().get(0);
+        Assertions.assertEquals(range(-6, 9), square.getValue().getInterval().get());
+        Ast.Stmt.Return result = (Ast.Stmt.Return) ast.getMethods().get(1).getStatements().get(1);
+        Assertions.assertEquals(range(-6, 9), result.getValue().getInterval().get());
+    }
+
+    @Test
+    void testNonInteger() {
+        Ast.Source ast = analyze("LET name: String = \"x\";\nDEF main(): Integer DO RETURN 0; END");
+        Assertions.assertFalse(ast.getFields().get(0).getValue().get().getInterval().isPresent());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        new RangeAnalyzer().visit(ast);
+        return ast;
+    }
+
+    private static Interval range(long lower, long upper) {
+        return Interval.of(BigInteger.valueOf(lower), BigInteger.valueOf(upper));
+    }
+
+}
@@ -0,0 +1,90 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures lookups of variables and functions defined at the bottom of
+ * deep chains of scopes, as in code nested in many blocks, by name and by
+ * interned symbol. Results are printed per lookup; the only assertions are
+ * on the results of the lookups.
+ */
+@Tag("benchmark")
+final class ScopeBenchmarks {
+
+    private static final int LOOKUPS = 1_000_000;
+
+    @Test
+    void testDeepVariableLookup() {
+        for (int depth : new int[] {1, 8, 64}) {
+            Scope scope = chain(depth);
+            Symbol symbol = Symbol.of("x");
+            for (int run = 0; run < 5; run++) {
+                report("variable by name, depth " + depth, time(() -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        scope.lookupVariable("x");
+                    }
+                }));
+                report("variable by symbol, depth " + depth, time(() -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        scope.lookupVariable(symbol);
+                    }
+                }));
+            }
+            Assertions.assertSame(Environment.TRUE, scope.lookupVariable(symbol).getValue());
+        }
+    }
+
+    @Test
+    void testDeepFunctionLookup() {
+        for (int depth : new int[] {1, 8, 64}) {
+            Scope scope = chain(depth);
+            Symbol symbol = Symbol.of("f");
+            for (int run = 0; run < 5; run++) {
+                report("function by name, depth " + depth, time(() -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        scope.lookupFunction("f", 2);
+                    }
+                }));
+                report("function by symbol, depth " + depth, time(() -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        scope.lookupFunction(symbol, 2);
+                    }
+                }));
+            }
+            Assertions.assertSame(Environment.TRUE, scope.lookupFunction(symbol, 2).invoke2(Environment.NIL, Environment.NIL));
+        }
+    }
+
+    /**
+     * Returns the innermost of {@code depth} nested scopes, where the
+     * outermost one defines {@code x}, {@code f/2} and a few others and every
+     * other one defines a local variable.
+     */
+    private static Scope chain(int depth) {
+        Scope scope = new Scope(null);
+        for (int i = 0; i < 16; i++) {
+            scope.defineVariable("global" + i, Environment.NIL);
+            scope.defineFunction("global" + i, 2, args -> Environment.NIL);
+        }
+        scope.defineVariable("x", Environment.TRUE);
+        scope.defineFunction("f", (a, b) -> Environment.TRUE);
+        for (int i = 1; i < depth; i++) {
+            scope = new Scope(scope);
+            scope.defineVariable("local" + i, Environment.NIL);
+        }
+        return scope;
+    }
+
+    private static long time(Runnable runnable) {
+        long start = System.nanoTime();
+        runnable.run();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("%-32s %8.1f ns/lookup%n", name, (double) nanos / LOOKUPS);
+    }
+
+}
@@ -0,0 +1,140 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+final class ScopeTests {
+
+    @Test
+    void testSymbols() {
+        Symbol symbol = Symbol.of("symbol");
+        Assertions.assertSame(symbol, Symbol.of(new String("symbol")));
+        Assertions.assertNotEquals(symbol.getId(), Symbol.of("other").getId());
+        Assertions.assertTrue(symbol.getId() > 0);
+        Assertions.assertEquals("symbol", symbol.getName());
+    }
+
+    @Test
+    void testVariables() {
+        Scope global = new Scope(null);
+        global.defineVariable("x", Environment.create("global"));
+        Scope local = new Scope(new Scope(global));
+        Assertions.assertEquals("global", local.lookupVariable("x").getValue().getValue());
+        local.defineVariable("x", Environment.create("local"));
+        Assertions.assertEquals("local", local.lookupVariable(Symbol.of("x")).getValue().getValue());
+        Assertions.assertEquals("global", global.lookupVariable("x").getValue().getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> local.defineVariable("x", Environment.NIL));
+        Assertions.assertThrows(RuntimeException.class, () -> local.lookupVariable("y"));
+    }
+
+    @Test
+    void testFunctions() {
+        Scope global = new Scope(null);
+        global.defineFunction("f", () -> Environment.create("f/0"));
+        global.defineFunction("f", a -> Environment.create("f/1"));
+        Scope local = new Scope(global);
+        Assertions.assertEquals("f/0", local.lookupFunction("f", 0).invoke0().getValue());
+        Assertions.assertEquals("f/1", local.lookupFunction(Symbol.of("f"), 1).invoke1(Environment.NIL).getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> local.lookupFunction("f", 2));
+        Assertions.assertThrows(RuntimeException.class, () -> global.defineFunction("f", () -> Environment.NIL));
+        Assertions.assertSame(global, local.getFunctionScope());
+        local.defineFunction("f", () -> Environment.create("local"));
+        Assertions.assertEquals("local", local.lookupFunction("f", 0).invoke0().getValue());
+        Assertions.assertSame(local, local.getFunctionScope());
+    }
+
+    @Test
+    void testManyDefinitions() {
+        Scope scope = new Scope(null);
+        for (int i = 0; i < 100; i++) {
+            scope.defineVariable("v" + i, Environment.create(BigInteger.valueOf(i)));
+            int arity = i % 3;
+            scope.defineFunction("f" + i, arity, args -> Environment.NIL);
+        }
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(BigInteger.valueOf(i), scope.lookupVariable("v" + i).getValue().getValue());
+            Assertions.assertEquals("f" + i, scope.lookupFunction("f" + i, i % 3).getName());
+            int index = i;
+            Assertions.assertThrows(RuntimeException.class, () -> scope.lookupFunction("f" + index, index % 3 + 1));
+        }
+        Assertions.assertThrows(RuntimeException.class, () -> scope.defineVariable("v50", Environment.NIL));
+    }
+
+    @Test
+    void testReset() {
+        Scope scope = new Scope(null);
+        for (int i = 0; i < 20; i++) {
+            scope.defineVariable("v" + i, Environment.NIL);
+        }
+        scope.reset();
+        Assertions.assertThrows(RuntimeException.class, () -> scope.lookupVariable("v0"));
+        scope.defineVariable("v0", Environment.TRUE);
+        Assertions.assertSame(Environment.TRUE, scope.lookupVariable("v0").getValue());
+    }
+
+    @Test
+    void testToString() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("a", Environment.NIL);
+        scope.defineFunction("f", a -> a);
+        Assertions.assertEquals("Scope{parent=null, variables=[a], functions=[f/1]}", scope.toString());
+    }
+
+    @Test
+    void testSnapshot() {
+        Scope scope = new Scope(null);
+        for (int i = 0; i < 100; i++) {
+            scope.defineVariable("v" + i, Environment.create(BigInteger.valueOf(i)));
+        }
+        Environment.Variable before = scope.lookupVariable("v7");
+        Scope.Snapshot snapshot = scope.snapshot();
+        // variables looked up before the snapshot are part of it
+        Assertions.assertThrows(IllegalStateException.class, () -> before.setValue(Environment.NIL));
+        scope.lookupVariable("v7").setValue(Environment.NIL);
+        scope.defineVariable("w", Environment.NIL);
+        Assertions.assertSame(Environment.NIL, scope.lookupVariable("v7").getValue());
+        Assertions.assertEquals(BigInteger.valueOf(7), snapshot.getValue("v7").getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> snapshot.getValue("w"));
+        for (int i = 0; i < 100; i++) {
+            if (i != 7) {
+                Assertions.assertEquals(BigInteger.valueOf(i), scope.lookupVariable("v" + i).getValue().getValue());
+            }
+        }
+    }
+
+    @Test
+    void testFork() {
+        Scope global = new Scope(null);
+        global.defineFunction("f", () -> Environment.TRUE);
+        Scope scope = new Scope(null);
+        for (int i = 0; i < 40; i++) {
+            scope.defineVariable("v" + i, Environment.create(BigInteger.valueOf(i)));
+        }
+        Scope.Snapshot snapshot = scope.snapshot();
+        Scope first = snapshot.fork(global);
+        Scope second = snapshot.fork(global);
+        Assertions.assertSame(global, first.getParent());
+        Assertions.assertSame(Environment.TRUE, first.lookupFunction("f", 0).invoke0());
+        for (int i = 0; i < 40; i++) {
+            first.lookupVariable("v" + i).setValue(Environment.create(BigInteger.valueOf(-i)));
+        }
+        first.defineVariable("w", Environment.NIL);
+        Assertions.assertThrows(RuntimeException.class, () -> first.defineVariable("v0", Environment.NIL));
+        for (int i = 0; i < 40; i++) {
+            Assertions.assertEquals(BigInteger.valueOf(-i), first.lookupVariable("v" + i).getValue().getValue());
+            Assertions.assertEquals(BigInteger.valueOf(i), second.lookupVariable("v" + i).getValue().getValue());
+            Assertions.assertEquals(BigInteger.valueOf(i), scope.lookupVariable("v" + i).getValue().getValue());
+            Assertions.assertEquals(BigInteger.valueOf(i), snapshot.getValue("v" + i).getValue());
+        }
+        Assertions.assertThrows(RuntimeException.class, () -> second.lookupVariable("w"));
+        Scope.Snapshot forked = first.snapshot();
+        Assertions.assertEquals(BigInteger.valueOf(-3), forked.getValue("v3").getValue());
+        Assertions.assertSame(Environment.NIL, forked.getValue("w"));
+        first.reset();
+        Assertions.assertThrows(RuntimeException.class, () -> first.lookupVariable("v0"));
+        Assertions.assertEquals(BigInteger.valueOf(-3), forked.getValue("v3").getValue());
+    }
+
+}
@@ -0,0 +1,101 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+final class TypeRegistryTests {
+
+    private static final String POINTS = String.join("\n",
+            "LET origin: Point;",
+            "DEF identity(point: Point): Point DO",
+            "    RETURN point;",
+            "END",
+            "DEF main(): Integer DO",
+            "    identity(origin);",
+            "    RETURN 1;",
+            "END"
+    );
+
+    @Test
+    void testBuiltins() {
+        Assertions.assertSame(Environment.Type.INTEGER, Environment.getTypes().getType("Integer"));
+        Assertions.assertSame(Environment.Type.INTEGER, Environment.getType("Integer"));
+        Assertions.assertNull(Environment.getTypes().getParent());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Environment.registerType(new Environment.Type("Integer", "int", new Scope(null))));
+        Assertions.assertThrows(RuntimeException.class, () -> Environment.getType("Unknown"));
+    }
+
+    @Test
+    void testTenants() {
+        TypeRegistry first = new TypeRegistry(Environment.getTypes());
+        TypeRegistry second = new TypeRegistry(Environment.getTypes());
+        Environment.Type point = new Environment.Type("Point", "Point", new Scope(Environment.Type.ANY.getScope()));
+        first.register(point);
+        second.register(new Environment.Type("Point", "java.awt.Point", new Scope(Environment.Type.ANY.getScope())));
+        Assertions.assertSame(point, first.getType("Point"));
+        Assertions.assertEquals("java.awt.Point", second.getType("Point").getJvmName());
+        Assertions.assertSame(Environment.Type.STRING, first.getType("String"));
+        Assertions.assertFalse(Environment.getTypes().isRegistered("Point"));
+        Assertions.assertThrows(RuntimeException.class, () -> Environment.getType("Point"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.register(point));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.register(new Environment.Type("String", "String", new Scope(null))));
+        Assertions.assertEquals(Collections.singletonList("Point"), first.getNames());
+    }
+
+    @Test
+    void testAnalyzer() {
+        TypeRegistry tenant = new TypeRegistry(Environment.getTypes());
+        tenant.register(new Environment.Type("Point", "Point", new Scope(Environment.Type.ANY.getScope())));
+        Program program = Program.compile(POINTS, new Scope(null), tenant);
+        Assertions.assertSame(tenant, program.getTypes());
+        Assertions.assertEquals("Point", program.getAst().getMethods().get(0).getFunction().getReturnType().getName());
+        Assertions.assertEquals(BigInteger.ONE, program.execute().getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> Program.compile(POINTS));
+        Assertions.assertSame(Environment.getTypes(), Program.compile("DEF main(): Integer DO RETURN 1; END").getTypes());
+    }
+
+    @Test
+    void testConcurrentRegistrations() throws Exception {
+        TypeRegistry registry = new TypeRegistry(Environment.getTypes());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int thread = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 100; j++) {
+                        registry.register(new Environment.Type("T" + thread + "_" + j, "Object", new Scope(null)));
+                        Assertions.assertSame(Environment.Type.ANY, registry.getType("Any"));
+                    }
+                    try {
+                        registry.register(new Environment.Type("Shared", "Object", new Scope(null)));
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int registered = 0;
+            for (Future<Boolean> result : results) {
+                registered += result.get() ? 1 : 0;
+            }
+            Assertions.assertEquals(1, registered);
+            Assertions.assertEquals(801, registry.getNames().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
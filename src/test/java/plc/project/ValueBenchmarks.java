@@ -0,0 +1,89 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+
+/**
+ * Measures the bytes allocated by arithmetic-heavy loops, using the
+ * allocation counters of the current thread. Results are printed per
+ * iteration; the assertions only check for regressions in the cases where
+ * values are canonical.
+ */
+@Tag("benchmark")
+final class ValueBenchmarks {
+
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    void testCanonicalValues() {
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long bytes = allocated(() -> {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    Environment.create(i % 2 == 0);
+                }
+            });
+            report("create(Boolean)", bytes, ITERATIONS);
+        }
+        long bytes = allocated(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                Environment.create(i % 2 == 0);
+            }
+        });
+        Assertions.assertTrue(bytes < ITERATIONS, "Allocated " + bytes + " bytes.");
+    }
+
+    @Test
+    void testCountingLoop() {
+        run("counting loop", String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET i = 0;",
+                "    WHILE i < 1000 DO",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN i;",
+                "END"
+        ), BigInteger.valueOf(1000), 1000);
+    }
+
+    @Test
+    void testSumLoop() {
+        run("sum loop", String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET i = 0;",
+                "    LET sum = 0;",
+                "    WHILE i < 1000 DO",
+                "        sum = sum + i * i;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN sum;",
+                "END"
+        ), BigInteger.valueOf(332833500), 1000);
+    }
+
+    private static void run(String name, String input, Object expected, int iterations) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        for (int run = 0; run < 5; run++) {
+            report(name + " (interpreter)", allocated(() -> Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue())), iterations);
+            report(name + " (closures)", allocated(() -> Assertions.assertEquals(expected, new ClosureCompiler(new Scope(null)).execute(ast).getValue())), iterations);
+            report(name + " (bytecode)", allocated(() -> Assertions.assertEquals(expected, new VirtualMachine(new Scope(null)).execute(ast).getValue())), iterations);
+        }
+    }
+
+    private static long allocated(Runnable runnable) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        runnable.run();
+        return bean.getThreadAllocatedBytes(id) - before;
+    }
+
+    private static void report(String name, long bytes, int iterations) {
+        System.out.printf("%-32s %12d bytes %10.1f bytes/iteration%n", name, bytes, (double) bytes / iterations);
+    }
+
+}
@@ -0,0 +1,300 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the {@link InterpreterTests} cases against the
+ * {@link VirtualMachine}, along with programs comparing both engines.
+ */
+final class VirtualMachineTests {
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testSource")
+    void testSource(String test, Ast.Source ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testField")
+    void testField(String test, Ast.Field ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testMethod")
+    void testMethod(String test, Ast.Method ast, List<Environment.PlcObject> args, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupFunction(ast.getName(), args.size()).invoke(args).getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testDeclarationStatement")
+    void testDeclarationStatement(String test, Ast.Stmt.Declaration ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testIfStatement")
+    void testIfStatement(String test, Ast.Stmt.If ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("num", Environment.NIL);
+        test(ast, Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(expected, scope.lookupVariable("num").getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource({
+            "plc.project.InterpreterTests#testLiteralExpression",
+            "plc.project.InterpreterTests#testGroupExpression",
+            "plc.project.InterpreterTests#testBinaryExpression"
+    })
+    void testExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testAccessExpression")
+    void testAccessExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", Environment.create("variable"));
+        Scope object = new Scope(null);
+        object.defineVariable("field", Environment.create("object.field"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.project.InterpreterTests#testFunctionExpression")
+    void testFunctionExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 0, args -> Environment.create("function"));
+        Scope object = new Scope(null);
+        object.defineFunction("method", 1, args -> Environment.create("object.method"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    @Test
+    void testExpressionStatement() {
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            test(new Ast.Stmt.Expression(
+                    new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(new Ast.Expr.Literal("Hello, World!")))
+            ), Environment.NIL.getValue(), new Scope(null));
+            Assertions.assertEquals("Hello, World!" + System.lineSeparator(), out.toString());
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    @Test
+    void testAssignmentStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", Environment.create("variable"));
+        Scope object = new Scope(null);
+        object.defineVariable("field", Environment.create("object.field"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(new Ast.Stmt.Assignment(
+                new Ast.Expr.Access(Optional.empty(), "variable"),
+                new Ast.Expr.Literal(BigInteger.ONE)
+        ), Environment.NIL.getValue(), scope);
+        test(new Ast.Stmt.Assignment(
+                new Ast.Expr.Access(Optional.of(new Ast.Expr.Access(Optional.empty(), "object")), "field"),
+                new Ast.Expr.Literal(BigInteger.TEN)
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.ONE, scope.lookupVariable("variable").getValue().getValue());
+        Assertions.assertEquals(BigInteger.TEN, object.lookupVariable("field").getValue().getValue());
+    }
+
+    @Test
+    void testForStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        scope.defineVariable("list", Environment.create(IntStream.range(0, 5)
+                .mapToObj(i -> Environment.create(BigInteger.valueOf(i)))
+                .collect(Collectors.toList())));
+        test(new Ast.Stmt.For("num",
+                new Ast.Expr.Access(Optional.empty(), "list"),
+                Arrays.asList(new Ast.Stmt.Assignment(
+                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                new Ast.Expr.Access(Optional.empty(), "num")
+                        )
+                ))
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("sum").getValue().getValue());
+    }
+
+    @Test
+    void testWhileStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("num", Environment.create(BigInteger.ZERO));
+        test(new Ast.Stmt.While(
+                new Ast.Expr.Binary("<",
+                        new Ast.Expr.Access(Optional.empty(), "num"),
+                        new Ast.Expr.Literal(BigInteger.TEN)
+                ),
+                Arrays.asList(new Ast.Stmt.Assignment(
+                        new Ast.Expr.Access(Optional.empty(), "num"),
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "num"),
+                                new Ast.Expr.Literal(BigInteger.ONE)
+                        )
+                ))
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("num").getValue().getValue());
+    }
+
+    @Test
+    void testCachedBytecode() {
+        Bytecode bytecode = new BytecodeCompiler().compile(parse(String.join("\n",
+                "LET calls: Integer = 0;",
+                "DEF count(): Integer DO calls = calls + 1; RETURN calls; END",
+                "DEF main(): Integer DO count(); RETURN count(); END"
+        )));
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(BigInteger.valueOf(2), new VirtualMachine(new Scope(null)).execute(bytecode).getValue());
+        }
+    }
+
+    @Test
+    void testProvenRanges() {
+        Ast.Source ast = parse(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET i = 0;",
+                "    LET big = 1;",
+                "    WHILE i < 100 DO",
+                "        big = big * 2;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN big / (i - 99) + i / 3;",
+                "END"
+        ));
+        BigInteger expected = BigInteger.ONE.shiftLeft(100).add(BigInteger.valueOf(33));
+        Assertions.assertFalse(new BytecodeCompiler().compile(ast).toString().contains("BINARY_LONG"));
+        new RangeAnalyzer().visit(ast);
+        String bytecode = new BytecodeCompiler().compile(ast).toString();
+        Assertions.assertTrue(bytecode.contains("BINARY_LONG 2  ; <"), bytecode);
+        Assertions.assertTrue(bytecode.contains("BINARY_LONG 8  ; +"), bytecode);
+        Assertions.assertTrue(bytecode.contains("BINARY_LONG 9  ; -"), bytecode);
+        Assertions.assertTrue(bytecode.contains("BINARY 10  ; *"), bytecode);
+        Assertions.assertTrue(bytecode.contains("BINARY 11  ; /"), bytecode);
+        Assertions.assertTrue(bytecode.contains("BINARY_LONG 11  ; /"), bytecode);
+        Assertions.assertEquals(expected, new VirtualMachine(new Scope(null)).execute(ast).getValue());
+    }
+
+    @Test
+    void testDeepRecursion() {
+        Ast.Source ast = parse(String.join("\n",
+                "DEF down(n: Integer): Integer DO",
+                "    IF n < 1 DO RETURN 0; END",
+                "    RETURN down(n - 1) + 1;",
+                "END",
+                "DEF main(): Integer DO RETURN down(100000); END"
+        ));
+        Assertions.assertEquals(BigInteger.valueOf(100000), new VirtualMachine(new Scope(null)).execute(ast).getValue());
+    }
+
+    @Test
+    void testRecursion() {
+        compare(String.join("\n",
+                "DEF fib(n: Integer): Integer DO",
+                "    IF n < 2 DO RETURN n; END",
+                "    RETURN fib(n - 1) + fib(n - 2);",
+                "END",
+                "DEF main(): Integer DO RETURN fib(15); END"
+        ), BigInteger.valueOf(610));
+    }
+
+    @Test
+    void testScopes() {
+        compare(String.join("\n",
+                "LET x: Integer = 1;",
+                "LET total: Integer = 0;",
+                "DEF shadow(): Integer DO",
+                "    LET before = x;",
+                "    LET x = 10;",
+                "    LET i = 0;",
+                "    WHILE i < 3 DO",
+                "        LET x = i * 100;",
+                "        total = total + x;",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN before + x;",
+                "END",
+                "DEF main(): Integer DO",
+                "    print(shadow());",
+                "    print(x);",
+                "    RETURN total;",
+                "END"
+        ), BigInteger.valueOf(300));
+    }
+
+    @Test
+    void testErrors() {
+        Ast.Source ast = parse(String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET x = 0;",
+                "    RETURN 1 / x;",
+                "END"
+        ));
+        Assertions.assertThrows(RuntimeException.class, () -> new VirtualMachine(new Scope(null)).execute(ast));
+        Assertions.assertThrows(RuntimeException.class, () -> new VirtualMachine(new Scope(null)).execute(
+                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))
+        ));
+    }
+
+    /**
+     * Runs a program on both engines, checking the result and that the
+     * printed output is the same.
+     */
+    private static void compare(String input, Object expected) {
+        Ast.Source ast = parse(input);
+        PrintStream sysout = System.out;
+        try {
+            ByteArrayOutputStream interpreted = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(interpreted));
+            Assertions.assertEquals(expected, new Interpreter(new Scope(null)).visit(ast).getValue());
+            ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(compiled));
+            Assertions.assertEquals(expected, new VirtualMachine(new Scope(null)).execute(ast).getValue());
+            Assertions.assertEquals(interpreted.toString(), compiled.toString());
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    private static Ast.Source parse(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+    private static Scope test(Ast ast, Object expected, Scope scope) {
+        VirtualMachine machine = new VirtualMachine(scope);
+        if (expected != null) {
+            Assertions.assertEquals(expected, machine.execute(ast).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> machine.execute(ast));
+        }
+        return machine.getScope();
+    }
+
+}